@@ -0,0 +1,133 @@
+package com.dieg0407.utils.chromedriver.benchmarks;
+
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Downloader.DownloaderImpl} against a local HTTP server serving a 10 MB file, with and
+ * without range support, plus the streaming and conditional paths. The loopback has no latency,
+ * so this measures the overhead of the downloader itself rather than the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloaderBenchmark {
+
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+  private static final int SIZE = 10 * 1024 * 1024;
+
+  @Param({"true", "false"})
+  public boolean supportsRanges;
+
+  private byte[] content;
+  private HttpServer server;
+  private ExecutorService executor;
+  private Downloader downloader;
+  private Path folder;
+  private File destination;
+  private URI uri;
+
+  @Setup
+  public void setUp() throws IOException {
+    content = new byte[SIZE];
+    new Random(42).nextBytes(content);
+
+    // platform threads, so segments are served in parallel like a real host would
+    executor = Executors.newFixedThreadPool(8);
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/chromedriver.zip", this::serve);
+    server.setExecutor(executor);
+    server.start();
+
+    uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/chromedriver.zip");
+    folder = Files.createTempDirectory("downloader-benchmark");
+    destination = folder.resolve("chromedriver.zip").toFile();
+    downloader = new Downloader.DownloaderImpl();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    downloader.close();
+    server.stop(0);
+    executor.close();
+    try (Stream<Path> paths = Files.walk(folder)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  public File download() {
+    return downloader.download(uri, destination);
+  }
+
+  @Benchmark
+  public long open() throws IOException {
+    try (InputStream inputStream = downloader.open(uri)) {
+      return inputStream.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+
+  // after the first invocation every request is answered with a 304
+  @Benchmark
+  public boolean downloadIfModified() {
+    return downloader.downloadIfModified(uri, destination);
+  }
+
+  private void serve(final HttpExchange exchange) throws IOException {
+    final String range = exchange.getRequestHeaders().getFirst("Range");
+    final Matcher matcher = range == null ? null : RANGE.matcher(range);
+    try (exchange; OutputStream body = exchange.getResponseBody()) {
+      if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        exchange.sendResponseHeaders(304, -1);
+        return;
+      }
+
+      exchange.getResponseHeaders().add("ETag", "\"v1\"");
+      if (!supportsRanges || matcher == null || !matcher.matches()) {
+        exchange.sendResponseHeaders(200, content.length);
+        body.write(content);
+        return;
+      }
+
+      final int start = Integer.parseInt(matcher.group(1));
+      final int end = Math.min(Integer.parseInt(matcher.group(2)), content.length - 1);
+      exchange.getResponseHeaders().add("Content-Range",
+          "bytes " + start + "-" + end + "/" + content.length);
+      exchange.sendResponseHeaders(206, end - start + 1);
+      body.write(content, start, end - start + 1);
+    }
+  }
+}
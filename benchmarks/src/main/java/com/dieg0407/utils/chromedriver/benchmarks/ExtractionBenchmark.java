@@ -0,0 +1,171 @@
+package com.dieg0407.utils.chromedriver.benchmarks;
+
+import com.dieg0407.utils.chromedriver.Chromedriver;
+import com.dieg0407.utils.chromedriver.Chromedriver.ExtractionMode;
+import com.dieg0407.utils.chromedriver.model.DownloadCache;
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.Os;
+import com.dieg0407.utils.chromedriver.model.ProcessHandler;
+import com.dieg0407.utils.chromedriver.model.Version;
+import com.dieg0407.utils.chromedriver.model.VersionProbe;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Chromedriver#updateTo(Version, ExtractionMode)} against a generated zip shaped like the
+ * real ones: about 10 MB with the license files before the executable. The downloader serves the
+ * zip from disk, so only extraction and installation are measured. With {@code KEEP_ZIP} the
+ * first invocation puts the zip in the cache and the rest extract it from there.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractionBenchmark {
+
+  private static final Version VERSION = Version.fromRawVersion("138.0.7204.49");
+  private static final int EXECUTABLE_SIZE = 20 * 1024 * 1024;
+
+  @Param({"KEEP_ZIP", "STREAMING"})
+  public ExtractionMode mode;
+
+  private Path folder;
+  private Chromedriver chromedriver;
+  private PrintStream out;
+
+  @Setup
+  public void setUp() throws IOException {
+    folder = Files.createTempDirectory("extraction-benchmark");
+    final File zip = folder.resolve("chromedriver-linux64.zip").toFile();
+    writeZip(zip);
+    final File location = Files.writeString(folder.resolve("chromedriver"), "old").toFile();
+
+    chromedriver = new Chromedriver(location.getAbsolutePath(), Os.LINUX, new NoProcesses(),
+        new LocalDownloader(zip), Chromedriver.Options.defaults()
+            .withCache(new DownloadCache(folder.resolve("versions").toFile(),
+                DownloadCache.DEFAULT_QUOTA_IN_BYTES))
+            .withVersionProbe(VersionProbe.none()));
+
+    // the progress messages would be measured too
+    out = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    System.setOut(out);
+    try (Stream<Path> paths = Files.walk(folder)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  public File updateTo() {
+    chromedriver.updateTo(VERSION, mode);
+    return chromedriver.getLocation();
+  }
+
+  // half random and half repetitive, so it compresses about as well as a real executable
+  private static void writeZip(final File zip) throws IOException {
+    final Random random = new Random(42);
+    final byte[] executable = new byte[EXECUTABLE_SIZE];
+    final byte[] chunk = new byte[4096];
+    for (int offset = 0; offset < executable.length; offset += chunk.length) {
+      if ((offset / chunk.length) % 2 == 0) {
+        random.nextBytes(chunk);
+      } else {
+        Arrays.fill(chunk, (byte) (offset >>> 12));
+      }
+      System.arraycopy(chunk, 0, executable, offset, chunk.length);
+    }
+
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(Files.newOutputStream(
+        zip.toPath()))) {
+      zipOutputStream.putNextEntry(new ZipEntry("chromedriver-linux64/LICENSE.chromedriver"));
+      zipOutputStream.write("Copyright 2015 The Chromium Authors\n".repeat(1_000)
+          .getBytes(StandardCharsets.UTF_8));
+      zipOutputStream.putNextEntry(
+          new ZipEntry("chromedriver-linux64/THIRD_PARTY_NOTICES.chromedriver"));
+      zipOutputStream.write("Permission is hereby granted, free of charge\n".repeat(50_000)
+          .getBytes(StandardCharsets.UTF_8));
+      zipOutputStream.putNextEntry(new ZipEntry("chromedriver-linux64/chromedriver"));
+      zipOutputStream.write(executable);
+      zipOutputStream.closeEntry();
+    }
+  }
+
+  private record LocalDownloader(File zip) implements Downloader {
+
+    @Override
+    public File download(final URI uri, final File destination) {
+      try {
+        Files.copy(zip.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return destination;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public InputStream open(final URI uri) {
+      try {
+        return new FileInputStream(zip);
+      } catch (FileNotFoundException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public boolean downloadIfModified(final URI uri, final File destination) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  // no process is started while updating
+  private static class NoProcesses implements ProcessHandler {
+
+    @Override
+    public String getOutput(final ProcessBuilder processBuilder, final long timeoutInMillis) {
+      return "";
+    }
+
+    @Override
+    public CompletableFuture<String> getOutputAsync(final ProcessBuilder processBuilder,
+        final long timeoutInMillis) {
+      return CompletableFuture.completedFuture("");
+    }
+  }
+}
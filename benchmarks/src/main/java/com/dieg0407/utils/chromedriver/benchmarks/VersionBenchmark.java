@@ -0,0 +1,67 @@
+package com.dieg0407.utils.chromedriver.benchmarks;
+
+import com.dieg0407.utils.chromedriver.model.Version;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing, formatting and comparison of versions, the work done for every probed binary and for
+ * every entry of a version listing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionBenchmark {
+
+  private static final int SIZE = 1024;
+
+  private String[] rawVersions;
+  private Version[] versions;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    final Random random = new Random(42);
+    rawVersions = new String[SIZE];
+    versions = new Version[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      rawVersions[i] = String.format("%d.0.%d.%d", 100 + random.nextInt(40),
+          5000 + random.nextInt(3000), random.nextInt(300));
+      versions[i] = Version.fromRawVersion(rawVersions[i]);
+    }
+  }
+
+  @Benchmark
+  public Version parse() {
+    return Version.fromRawVersion(rawVersions[next()]);
+  }
+
+  @Benchmark
+  public String identifier() {
+    return versions[next()].identifier();
+  }
+
+  @Benchmark
+  public boolean isLessThan() {
+    final int i = next();
+    return versions[i].isLessThan(versions[(i + 1) & (SIZE - 1)]);
+  }
+
+  private int next() {
+    index = (index + 1) & (SIZE - 1);
+    return index;
+  }
+}
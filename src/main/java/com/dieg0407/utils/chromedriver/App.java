@@ -1,13 +1,36 @@
 package com.dieg0407.utils.chromedriver;
 
+import com.dieg0407.utils.chromedriver.model.Bandwidth;
+import com.dieg0407.utils.chromedriver.model.BinaryStore;
+import com.dieg0407.utils.chromedriver.model.Checksums;
+import com.dieg0407.utils.chromedriver.model.DirectoryCache;
+import com.dieg0407.utils.chromedriver.model.DownloadCache;
 import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.Metrics;
 import com.dieg0407.utils.chromedriver.model.Os;
 import com.dieg0407.utils.chromedriver.model.ProcessHandler;
+import com.dieg0407.utils.chromedriver.model.ReleaseChannels;
 import com.dieg0407.utils.chromedriver.model.Version;
+import com.dieg0407.utils.chromedriver.model.VersionCache;
+import com.dieg0407.utils.chromedriver.model.VersionProbe;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
 
 
 @Command(
@@ -18,61 +41,524 @@ import picocli.CommandLine.Option;
 )
 public class App implements Callable<Integer> {
 
+  private static final Duration WATCH_SETTLE = Duration.ofSeconds(10);
+
   public static void main(String... args) {
     int exitCode = new CommandLine(new App()).execute(args);
     System.exit(exitCode);
   }
 
+  @Spec
+  private CommandSpec spec;
+
   @Option(names = {"--chrome-location",
-      "-c"}, description = "Path to the Chrome executable", required = true)
+      "-c"}, description = "Path to the Chrome executable")
   private String chromeLocation;
 
   @Option(names = {"--chromedriver-location",
-      "-d"}, description = "Path to the ChromeDriver executable", required = true)
+      "-d"}, description = "Path to the ChromeDriver executable")
   private String chromedriverLocation;
 
+  @Option(names = {"--manifest",
+      "-m"}, description = "Path to a file listing '<chrome-location>,<chromedriver-location>' "
+      + "pairs, one per line, to update all of them concurrently")
+  private File manifest;
+
+  @Option(names = {
+      "--discover"}, split = ",", description = "Directories to search for Chrome and ChromeDriver "
+      + "executables, every ChromeDriver found is updated to match the closest Chrome")
+  private List<Path> discoverRoots;
+
+  @Option(names = {
+      "--discover-depth"}, description = "Number of directory levels searched below each "
+      + "'--discover' root (default: ${DEFAULT-VALUE})", defaultValue = "16")
+  private int discoverDepth;
+
+  @Option(names = {
+      "--max-downloads"}, description = "Maximum number of concurrent downloads in fleet mode "
+      + "(default: ${DEFAULT-VALUE})", defaultValue = "4")
+  private int maxDownloads;
+
+  @Option(names = {
+      "--max-connections"}, description = "Maximum number of connections open at the same time "
+      + "by all downloads together (default: ${DEFAULT-VALUE})", defaultValue = "16")
+  private int maxConnections;
+
+  @Option(names = {
+      "--bandwidth"}, description = "Maximum MB per second downloaded by all downloads together, "
+      + "unlimited when not set")
+  private Long bandwidthInMegabytes;
+
+  @Option(names = {
+      "--cache-quota"}, description = "Maximum size in MB of the downloads kept in the versions "
+      + "folder (default: ${DEFAULT-VALUE})", defaultValue = "512")
+  private long cacheQuotaInMegabytes;
+
+  @Option(names = {
+      "--keep-versions"}, description = "Number of newest ChromeDriver versions kept installed "
+      + "in the versions folder and the store (default: ${DEFAULT-VALUE})", defaultValue = "3")
+  private int keepVersions;
+
+  @Option(names = {
+      "--streaming"}, description = "Extract ChromeDriver while it's downloaded instead of keeping "
+      + "the downloaded zip in the versions folder")
+  private boolean streaming;
+
+  @Option(names = {
+      "--pipelined"}, description = "Extract ChromeDriver while its zip is downloaded into the "
+      + "versions folder over a single connection, instead of downloading it in resumable "
+      + "segments first")
+  private boolean pipelined;
+
+  @Option(names = {
+      "--compatibility"}, description = "Which parts of a ChromeDriver older than Chrome have "
+      + "to match the Chrome version for it to be up to date: ${COMPLETION-CANDIDATES} "
+      + "(default: ${DEFAULT-VALUE})", defaultValue = "MAJOR_MINOR")
+  private Version.Compatibility compatibility;
+
+  @Option(names = {
+      "--checksums"}, description = "Path to a 'sha256sum' style file with the expected SHA-256 "
+      + "of the ChromeDriver zips, a listed zip that doesn't match is never installed")
+  private File checksumsFile;
+
+  @Option(names = {
+      "--store"}, description = "Keep one canonical ChromeDriver executable per version in the "
+      + "given folder and hard link every installed version to it, copying only across "
+      + "filesystems")
+  private File storeFolder;
+
+  @Option(names = {
+      "--serve"}, description = "Serve the versions folder of '--chromedriver-location' or "
+      + "'--manifest' over HTTP on the given port, pulling missing versions once for the whole "
+      + "LAN, until stopped")
+  private Integer servePort;
+
+  @Option(names = {
+      "--mirror"}, description = "Base URL of an instance started with '--serve', such as "
+      + "'http://updater.lan:8080', to download ChromeDriver from instead of the Chrome for "
+      + "Testing host")
+  private String mirror;
+
+  @Option(names = {
+      "--prefetch"}, description = "After updating, download the ChromeDriver for the Chrome "
+      + "version staged on disk or released on '--channel' into the versions folder, so the "
+      + "update after Chrome's own only extracts and switches")
+  private boolean prefetch;
+
+  @Option(names = {
+      "--channel"}, description = "Chrome for Testing channel that Chrome follows, used by "
+      + "'--prefetch' when no update is staged on disk (default: ${DEFAULT-VALUE})",
+      defaultValue = Prefetcher.DEFAULT_CHANNEL)
+  private String channel;
+
+  @Option(names = {
+      "--metrics-out"}, description = "Write how long each phase took, the bytes downloaded and "
+      + "the cache hits to this file when the run ends, as JSON if it ends with '.json' and for "
+      + "the Prometheus textfile collector otherwise. Watch mode writes it after every update")
+  private File metricsOut;
+
+  @Option(names = {
+      "--seed"}, description = "Download every ChromeDriver of '--seed-versions' for "
+      + "'--seed-platforms' into this folder, in the layout of the Chrome for Testing host, and "
+      + "print the throughput")
+  private File seedFolder;
+
+  @Option(names = {
+      "--seed-versions"}, description = "Versions stored by '--seed', such as '124..126' or "
+      + "'126.0.6478.55..126.0.6478.126'")
+  private String seedVersions;
+
+  @Option(names = {
+      "--seed-platforms"}, split = ",", description = "Chrome for Testing platforms stored by "
+      + "'--seed' (default: ${DEFAULT-VALUE})",
+      defaultValue = "linux64,mac-arm64,mac-x64,win32,win64")
+  private List<String> seedPlatforms;
+
+  @Option(names = {
+      "--switch-to"}, description = "Point '--chromedriver-location' at a version installed "
+      + "before, such as the one before the last update, without downloading anything")
+  private String switchTo;
+
+  @Option(names = {
+      "--watch"}, description = "Keep running and update ChromeDriver whenever Chrome is "
+      + "upgraded")
+  private boolean watch;
+
+  @Option(names = {
+      "--watch-interval"}, description = "Average minutes between the fallback checks of the "
+      + "watch mode, each one is randomly moved up to a quarter of it (default: ${DEFAULT-VALUE})",
+      defaultValue = "60")
+  private long watchIntervalInMinutes;
+
   @Override
   public Integer call() {
-    try {
-      final Os os = detectOs();
-      final ProcessHandler processHandler = new ProcessHandler.ProcessHandlerImpl();
-      final Downloader downloader = new Downloader.DownloaderImpl();
+    if (cacheQuotaInMegabytes <= 0) {
+      throw new ParameterException(spec.commandLine(),
+          "'--cache-quota' must be greater than 0");
+    }
+    if (keepVersions <= 0) {
+      throw new ParameterException(spec.commandLine(),
+          "'--keep-versions' must be greater than 0");
+    }
+    if (maxDownloads <= 0) {
+      throw new ParameterException(spec.commandLine(),
+          "'--max-downloads' must be greater than 0");
+    }
+    if (maxConnections <= 0) {
+      throw new ParameterException(spec.commandLine(),
+          "'--max-connections' must be greater than 0");
+    }
+    if (bandwidthInMegabytes != null && bandwidthInMegabytes <= 0) {
+      throw new ParameterException(spec.commandLine(), "'--bandwidth' must be greater than 0");
+    }
+    if (seedFolder != null) {
+      if (seedVersions == null) {
+        throw new ParameterException(spec.commandLine(),
+            "Missing required option: '--seed-versions'");
+      }
+      try {
+        return seed(Seeder.Range.parse(seedVersions));
+      } catch (IllegalArgumentException e) {
+        throw new ParameterException(spec.commandLine(), e.getMessage());
+      }
+    }
+    if (streaming && pipelined) {
+      throw new ParameterException(spec.commandLine(),
+          "'--streaming' and '--pipelined' cannot be used together");
+    }
+    if (discoverDepth < 0) {
+      throw new ParameterException(spec.commandLine(), "'--discover-depth' cannot be negative");
+    }
+    if (watchIntervalInMinutes <= 0) {
+      throw new ParameterException(spec.commandLine(),
+          "'--watch-interval' must be greater than 0");
+    }
+    if (switchTo != null) {
+      if (chromedriverLocation == null) {
+        throw new ParameterException(spec.commandLine(),
+            "Missing required option: '--chromedriver-location'");
+      }
+      return switchChromedriver();
+    }
+    if (servePort != null) {
+      if (servePort < 0 || servePort > 65535) {
+        throw new ParameterException(spec.commandLine(),
+            "'--serve' must be a port between 0 and 65535");
+      }
+      if (!isFleet() && chromedriverLocation == null) {
+        throw new ParameterException(spec.commandLine(),
+            "Missing required options: '--chromedriver-location', '--manifest' or '--discover'");
+      }
+      return serve();
+    }
+    if (!isFleet() && (chromeLocation == null || chromedriverLocation == null)) {
+      throw new ParameterException(spec.commandLine(),
+          "Missing required options: '--chrome-location' and '--chromedriver-location', "
+              + "'--manifest' or '--discover'");
+    }
 
+    try (Downloader downloader = downloader()) {
+      final Os os = Os.current();
+      final ProcessHandler processHandler = new ProcessHandler.ProcessHandlerImpl();
       System.out.println("Detected OS: " + os);
-      final Chrome chrome = new Chrome(chromeLocation, os, processHandler);
-      final Chromedriver chromedriver = new Chromedriver(chromedriverLocation, os, processHandler,
-          downloader);
 
-      final Version chromeVersion = chrome.getVersion();
-      final Version chromedriverVersion = chromedriver.getVersion();
+      final Callable<Integer> updateOnly = isFleet()
+          ? () -> updateFleet(os, processHandler, downloader)
+          : () -> updatePair(os, processHandler, downloader);
+      final Callable<Integer> update = !prefetch ? updateOnly : () -> {
+        final int exitCode = updateOnly.call();
+        prefetch(os, processHandler, downloader);
+        return exitCode;
+      };
+      if (!watch) {
+        try {
+          return update.call();
+        } finally {
+          writeMetrics();
+        }
+      }
 
-      System.out.println("Chrome Version: " + chromeVersion);
-      System.out.println("ChromeDriver Version: " + chromedriverVersion);
+      final List<Path> chromeLocations = isFleet()
+          ? fleetPairs().stream()
+          .map(pair -> Path.of(pair.chromeLocation()))
+          .distinct()
+          .toList()
+          : List.of(Path.of(chromeLocation));
+      new Watcher(chromeLocations, () -> {
+        try {
+          update.call();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        } finally {
+          writeMetrics();
+        }
+      }, Duration.ofMinutes(watchIntervalInMinutes), WATCH_SETTLE, new Random()).run();
+      return 0;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      System.out.println("Stopped watching Chrome");
+      return 0;
+    } catch (Exception e) {
+      e.printStackTrace(System.err);
+      return 1;
+    }
+  }
 
-      if (!chromedriverVersion.isLessThan(chromeVersion)) {
-        System.out.println("ChromeDriver is up to date!");
-        return 0; // No update needed
+  private Integer switchChromedriver() {
+    try (Downloader downloader = new Downloader.DownloaderImpl()) {
+      final Os os = Os.current();
+      final File versionsFolder = new File(
+          new File(chromedriverLocation).getAbsoluteFile().getParentFile(),
+          Chromedriver.VERSIONS_FOLDER);
+      final Chromedriver chromedriver = new Chromedriver(chromedriverLocation, os,
+          new ProcessHandler.ProcessHandlerImpl(), downloader, Chromedriver.Options.defaults()
+              .withCache(cacheIn(versionsFolder))
+              .withVersionProbe(VersionProbe.cached(versionCacheIn(versionsFolder),
+                  VersionProbe.chromedriver())));
+      try {
+        chromedriver.switchTo(Version.fromRawVersion(switchTo));
+        return 0;
+      } catch (IllegalArgumentException e) {
+        System.err.printf("%s. Installed versions: %s\n", e.getMessage(),
+            chromedriver.getInstalledVersions());
+        return 1;
       }
-      System.out.println("Upgrade needed!");
-      chromedriver.updateTo(chromeVersion);
+    }
+  }
 
+  private Integer serve() {
+    final File versionsFolder = isFleet()
+        ? fleetFolder()
+        : new File(new File(chromedriverLocation).getAbsoluteFile().getParentFile(),
+            Chromedriver.VERSIONS_FOLDER);
+    try (Downloader downloader = downloader();
+        Mirror server = new Mirror(cacheIn(versionsFolder), downloader, checksums(),
+            new InetSocketAddress(servePort))) {
+      server.start();
+      new CountDownLatch(1).await(); // until the process is stopped
       return 0;
-    } catch (Exception e) {
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      System.out.println("Stopped serving");
+      return 0;
+    } catch (IOException e) {
       e.printStackTrace(System.err);
       return 1;
     }
   }
 
-  private static Os detectOs() {
-    final String osName = System.getProperty("os.name").toLowerCase();
-    if (osName.contains("win")) {
-      return Os.WINDOWS;
-    } else if (osName.contains("nux")) {
-      return Os.LINUX;
-    } else if (osName.contains("mac")) {
-      return Os.MACOS;
+  private Integer seed(final Seeder.Range range) {
+    try (Downloader downloader = downloader()) {
+      final Seeder seeder = new Seeder(
+          new DriverIndex(new File(seedFolder, Seeder.INDEX_FOLDER), downloader), downloader,
+          checksums(), seedFolder, maxDownloads);
+      System.out.printf("Seeding ChromeDriver %s to %s for %s into %s\n",
+          range.from().identifier(), range.to().identifier(), String.join(", ", seedPlatforms),
+          seedFolder);
+      final Seeder.Summary summary = seeder.seed(range, seedPlatforms);
+
+      for (Seeder.Result result : summary.results()) {
+        if (result.status() == Seeder.Status.FAILED) {
+          System.out.printf("[FAILED] %s %s: %s\n", result.entry().version().identifier(),
+              result.entry().platform(), result.detail());
+        }
+      }
+      for (String platform : summary.unpublished()) {
+        System.out.printf("No ChromeDriver is published for %s in the range\n", platform);
+      }
+      System.out.printf("Downloaded %d archives (%.1f MB) in %d ms at %.1f MB/s, %d stored before, "
+              + "%d failed\n", summary.count(Seeder.Status.DOWNLOADED),
+          summary.downloadedBytes() / (1024.0 * 1024), summary.elapsed().toMillis(),
+          summary.bytesPerSecond() / (1024 * 1024), summary.count(Seeder.Status.STORED_BEFORE),
+          summary.count(Seeder.Status.FAILED));
+      return summary.count(Seeder.Status.FAILED) == 0 ? 0 : 1;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 1;
+    } finally {
+      writeMetrics();
+    }
+  }
+
+  private Integer updatePair(final Os os, final ProcessHandler processHandler,
+      final Downloader downloader) {
+    final File versionsFolder = new File(
+        new File(chromedriverLocation).getAbsoluteFile().getParentFile(),
+        Chromedriver.VERSIONS_FOLDER);
+    final VersionCache versionCache = versionCacheIn(versionsFolder);
+    final Chrome chrome = new Chrome(chromeLocation, os, processHandler,
+        VersionProbe.cached(versionCache, VersionProbe.chrome()));
+    final Chromedriver chromedriver = new Chromedriver(chromedriverLocation, os, processHandler,
+        downloader, Chromedriver.Options.defaults()
+            .withCache(cacheIn(versionsFolder))
+            .withVersionProbe(VersionProbe.cached(versionCache, VersionProbe.chromedriver()))
+            .withChecksums(checksums())
+            .withStore(store()));
+
+    final UpdatePipeline.Result result = new UpdatePipeline(chrome, chromedriver,
+        new DriverIndex(versionsFolder, downloader), pipelined
+        ? Chromedriver.ExtractionMode.PIPELINED : extractionMode(), compatibility).run();
+
+    System.out.println("Chrome Version: " + result.chromeVersion());
+    System.out.println("ChromeDriver Version: " + result.chromedriverVersion());
+    switch (result.status()) {
+      case UP_TO_DATE -> System.out.println("ChromeDriver is up to date!");
+      case CLOSEST_PUBLISHED -> System.out.printf(
+          "ChromeDriver is the closest published to Chrome %s\n",
+          result.chromeVersion().identifier());
+      case UPDATED -> System.out.printf("Upgraded ChromeDriver from %s to %s\n",
+          result.chromedriverVersion().identifier(), result.installed().identifier());
+    }
+    chromedriver.prune(keepVersions);
+    store().prune(keepVersions);
+    return 0;
+  }
+
+  private Integer updateFleet(final Os os, final ProcessHandler processHandler,
+      final Downloader downloader) throws IOException {
+    final long start = System.nanoTime();
+    final List<Fleet.Pair> pairs = fleetPairs();
+    final File versionsFolder = fleetFolder();
+
+    System.out.printf("Updating %d pairs from %s\n", pairs.size(),
+        manifest != null ? manifest : "the discovered executables");
+    final Fleet fleet = new Fleet(os, processHandler, downloader, cacheIn(versionsFolder),
+        versionCacheIn(versionsFolder), new DriverIndex(versionsFolder, downloader),
+        Fleet.Options.defaults()
+            .withMode(extractionMode())
+            .withCompatibility(compatibility)
+            .withMaxDownloads(maxDownloads)
+            .withChecksums(checksums())
+            .withStore(store())
+            .withReplacement(manifest != null ? Chromedriver.Replacement.SYMLINK
+                : Chromedriver.Replacement.COPY));
+    final List<Fleet.Result> results = fleet.run(pairs);
+    fleet.prune(keepVersions);
+
+    int failures = 0;
+    for (Fleet.Result result : results) {
+      System.out.printf("[%s] %s (%d ms) %s\n", result.status(),
+          result.pair().chromedriverLocation(), result.elapsed().toMillis(), result.detail());
+      if (result.status() == Fleet.Status.FAILED) {
+        failures++;
+      }
+    }
+    System.out.printf("Processed %d pairs (%d failed) in %d ms\n", results.size(), failures,
+        Duration.ofNanos(System.nanoTime() - start).toMillis());
+
+    return failures == 0 ? 0 : 1;
+  }
+
+  // a failed prefetch only means the next update downloads, it doesn't fail the run
+  private void prefetch(final Os os, final ProcessHandler processHandler,
+      final Downloader downloader) throws IOException {
+    final File versionsFolder;
+    final List<Fleet.Pair> pairs;
+    if (isFleet()) {
+      versionsFolder = fleetFolder();
+      pairs = fleetPairs();
     } else {
-      throw new UnsupportedOperationException("Unsupported OS: " + osName);
+      versionsFolder = new File(new File(chromedriverLocation).getAbsoluteFile().getParentFile(),
+          Chromedriver.VERSIONS_FOLDER);
+      pairs = List.of(new Fleet.Pair(chromeLocation, chromedriverLocation));
+    }
+
+    final VersionCache versionCache = versionCacheIn(versionsFolder);
+    final DownloadCache cache = cacheIn(versionsFolder);
+    final DriverIndex index = new DriverIndex(versionsFolder, downloader);
+    final ReleaseChannels channels = new ReleaseChannels(versionsFolder, downloader);
+    final Set<String> chromes = new HashSet<>();
+    for (Fleet.Pair pair : pairs) {
+      // the pairs share the cache, one prefetch per Chrome is enough
+      if (!chromes.add(pair.chromeLocation())) {
+        continue;
+      }
+      try {
+        final Chrome chrome = new Chrome(pair.chromeLocation(), os, processHandler,
+            VersionProbe.cached(versionCache, VersionProbe.chrome()));
+        final Chromedriver chromedriver = new Chromedriver(pair.chromedriverLocation(), os,
+            processHandler, downloader, Chromedriver.Options.defaults()
+                .withCache(cache)
+                .withVersionProbe(VersionProbe.cached(versionCache, VersionProbe.chromedriver()))
+                .withChecksums(checksums()));
+        new Prefetcher(chrome, chromedriver, index, channels, channel).prefetch();
+      } catch (RuntimeException e) {
+        System.out.printf("Failed to prefetch for %s: %s\n", pair.chromeLocation(),
+            e.getMessage());
+      }
     }
   }
+
+  private void writeMetrics() {
+    if (metricsOut == null) {
+      return;
+    }
+    try {
+      Metrics.global().write(metricsOut.toPath());
+    } catch (IOException e) {
+      System.err.printf("Failed to write metrics to %s: %s\n", metricsOut, e.getMessage());
+    }
+  }
+
+  private Chromedriver.ExtractionMode extractionMode() {
+    return streaming ? Chromedriver.ExtractionMode.STREAMING
+        : Chromedriver.ExtractionMode.KEEP_ZIP;
+  }
+
+  private Downloader downloader() {
+    final Downloader downloader = new Downloader.DownloaderImpl(
+        Downloader.DownloaderImpl.DEFAULT_PARALLELISM,
+        Downloader.DownloaderImpl.DEFAULT_SEGMENT_SIZE, maxConnections,
+        bandwidthInMegabytes != null ? new Bandwidth(bandwidthInMegabytes * 1024 * 1024)
+            : Bandwidth.unlimited());
+    return mirror != null
+        ? new Downloader.MirrorDownloader(downloader, Chromedriver.DOWNLOAD_BASE_URL, mirror)
+        : downloader;
+  }
+
+  private Checksums checksums() {
+    return checksumsFile != null ? Checksums.load(checksumsFile) : Checksums.none();
+  }
+
+  private boolean isFleet() {
+    return manifest != null || discoverRoots != null;
+  }
+
+  // the pairs of a manifest share the versions folder next to it, discovered pairs the user cache.
+  // Discovered locations may belong to other users or containers, they get copies instead of links
+  private File fleetFolder() {
+    return manifest != null
+        ? new File(manifest.getAbsoluteFile().getParentFile(), Chromedriver.VERSIONS_FOLDER)
+        : ChromedriverResolver.userCacheFolder();
+  }
+
+  private List<Fleet.Pair> fleetPairs() throws IOException {
+    if (manifest != null) {
+      return Fleet.readManifest(manifest.toPath());
+    }
+
+    final Discovery.Result result = new Discovery(
+        new DirectoryCache(new File(fleetFolder(), Discovery.INDEX_FILE)), discoverDepth)
+        .discover(discoverRoots);
+    System.out.printf(
+        "Discovered %d Chrome and %d ChromeDriver executables in %d directories (%d listed) "
+            + "in %d ms\n", result.chromes().size(), result.chromedrivers().size(),
+        result.directories(), result.listed(), result.elapsed().toMillis());
+    for (Path chromedriver : result.unpaired()) {
+      System.out.printf("[SKIPPED] %s has no Chrome of its own next to it\n", chromedriver);
+    }
+    return result.pairs();
+  }
+
+  private BinaryStore store() {
+    return storeFolder != null ? new BinaryStore(storeFolder) : BinaryStore.none();
+  }
+
+  private DownloadCache cacheIn(final File versionsFolder) {
+    return new DownloadCache(versionsFolder, cacheQuotaInMegabytes * 1024 * 1024);
+  }
+
+  private static VersionCache versionCacheIn(final File versionsFolder) {
+    return new VersionCache(new File(versionsFolder, VersionCache.INDEX_FILE));
+  }
 }
@@ -1,16 +1,27 @@
 package com.dieg0407.utils.chromedriver;
 
+import com.dieg0407.utils.chromedriver.model.Metrics;
 import com.dieg0407.utils.chromedriver.model.Os;
 import com.dieg0407.utils.chromedriver.model.ProcessHandler;
 import com.dieg0407.utils.chromedriver.model.Version;
+import com.dieg0407.utils.chromedriver.model.VersionProbe;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 
 public class Chrome {
 
+  public static final String WINDOWS_STAGED_EXECUTABLE = "new_chrome.exe";
+  public static final String MACOS_FRAMEWORK_VERSIONS =
+      "Frameworks/Google Chrome Framework.framework/Versions";
+
   private final File chromeLocation;
   private final ProcessHandler processHandler;
   private final Os os;
+  private final VersionProbe versionProbe;
 
   /**
    * Constructs a Chrome instance with the specified location, operating system, and process
@@ -24,9 +35,26 @@ public class Chrome {
    */
   public Chrome(final String location, final Os os, final ProcessHandler processHandler)
       throws IllegalArgumentException {
+    this(location, os, processHandler, VersionProbe.chrome());
+  }
+
+  /**
+   * Constructs a Chrome instance that tries the given probe before executing Chrome to obtain its
+   * version.
+   *
+   * @param location       the file path to the Chrome executable
+   * @param os             the operating system on which Chrome is running
+   * @param processHandler the handler for executing processes
+   * @param versionProbe   the probe that reads the version without executing Chrome
+   * @throws IllegalArgumentException if the file does not exist at the specified location or if any
+   *                                  parameter is null
+   */
+  public Chrome(final String location, final Os os, final ProcessHandler processHandler,
+      final VersionProbe versionProbe) throws IllegalArgumentException {
     assert location != null && !location.isEmpty() : "Location cannot be null or empty";
     assert os != null : "Operating system cannot be null";
     assert processHandler != null : "ProcessHandler cannot be null";
+    assert versionProbe != null : "VersionProbe cannot be null";
 
     final File file = new File(location);
     if (!file.exists()) {
@@ -36,19 +64,28 @@ public class Chrome {
     this.chromeLocation = file;
     this.os = os;
     this.processHandler = processHandler;
+    this.versionProbe = versionProbe;
   }
 
   public Version getVersion() {
+    try (Metrics.Span ignored = Metrics.global().start(Metrics.Phase.CHROME_VERSION,
+        chromeLocation)) {
+      return probeVersion();
+    }
+  }
+
+  private Version probeVersion() {
     switch (this.os) {
       case WINDOWS -> {
         return getWindowsVersion();
       }
-      case LINUX -> {
-        return getLinuxVersion();
-      }
-      case MACOS -> {
-        // TODO: Implement macOS version detection
-        throw new UnsupportedOperationException("macOS version detection is not implemented yet.");
+      // reading the bundle is much cheaper than starting the whole browser, where there is one
+      case LINUX, MACOS -> {
+        return this.versionProbe.probe(this.chromeLocation).orElseGet(() -> {
+          final Version version = getProcessVersion();
+          this.versionProbe.record(this.chromeLocation, version);
+          return version;
+        });
       }
       default -> {
         throw new UnsupportedOperationException("Unsupported OS: " + this.os);
@@ -56,7 +93,7 @@ public class Chrome {
     }
   }
 
-  private Version getLinuxVersion() {
+  private Version getProcessVersion() {
     try {
       final ProcessBuilder builder = new ProcessBuilder(chromeLocation.getAbsolutePath(),
           "--version")
@@ -73,7 +110,7 @@ public class Chrome {
 
       return Version.fromRawVersion(last);
     } catch (IOException exception) {
-      throw new RuntimeException("Failed to execute command to get Chrome version on Linux",
+      throw new RuntimeException("Failed to execute command to get Chrome version",
           exception);
     } catch (InterruptedException exception) {
       Thread.currentThread().interrupt();
@@ -85,29 +122,59 @@ public class Chrome {
   // windows doesn't implement a proper cli to get the version
   // so we infer it from the folder version name
   private Version getWindowsVersion() {
-    final String path = this.chromeLocation.getParent();
+    final List<Version> versions = versionFolders(chromeLocation.getParentFile());
+    if (versions.isEmpty()) {
+      throw new IllegalArgumentException(
+          "No valid version directory found in: " + chromeLocation.getParent());
+    }
+    // while an update is staged the running version is the older folder, afterwards the newer one
+    return isStagedOnWindows() ? versions.get(0) : versions.get(versions.size() - 1);
+  }
 
-    final File folder = new File(path);
-    if (!folder.exists() || !folder.isDirectory()) {
-      throw new IllegalArgumentException("The specified path is not a valid directory: " + path);
+  /**
+   * Looks for a Chrome update that was installed next to the running version and is used after the
+   * next restart: a new version folder with {@value WINDOWS_STAGED_EXECUTABLE} on windows or a new
+   * framework version in the bundle on macOS. Linux packages replace the binary in place, nothing
+   * is staged there.
+   *
+   * @return the staged version or empty if no newer version is staged
+   */
+  public Optional<Version> getStagedVersion() {
+    final File folder = switch (this.os) {
+      case WINDOWS -> isStagedOnWindows() ? chromeLocation.getParentFile() : null;
+      case MACOS -> new File(chromeLocation.getAbsoluteFile().getParentFile().getParentFile(),
+          MACOS_FRAMEWORK_VERSIONS);
+      case LINUX -> null;
+    };
+    if (folder == null || !folder.isDirectory()) {
+      return Optional.empty();
     }
 
-    final File[] elements = folder.listFiles();
-    assert elements != null : "Folder should not be empty";
-    for (File element : elements) {
-      if (!element.isDirectory()) {
-        continue;
-      }
+    final List<Version> versions = versionFolders(folder);
+    if (versions.isEmpty()) {
+      return Optional.empty();
+    }
+    final Version newest = versions.get(versions.size() - 1);
+    return newest.compareTo(getVersion()) > 0 ? Optional.of(newest) : Optional.empty();
+  }
 
-      final String name = element.getName();
-      if (!name.matches("\\d+\\.\\d+\\.\\d+\\.\\d+")) {
-        continue;
-      }
+  private boolean isStagedOnWindows() {
+    return new File(chromeLocation.getParentFile(), WINDOWS_STAGED_EXECUTABLE).exists();
+  }
 
-      return Version.fromRawVersion(name);
+  private static List<Version> versionFolders(final File folder) {
+    if (folder == null || !folder.isDirectory()) {
+      throw new IllegalArgumentException("The specified path is not a valid directory: " + folder);
     }
 
-    throw new IllegalArgumentException("No valid version directory found in: " + path);
+    final File[] elements = folder.listFiles(File::isDirectory);
+    final List<Version> versions = new ArrayList<>();
+    for (File element : elements == null ? new File[0] : elements) {
+      if (element.getName().matches("\\d+\\.\\d+\\.\\d+\\.\\d+")) {
+        versions.add(Version.fromRawVersion(element.getName()));
+      }
+    }
+    Collections.sort(versions);
+    return versions;
   }
-
 }
@@ -2,32 +2,169 @@ package com.dieg0407.utils.chromedriver;
 
 import static java.lang.String.format;
 
+import com.dieg0407.utils.chromedriver.model.AtomicFiles;
+import com.dieg0407.utils.chromedriver.model.BinaryStore;
+import com.dieg0407.utils.chromedriver.model.Checksums;
+import com.dieg0407.utils.chromedriver.model.DownloadCache;
 import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.FileLease;
+import com.dieg0407.utils.chromedriver.model.Log;
+import com.dieg0407.utils.chromedriver.model.Metrics;
 import com.dieg0407.utils.chromedriver.model.Os;
 import com.dieg0407.utils.chromedriver.model.ProcessHandler;
 import com.dieg0407.utils.chromedriver.model.Version;
+import com.dieg0407.utils.chromedriver.model.VersionProbe;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
-import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 public class Chromedriver {
 
+  /**
+   * How a downloaded zip is turned into the ChromeDriver executable.
+   */
+  public enum ExtractionMode {
+    /**
+     * The zip is written to disk, kept in the download cache and then extracted.
+     */
+    KEEP_ZIP,
+    /**
+     * The executable is extracted while the zip is downloaded, the zip never touches the disk.
+     * Nothing is left for other processes to reuse, so no lease is taken and processes sharing a
+     * versions folder each stream their own download.
+     */
+    STREAMING,
+    /**
+     * The executable is extracted while the zip is downloaded and the zip is kept in the download
+     * cache as it arrives, so extraction and verification end with the download. The zip is
+     * downloaded over a single connection.
+     */
+    PIPELINED,
+  }
+
+  /**
+   * How the ChromeDriver location is pointed at an installed version.
+   */
+  public enum Replacement {
+    /**
+     * The location becomes a symbolic link to the installed version, or a copy where links can't
+     * be created.
+     */
+    SYMLINK,
+    /**
+     * The location becomes a hard link to the installed version, or a copy of it on another
+     * filesystem, for locations read by users or containers that can't see the versions folder.
+     */
+    COPY,
+  }
+
   public static final String VERSIONS_FOLDER = "versions";
-  public static final String DOWNLOAD_URL_TEMPLATE = "https://storage.googleapis.com/chrome-for-testing-public/%s/%s/chromedriver-%s.zip";
+  public static final String LINKS_FILE = "links";
+  public static final String DOWNLOAD_BASE_URL = "https://storage.googleapis.com/chrome-for-testing-public";
+  public static final String DOWNLOAD_URL_TEMPLATE = DOWNLOAD_BASE_URL + "/%s/%s/chromedriver-%s.zip";
+
+  private static final Set<PosixFilePermission> EXECUTABLE = PosixFilePermissions.fromString(
+      "rwxr-xr-x");
+  private static final int EXTRACTION_BUFFER_SIZE = 1024 * 1024;
 
   private final File chromedriverLocation;
   private final Os os;
   private final ProcessHandler processHandler;
   private final Downloader downloader;
+  private final DownloadCache cache;
+  private final VersionProbe versionProbe;
+  private final Checksums checksums;
+  private final BinaryStore store;
+  private final Replacement replacement;
+
+  /**
+   * The collaborators of a Chromedriver that have a default. Start from {@link #defaults()} and
+   * replace the ones that differ.
+   *
+   * @param cache        the cache where the downloads are stored and extracted, null for the
+   *                     {@value VERSIONS_FOLDER} folder next to the executable
+   * @param versionProbe the probe that reads the version without executing ChromeDriver
+   * @param checksums    the expected digests of the archives
+   * @param store        the store of the canonical executables
+   * @param replacement  how the location is pointed at an installed version
+   */
+  public record Options(DownloadCache cache, VersionProbe versionProbe, Checksums checksums,
+                        BinaryStore store, Replacement replacement) {
+
+    public Options {
+      assert versionProbe != null : "VersionProbe cannot be null";
+      assert checksums != null : "Checksums cannot be null";
+      assert store != null : "BinaryStore cannot be null";
+      assert replacement != null : "Replacement cannot be null";
+    }
+
+    /**
+     * The options of a Chromedriver that caches its downloads next to its executable, probes the
+     * version of ChromeDriver without executing it when possible, verifies no checksum, keeps no
+     * canonical executable and links its location to the installed version.
+     *
+     * @return the default options
+     */
+    public static Options defaults() {
+      return new Options(null, VersionProbe.chromedriver(), Checksums.none(), BinaryStore.none(),
+          Replacement.SYMLINK);
+    }
+
+    public Options withCache(final DownloadCache cache) {
+      return new Options(cache, versionProbe, checksums, store, replacement);
+    }
+
+    public Options withVersionProbe(final VersionProbe versionProbe) {
+      return new Options(cache, versionProbe, checksums, store, replacement);
+    }
+
+    public Options withChecksums(final Checksums checksums) {
+      return new Options(cache, versionProbe, checksums, store, replacement);
+    }
+
+    public Options withStore(final BinaryStore store) {
+      return new Options(cache, versionProbe, checksums, store, replacement);
+    }
+
+    public Options withReplacement(final Replacement replacement) {
+      return new Options(cache, versionProbe, checksums, store, replacement);
+    }
+  }
 
   /**
-   * Constructs a Chromedriver instance with the specified location and process handler.
+   * Constructs a Chromedriver instance with the specified location and process handler. Downloads
+   * are cached in the {@value VERSIONS_FOLDER} folder next to the executable.
    *
    * @param location       the file path to the ChromeDriver executable
    * @param processHandler the handler for executing processes
@@ -38,23 +175,88 @@ public class Chromedriver {
    */
   public Chromedriver(final String location, final Os os, final ProcessHandler processHandler,
       final Downloader downloader) throws IllegalArgumentException {
-    assert location != null && !location.isEmpty() : "Location cannot be null or empty";
+    this(location, os, processHandler, downloader, Options.defaults());
+  }
+
+  /**
+   * Constructs a Chromedriver instance with the given options.
+   *
+   * @param location       the file path to the ChromeDriver executable
+   * @param processHandler the handler for executing processes
+   * @param os             the operating system on which ChromeDriver is running
+   * @param downloader     the downloader for fetching ChromeDriver updates
+   * @param options        the collaborators that differ from their defaults
+   * @throws IllegalArgumentException if the file does not exist at the specified location or if any
+   *                                  parameter is null
+   */
+  public Chromedriver(final String location, final Os os, final ProcessHandler processHandler,
+      final Downloader downloader, final Options options) throws IllegalArgumentException {
+    this(existing(location), os, processHandler, downloader, options);
+  }
+
+  private Chromedriver(final File location, final Os os, final ProcessHandler processHandler,
+      final Downloader downloader, final Options options) {
     assert processHandler != null : "ProcessHandler cannot be null";
     assert os != null : "Operating System cannot be null";
     assert downloader != null : "Downloader cannot be null";
+    assert options != null : "Options cannot be null";
+
+    this.chromedriverLocation = location;
+    this.os = os;
+    this.processHandler = processHandler;
+    this.downloader = downloader;
+    this.cache = options.cache() != null ? options.cache() : defaultCache(location);
+    this.versionProbe = options.versionProbe();
+    this.checksums = options.checksums();
+    this.store = options.store();
+    this.replacement = options.replacement();
+  }
+
+  /**
+   * Constructs a Chromedriver that has no location of its own and only installs versions side by
+   * side in the given versions folder, for callers that use the installed executables directly.
+   * Neither {@link #updateTo} nor {@link #switchTo} apply to it.
+   *
+   * @param versionsFolder the folder where the downloads are cached and the versions installed
+   * @param os             the operating system on which ChromeDriver will run
+   * @param processHandler the handler for executing processes
+   * @param downloader     the downloader for fetching ChromeDriver builds
+   * @param checksums      the expected digests of the archives
+   * @return the Chromedriver of the versions folder
+   */
+  static Chromedriver inVersionsFolder(final File versionsFolder, final Os os,
+      final ProcessHandler processHandler, final Downloader downloader,
+      final Checksums checksums) {
+    assert versionsFolder != null : "Versions folder cannot be null";
+
+    return new Chromedriver(new File(versionsFolder, executableName(os)), os, processHandler,
+        downloader, Options.defaults()
+            .withCache(new DownloadCache(versionsFolder, DownloadCache.DEFAULT_QUOTA_IN_BYTES))
+            .withChecksums(checksums));
+  }
+
+  private static File existing(final String location) {
+    assert location != null && !location.isEmpty() : "Location cannot be null or empty";
 
     final File file = new File(location);
     if (!file.exists()) {
       throw new IllegalArgumentException("File does not exist: " + location);
     }
-
-    this.chromedriverLocation = file;
-    this.os = os;
-    this.processHandler = processHandler;
-    this.downloader = downloader;
+    return file;
   }
 
   public Version getVersion() {
+    try (Metrics.Span ignored = Metrics.global().start(Metrics.Phase.CHROMEDRIVER_VERSION,
+        chromedriverLocation)) {
+      return versionProbe.probe(chromedriverLocation).orElseGet(() -> {
+        final Version version = getProcessVersion();
+        versionProbe.record(chromedriverLocation, version);
+        return version;
+      });
+    }
+  }
+
+  private Version getProcessVersion() {
     try {
       final ProcessBuilder builder = new ProcessBuilder(chromedriverLocation.getAbsolutePath(),
           "--version")
@@ -74,105 +276,693 @@ public class Chromedriver {
     }
   }
 
+  /**
+   * Downloads the ChromeDriver matching the given Chrome version and replaces the current
+   * executable with it. The downloaded zip is kept in the cache.
+   *
+   * @param chromeVersion the version of Chrome that the driver should match
+   */
   public void updateTo(final Version chromeVersion) {
-    assert chromeVersion != null : "Chrome version cannot be null";
+    updateTo(chromeVersion, ExtractionMode.KEEP_ZIP);
+  }
+
+  /**
+   * Downloads the ChromeDriver matching the given Chrome version and replaces the current
+   * executable with it.
+   *
+   * @param chromeVersion the version of Chrome that the driver should match
+   * @param mode          whether the downloaded zip is kept in the cache or streamed
+   */
+  public void updateTo(final Version chromeVersion, final ExtractionMode mode) {
+    updateTo(defaultDownload(chromeVersion), mode);
+  }
+
+  /**
+   * Downloads the given ChromeDriver build and replaces the current executable with it.
+   *
+   * @param download the ChromeDriver build to install
+   * @param mode     whether the downloaded zip is kept in the cache or streamed
+   */
+  public void updateTo(final DriverIndex.Entry download, final ExtractionMode mode) {
+    assert download != null : "Download cannot be null";
+
+    final File extractedFile = fetch(download, mode);
+    install(extractedFile, download.version());
+
+    if (!extractedFile.delete()) {
+      Log.printf("Could not remove extracted ChromeDriver at %s\n",
+          extractedFile.getAbsolutePath());
+    }
+  }
+
+  /**
+   * Obtains the ChromeDriver matching the given Chrome version, from the cache or by downloading
+   * it, and extracts its executable into the cache folder. The extracted file is named after the
+   * version and the process, so several versions and processes can fetch into the same folder at
+   * the same time.
+   *
+   * @param chromeVersion the version of Chrome that the driver should match
+   * @param mode          whether a downloaded zip is kept in the cache or streamed. A cached zip
+   *                      is used in both modes
+   * @return the extracted ChromeDriver executable
+   */
+  public File fetch(final Version chromeVersion, final ExtractionMode mode) {
+    return fetch(defaultDownload(chromeVersion), mode);
+  }
 
-    // check if version folders exists in location
-    final File versionsFolder = new File(chromedriverLocation.getParentFile(), VERSIONS_FOLDER);
+  /**
+   * Obtains the given ChromeDriver build, from the cache or by downloading it, and extracts its
+   * executable into the cache folder. The archive is verified against the checksums before the
+   * executable is extracted, with the digest computed while it was downloaded or the one recorded
+   * when it was cached.
+   *
+   * @param download the ChromeDriver build to fetch
+   * @param mode     whether a downloaded zip is kept in the cache or streamed. A cached zip is
+   *                 used in both modes
+   * @return the extracted ChromeDriver executable
+   * @throws Checksums.MismatchException if the archive doesn't have the expected digest
+   */
+  public File fetch(final DriverIndex.Entry download, final ExtractionMode mode) {
+    assert download != null : "Download cannot be null";
+    assert mode != null : "Extraction mode cannot be null";
+
+    final Version chromeVersion = download.version();
+    final String type = download.platform();
+    final URI downloadUrl = download.url();
+
+    final File versionsFolder = cache.getFolder();
     if (!versionsFolder.exists() && !versionsFolder.mkdirs()) {
       throw new RuntimeException(
           "Failed to create versions folder: " + versionsFolder.getAbsolutePath());
     }
 
-    final String type = getOsType(os);
+    // other processes may be extracting the same version into a shared folder
+    final File extractedFile = new File(versionsFolder, format("chromedriver-%s.%s.%d",
+        chromeVersion.identifier(), type, ProcessHandle.current().pid()));
     try {
-      final String downloadFileName = format("chromedriver-%s.%s.zip", chromeVersion.identifier(),
-          type);
-      final URI downloadUrl = new URI(
-          format(DOWNLOAD_URL_TEMPLATE, chromeVersion.identifier(), type, type));
-
-      System.out.printf(
-          "Downloading ChromeDriver version %s for %s into %s\n",
-          chromeVersion.identifier(), type, downloadFileName
-      );
-
-      final File zipFile = downloader.download(downloadUrl,
-          new File(versionsFolder, downloadFileName));
-      if (!zipFile.exists()) {
-        throw new RuntimeException("Failed to download ChromeDriver: " + zipFile.getAbsolutePath());
-      }
-
-      System.out.printf("Downloaded ChromeDriver version %s for %s into %s\n",
-          chromeVersion.identifier(), type, downloadFileName);
-
-      File extractedFile = null;
-      try (InputStream inputStream = new FileInputStream(zipFile);
-          ZipInputStream zipInputStream = new ZipInputStream(inputStream)) {
-
-        ZipEntry zipEntry = zipInputStream.getNextEntry();
-        while (zipEntry != null) {
-          System.out.printf("Processing entry: %s\n", zipEntry.getName());
-          if (!zipEntry.isDirectory() && zipEntry.getName().endsWith("/chromedriver") ||
-              zipEntry.getName().endsWith("/chromedriver.exe")) {
-
-            extractedFile = new File(versionsFolder, "chromedriver");
-            if (extractedFile.exists() && !extractedFile.delete()) {
-              throw new RuntimeException(
-                  "Failed to delete existing chromedriver: " + extractedFile.getAbsolutePath());
-            }
-            try (var outputStream = new FileOutputStream(extractedFile)) {
-              byte[] buffer = new byte[1024];
-              int len;
-              while ((len = zipInputStream.read(buffer)) > 0) {
-                outputStream.write(buffer, 0, len);
-              }
+      final Optional<File> cached = cache.get(chromeVersion, type);
+      Metrics.global().cacheLookup("download", cached.isPresent());
+      if (cached.isPresent()) {
+        Log.printf("Using cached ChromeDriver version %s for %s from %s\n",
+            chromeVersion.identifier(), type, cached.get().getName());
+        // the digest was recorded when the archive was cached, it isn't read again
+        cache.digestOf(chromeVersion, type).ifPresent(sha256 -> verify(downloadUrl, sha256));
+        return extract(cached.get(), type, extractedFile);
+      }
+
+      if (mode == ExtractionMode.STREAMING) {
+        Log.printf("Streaming ChromeDriver version %s for %s from %s\n",
+            chromeVersion.identifier(), type, downloadUrl);
+        final MessageDigest digest = Checksums.sha256();
+        final boolean verifiable = checksums.expected(downloadUrl).isPresent();
+        try (Metrics.Span span = Metrics.global().start(Metrics.Phase.DOWNLOAD, downloadUrl);
+            InputStream inputStream = new DigestInputStream(
+                new CountingInputStream(downloader.open(downloadUrl), span), digest)) {
+          final File extracted = extractStream(inputStream, extractedFile,
+              downloadUrl.toString(), verifiable);
+          if (verifiable) {
+            try {
+              verify(downloadUrl, Checksums.hex(digest));
+            } catch (Checksums.MismatchException e) {
+              Files.deleteIfExists(extracted.toPath());
+              throw e;
             }
-            System.out.printf("Extracted ChromeDriver to %s\n", extractedFile.getAbsolutePath());
+          }
+          return extracted;
+        }
+      }
+
+      if (mode == ExtractionMode.PIPELINED) {
+        return downloadExtracting(download, extractedFile);
+      }
+
+      return extract(downloadOnce(download), type, extractedFile);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Downloads and verifies the given ChromeDriver build into the cache without extracting or
+   * installing it, so a later update to it only extracts and switches. A cached build isn't
+   * downloaded again.
+   *
+   * @param download the ChromeDriver build to prefetch
+   * @return the cached archive
+   * @throws Checksums.MismatchException if the archive doesn't have the expected digest
+   */
+  public File prefetch(final DriverIndex.Entry download) {
+    assert download != null : "Download cannot be null";
+
+    final File versionsFolder = cache.getFolder();
+    if (!versionsFolder.exists() && !versionsFolder.mkdirs()) {
+      throw new RuntimeException(
+          "Failed to create versions folder: " + versionsFolder.getAbsolutePath());
+    }
+
+    final Optional<File> cached = cache.get(download.version(), download.platform());
+    Metrics.global().cacheLookup("download", cached.isPresent());
+    if (cached.isPresent()) {
+      Log.printf("ChromeDriver version %s for %s is already cached\n",
+          download.version().identifier(), download.platform());
+      cache.digestOf(download.version(), download.platform())
+          .ifPresent(sha256 -> verify(download.url(), sha256));
+      return cached.get();
+    }
+    return downloadOnce(download);
+  }
+
+  // one process downloads the archive, the others wait for its lease and find it cached
+  private File downloadOnce(final DriverIndex.Entry download) {
+    final Version chromeVersion = download.version();
+    final String type = download.platform();
+    try (FileLease lease = cache.lease(chromeVersion, type)) {
+      final Optional<File> downloaded = cache.get(chromeVersion, type);
+      if (downloaded.isPresent()) {
+        Metrics.global().cacheLookup("download", true);
+        Log.printf("Using ChromeDriver version %s for %s downloaded by another process\n",
+            chromeVersion.identifier(), type);
+        cache.digestOf(chromeVersion, type).ifPresent(sha256 -> verify(download.url(), sha256));
+        return downloaded.get();
+      }
+      return download(download.url(), chromeVersion, type, new File(cache.getFolder(),
+          format("chromedriver-%s.%s.zip", chromeVersion.identifier(), type)));
+    }
+  }
+
+  // the executable and the cached zip are written from the same bytes as they arrive, the CRC of
+  // the executable is checked by the zip stream and the digest is ready once the last byte is in
+  private File downloadExtracting(final DriverIndex.Entry download, final File extractedFile)
+      throws IOException {
+    final Version chromeVersion = download.version();
+    final String type = download.platform();
+    final URI downloadUrl = download.url();
+    try (FileLease lease = cache.lease(chromeVersion, type)) {
+      final Optional<File> downloaded = cache.get(chromeVersion, type);
+      if (downloaded.isPresent()) {
+        Log.printf("Using ChromeDriver version %s for %s downloaded by another process\n",
+            chromeVersion.identifier(), type);
+        cache.digestOf(chromeVersion, type).ifPresent(sha256 -> verify(downloadUrl, sha256));
+        return extract(downloaded.get(), type, extractedFile);
+      }
+
+      Log.printf("Downloading and extracting ChromeDriver version %s for %s from %s\n",
+          chromeVersion.identifier(), type, downloadUrl);
+      final File zipFile = new File(cache.getFolder(),
+          format("chromedriver-%s.%s.zip", chromeVersion.identifier(), type));
+      final MessageDigest digest = Checksums.sha256();
+      final File extracted;
+      try (Metrics.Span span = Metrics.global().start(Metrics.Phase.DOWNLOAD, downloadUrl);
+          OutputStream zip = Files.newOutputStream(zipFile.toPath());
+          InputStream inputStream = new DigestInputStream(new TeeInputStream(
+              new CountingInputStream(downloader.open(downloadUrl), span), zip), digest)) {
+        extracted = extractStream(inputStream, extractedFile, downloadUrl.toString(), true);
+      } catch (IOException | RuntimeException e) {
+        Files.deleteIfExists(zipFile.toPath());
+        Files.deleteIfExists(extractedFile.toPath());
+        throw e;
+      }
+
+      final String sha256 = Checksums.hex(digest);
+      try {
+        verify(downloadUrl, sha256);
+      } catch (Checksums.MismatchException e) {
+        Files.deleteIfExists(zipFile.toPath());
+        Files.deleteIfExists(extracted.toPath());
+        throw e;
+      }
+      cache.put(chromeVersion, type, zipFile, sha256);
+      return extracted;
+    }
+  }
+
+  /**
+   * Finds the ChromeDriver build for the given Chrome version in the index. When the index doesn't
+   * know any build for that major version, the build named after the Chrome version is assumed.
+   *
+   * @param chromeVersion the version of Chrome that the driver should match
+   * @param index         the index of the published ChromeDriver builds
+   * @return the ChromeDriver build to install
+   */
+  public DriverIndex.Entry resolve(final Version chromeVersion, final DriverIndex index) {
+    assert chromeVersion != null : "Chrome version cannot be null";
+    assert index != null : "Index cannot be null";
+
+    return index.nearest(chromeVersion, getPlatform())
+        .orElseGet(() -> defaultDownload(chromeVersion));
+  }
+
+  /**
+   * Returns the Chrome for Testing platform of this ChromeDriver, such as {@code linux64}.
+   *
+   * @return the platform
+   */
+  public String getPlatform() {
+    return getOsType(os);
+  }
+
+  private DriverIndex.Entry defaultDownload(final Version chromeVersion) {
+    assert chromeVersion != null : "Chrome version cannot be null";
+
+    final String type = getOsType(os);
+    return new DriverIndex.Entry(chromeVersion, type,
+        URI.create(format(DOWNLOAD_URL_TEMPLATE, chromeVersion.identifier(), type, type)));
+  }
+
+  private void verify(final URI url, final String sha256) {
+    if (checksums.verify(url, sha256)) {
+      Log.printf("Verified SHA-256 %s of %s\n", sha256, url);
+    }
+  }
+
+  // jumps to the executable through the central directory instead of inflating every entry
+  private static File extract(final File zipFile, final String type, final File extractedFile)
+      throws IOException {
+    try (Metrics.Span span = Metrics.global().start(Metrics.Phase.EXTRACTION, zipFile);
+        ZipFile zip = new ZipFile(zipFile)) {
+      ZipEntry entry = zip.getEntry(format("chromedriver-%s/%s", type,
+          type.startsWith("win") ? "chromedriver.exe" : "chromedriver"));
+      if (entry == null) {
+        // the layout changed, look for the executable anywhere
+        entry = zip.stream().filter(Chromedriver::isExecutable).findFirst()
+            .orElseThrow(() -> new RuntimeException(
+                "Failed to extract ChromeDriver from zip file: " + zipFile.getAbsolutePath()));
+      }
+      // unlike a zip stream, a zip file doesn't check the CRC of what it inflates
+      final CheckedInputStream inputStream = new CheckedInputStream(zip.getInputStream(entry),
+          new CRC32());
+      try (inputStream) {
+        write(inputStream, extractedFile);
+      }
+      if (entry.getCrc() != -1 && inputStream.getChecksum().getValue() != entry.getCrc()) {
+        Files.deleteIfExists(extractedFile.toPath());
+        throw new ZipException(format("Invalid CRC-32 of %s in %s", entry.getName(),
+            zipFile.getAbsolutePath()));
+      }
+      span.bytes(extractedFile.length());
+      return extractedFile;
+    }
+  }
+
+  // a stream can only be read in order, the entries before the executable are skipped. The zip
+  // stream checks the CRC of every entry it reads
+  private static File extractStream(final InputStream inputStream, final File extractedFile,
+      final String source, final boolean readToEnd) throws IOException {
+    File extracted = null;
+    try (ZipInputStream zipInputStream = new ZipInputStream(inputStream)) {
+      ZipEntry zipEntry = zipInputStream.getNextEntry();
+      while (zipEntry != null) {
+        if (extracted == null && isExecutable(zipEntry)) {
+          extracted = write(zipInputStream, extractedFile);
+          if (!readToEnd) {
             break;
           }
-          zipEntry = zipInputStream.getNextEntry();
         }
+        zipEntry = zipInputStream.getNextEntry();
+      }
+      if (readToEnd) {
+        // the central directory after the entries is part of the digest too
+        inputStream.transferTo(OutputStream.nullOutputStream());
+      }
+    }
+
+    if (extracted == null) {
+      throw new RuntimeException("Failed to extract ChromeDriver from zip file: " + source);
+    }
+    return extracted;
+  }
+
+  private static boolean isExecutable(final ZipEntry zipEntry) {
+    final String name = zipEntry.getName();
+    return !zipEntry.isDirectory()
+        && (name.endsWith("/chromedriver") || name.endsWith("/chromedriver.exe"));
+  }
+
+  // the file is created executable, so installing it needs no chmod
+  private static File write(final InputStream inputStream, final File extractedFile)
+      throws IOException {
+    final Path path = extractedFile.toPath();
+    Files.deleteIfExists(path);
+
+    final FileAttribute<?>[] attributes = supportsPosix()
+        ? new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(EXECUTABLE)}
+        : new FileAttribute<?>[0];
+    try (FileChannel channel = FileChannel.open(path, Set.of(StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.WRITE), attributes)) {
+      final ReadableByteChannel source = Channels.newChannel(inputStream);
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(EXTRACTION_BUFFER_SIZE);
+      while (source.read(buffer) >= 0) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        buffer.clear();
+      }
+    }
+    Log.printf("Extracted ChromeDriver to %s\n", extractedFile.getAbsolutePath());
+    return extractedFile;
+  }
+
+  // counts the compressed bytes of a streamed download, the extracted size is all that's left
+  private static final class CountingInputStream extends FilterInputStream {
+
+    private final Metrics.Span span;
+
+    private CountingInputStream(final InputStream inputStream, final Metrics.Span span) {
+      super(inputStream);
+      this.span = span;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int read = super.read();
+      if (read != -1) {
+        span.bytes(1);
       }
+      return read;
+    }
 
-      if (extractedFile == null || !extractedFile.exists()) {
-        throw new RuntimeException(
-            "Failed to extract ChromeDriver from zip file: " + zipFile.getAbsolutePath());
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+      final int read = super.read(buffer, offset, length);
+      if (read > 0) {
+        span.bytes(read);
       }
+      return read;
+    }
+  }
+
+  private static final class TeeInputStream extends FilterInputStream {
 
-      // replace the existing chromedriver with the new one
-      if (chromedriverLocation.exists() && !chromedriverLocation.delete()) {
-        throw new RuntimeException(
-            "Failed to delete existing chromedriver: " + chromedriverLocation.getAbsolutePath());
+    private final OutputStream copy;
+
+    private TeeInputStream(final InputStream inputStream, final OutputStream copy) {
+      super(inputStream);
+      this.copy = copy;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int read = super.read();
+      if (read != -1) {
+        copy.write(read);
       }
+      return read;
+    }
 
-      if (!extractedFile.renameTo(chromedriverLocation)) {
-        throw new RuntimeException("Failed to rename extracted chromedriver to: "
-            + chromedriverLocation.getAbsolutePath());
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+      final int read = super.read(buffer, offset, length);
+      if (read > 0) {
+        copy.write(buffer, offset, read);
       }
+      return read;
+    }
+  }
+
+  private static boolean supportsPosix() {
+    return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+  }
 
-      System.out.printf("Updated ChromeDriver to version %s at %s\n",
-          chromeVersion.identifier(), chromedriverLocation.getAbsolutePath());
+  /**
+   * Installs the given extracted executable into {@code versions/<version>/} and switches the
+   * ChromeDriver location to it. The extracted file is left untouched, so the same file can be
+   * installed into several locations.
+   *
+   * @param extractedFile the extracted ChromeDriver executable
+   * @param chromeVersion the version of the extracted ChromeDriver
+   */
+  public void install(final File extractedFile, final Version chromeVersion) {
+    installVersion(extractedFile, chromeVersion);
+    switchTo(chromeVersion);
+  }
+
+  /**
+   * Installs the given extracted executable into {@code versions/<version>/} without touching the
+   * ChromeDriver location. A version that is already installed is kept as it is.
+   *
+   * @param extractedFile the extracted ChromeDriver executable
+   * @param chromeVersion the version of the extracted ChromeDriver
+   * @return the installed executable
+   */
+  public Path installVersion(final File extractedFile, final Version chromeVersion) {
+    assert extractedFile != null && extractedFile.exists() : "Extracted file must exist";
+    assert chromeVersion != null : "Chrome version cannot be null";
 
-      // if linux execute chmod +x
-      if (os == Os.LINUX) {
-        ProcessBuilder chmodBuilder = new ProcessBuilder("chmod", "+x",
-            chromedriverLocation.getAbsolutePath());
-        processHandler.getOutput(chmodBuilder, 5000);
-        System.out.println("Set executable permissions for ChromeDriver on Linux.");
+    final Path installed = getInstalledPath(chromeVersion);
+    try (Metrics.Span span = Metrics.global().start(Metrics.Phase.INSTALL, installed)) {
+      // a version is only ever moved into place complete, so an existing one can be reused
+      if (!Files.isRegularFile(installed)) {
+        Files.createDirectories(installed.getParent());
+        final Path staged = Files.createTempFile(installed.getParent(), installed.getFileName()
+            .toString(), ".tmp");
+        final BinaryStore.Method method = store.materialize(extractedFile.toPath(), chromeVersion,
+            staged);
+        if (method == BinaryStore.Method.HARDLINK) {
+          // a link shares the permissions of the canonical executable and writes nothing
+          AtomicFiles.move(staged, installed);
+          Log.printf("Linked ChromeDriver version %s into %s\n", chromeVersion.identifier(),
+              installed.getParent());
+        } else {
+          if (os != Os.WINDOWS && supportsPosix()) {
+            // the umask may have dropped some bits when the file was created
+            Files.setPosixFilePermissions(staged, EXECUTABLE);
+          }
+          AtomicFiles.move(staged, installed);
+          span.bytes(Files.size(installed));
+        }
       }
-    } catch (URISyntaxException | IOException e) {
-      throw new RuntimeException(e);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-      throw new RuntimeException("Update interrupted", e);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to install chromedriver: " + installed, e);
     }
+    return installed;
+  }
+
+  /**
+   * Points the ChromeDriver location at a version installed before, without downloading anything.
+   * The location is replaced with a single rename, by a symbolic link to the installed version or
+   * by a copy of it where links can't be created or {@link Replacement#COPY} was asked for, so a
+   * process starting ChromeDriver at the same time either finds the previous version or the new
+   * one.
+   *
+   * @param version the installed version to use
+   * @throws IllegalArgumentException if the version isn't installed
+   */
+  public void switchTo(final Version version) {
+    assert version != null : "Version cannot be null";
+
+    final Path installed = getInstalledPath(version);
+    if (!Files.isRegularFile(installed)) {
+      throw new IllegalArgumentException(
+          format("ChromeDriver %s is not installed in %s", version.identifier(),
+              installed.getParent()));
+    }
+
+    final Path location = chromedriverLocation.toPath();
+    final Path staged = location.resolveSibling(
+        chromedriverLocation.getName() + ".new." + ProcessHandle.current().pid());
+    try (Metrics.Span ignored = Metrics.global().start(Metrics.Phase.REPLACEMENT, location)) {
+      Files.deleteIfExists(staged);
+      boolean linked = false;
+      if (replacement == Replacement.COPY) {
+        linkOrCopy(installed, staged);
+      } else {
+        try {
+          Files.createSymbolicLink(staged, installed.toAbsolutePath());
+          linked = true;
+        } catch (UnsupportedOperationException | IOException e) {
+          // creating symbolic links needs a privilege on windows, hard links don't
+          linkOrCopy(installed, staged);
+        }
+      }
+      AtomicFiles.move(staged, location);
+      if (linked) {
+        recordLink(installed, location);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "Failed to replace chromedriver: " + chromedriverLocation.getAbsolutePath(), e);
+    }
+
+    Log.printf("Updated ChromeDriver to version %s at %s\n", version.identifier(),
+        chromedriverLocation.getAbsolutePath());
+
+    // the next run knows the installed version without probing it
+    versionProbe.record(chromedriverLocation, version);
+  }
+
+  /**
+   * Removes the installed versions older than the given number of newest ones. A version is kept
+   * while a location links to it, such as the location of this ChromeDriver or another location
+   * sharing the versions folder, so no symbolic link is left dangling. Locations holding a hard
+   * link or a copy don't depend on the installed version.
+   *
+   * @param keep the number of newest versions that are always kept
+   * @return the removed versions
+   */
+  public List<Version> prune(final int keep) {
+    assert keep > 0 : "At least one version has to be kept";
+
+    final List<Version> installed = getInstalledVersions();
+    final List<Version> removed = new ArrayList<>();
+    for (Version version : installed.subList(0, Math.max(0, installed.size() - keep))) {
+      if (isLinked(version)) {
+        continue;
+      }
+      final Path folder = getInstalledPath(version).getParent();
+      try (Stream<Path> paths = Files.walk(folder)) {
+        for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+          Files.deleteIfExists(path);
+        }
+        removed.add(version);
+        Log.printf("Removed ChromeDriver version %s from %s\n", version.identifier(),
+            folder.getParent());
+      } catch (IOException e) {
+        // a version in use on windows can't be removed, the next prune tries again
+        Log.printf("Could not remove ChromeDriver version %s: %s\n", version.identifier(),
+            e.getMessage());
+      }
+    }
+    return removed;
+  }
+
+  // every location linked to a version is recorded next to it, so any process can tell it's used
+  private static void recordLink(final Path installed, final Path location) throws IOException {
+    final Path links = installed.resolveSibling(LINKS_FILE);
+    final String line = location.toAbsolutePath().toString();
+    synchronized (Chromedriver.class) {
+      if (!Files.exists(links) || !Files.readAllLines(links).contains(line)) {
+        Files.writeString(links, line + "\n", StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND);
+      }
+    }
+  }
+
+  private boolean isLinked(final Version version) {
+    final Path installed = getInstalledPath(version).toAbsolutePath();
+    final List<Path> locations = new ArrayList<>(List.of(chromedriverLocation.toPath()));
+    try {
+      final Path links = installed.resolveSibling(LINKS_FILE);
+      if (Files.exists(links)) {
+        Files.readAllLines(links).stream()
+            .filter(line -> !line.isBlank())
+            .map(Path::of)
+            .forEach(locations::add);
+      }
+      for (Path location : locations) {
+        if (Files.isSymbolicLink(location)
+            && Files.readSymbolicLink(location).equals(installed)) {
+          return true;
+        }
+      }
+      return false;
+    } catch (IOException e) {
+      return true; // when in doubt the version stays
+    }
+  }
+
+  /**
+   * Lists the versions installed side by side in the versions folder.
+   *
+   * @return the installed versions, oldest first
+   */
+  public List<Version> getInstalledVersions() {
+    final File[] folders = cache.getFolder().listFiles(File::isDirectory);
+    if (folders == null) {
+      return List.of();
+    }
+
+    final List<Version> versions = new ArrayList<>();
+    for (File folder : folders) {
+      try {
+        final Version version = Version.fromRawVersion(folder.getName());
+        if (Files.isRegularFile(getInstalledPath(version))) {
+          versions.add(version);
+        }
+      } catch (IllegalArgumentException e) {
+        // not an installed version
+      }
+    }
+    Collections.sort(versions);
+    return versions;
+  }
+
+  /**
+   * Returns where the given version is installed side by side, whether it is installed or not.
+   *
+   * @param version the version of ChromeDriver
+   * @return the executable of the version inside the versions folder
+   */
+  public Path getInstalledPath(final Version version) {
+    assert version != null : "Version cannot be null";
+
+    return cache.getFolder().toPath()
+        .resolve(version.identifier())
+        .resolve(executableName(os));
+  }
+
+  private static String executableName(final Os os) {
+    return os == Os.WINDOWS ? "chromedriver.exe" : "chromedriver";
+  }
+
+  private static void linkOrCopy(final Path installed, final Path staged) throws IOException {
+    try {
+      Files.createLink(staged, installed);
+    } catch (UnsupportedOperationException | IOException e) {
+      Files.deleteIfExists(staged);
+      Files.copy(installed, staged, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.COPY_ATTRIBUTES);
+    }
+  }
+
+  private File download(final URI downloadUrl, final Version chromeVersion, final String type,
+      final File destination) {
+    Log.printf(
+        "Downloading ChromeDriver version %s for %s into %s\n",
+        chromeVersion.identifier(), type, destination.getName()
+    );
+
+    final Downloader.Digested downloaded;
+    try (Metrics.Span span = Metrics.global().start(Metrics.Phase.DOWNLOAD, downloadUrl)) {
+      downloaded = downloader.downloadDigested(downloadUrl, destination);
+      span.bytes(downloaded.file().length());
+    }
+    final File zipFile = downloaded.file();
+    if (!zipFile.exists()) {
+      throw new RuntimeException("Failed to download ChromeDriver: " + zipFile.getAbsolutePath());
+    }
+
+    Log.printf("Downloaded ChromeDriver version %s for %s into %s\n",
+        chromeVersion.identifier(), type, destination.getName());
+
+    try {
+      verify(downloadUrl, downloaded.sha256());
+    } catch (Checksums.MismatchException e) {
+      // a bad archive never makes it into the cache
+      if (!zipFile.delete()) {
+        Log.printf("Could not remove rejected download at %s\n",
+            zipFile.getAbsolutePath());
+      }
+      throw e;
+    }
+    return cache.put(chromeVersion, type, zipFile, downloaded.sha256());
+  }
+
+  public File getLocation() {
+    return chromedriverLocation;
+  }
+
+  private static DownloadCache defaultCache(final File location) {
+    final File versionsFolder = new File(location.getAbsoluteFile().getParentFile(),
+        VERSIONS_FOLDER);
+    return new DownloadCache(versionsFolder, DownloadCache.DEFAULT_QUOTA_IN_BYTES);
   }
 
   private static String getOsType(final Os os) {
     return switch (os) {
       case WINDOWS -> "win64";
       case LINUX -> "linux64";
-      case MACOS -> "mac-arm64"; // Assuming macOS is ARM64 for simplicity
+      case MACOS -> System.getProperty("os.arch").equals("aarch64") ? "mac-arm64" : "mac-x64";
     };
   }
 }
@@ -0,0 +1,209 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.Checksums;
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.Log;
+import com.dieg0407.utils.chromedriver.model.Os;
+import com.dieg0407.utils.chromedriver.model.ProcessHandler;
+import com.dieg0407.utils.chromedriver.model.Version;
+import com.dieg0407.utils.chromedriver.model.VersionCache;
+import com.dieg0407.utils.chromedriver.model.VersionProbe;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Resolves the ChromeDriver matching a Chrome installation from inside a JVM application, such as a
+ * test harness, instead of running the command line before it.
+ * <p>
+ * Every version is installed side by side in a versions folder and the executable of the matching
+ * one is returned; no ChromeDriver location is replaced, so Chrome installations of different
+ * versions can be served at the same time. The result for each Chrome is kept for the life of the
+ * resolver and callers asking for the same Chrome at the same time share a single resolution. A
+ * failed resolution isn't kept, the next call tries again.
+ * <p>
+ * The resolver never exits the JVM or writes to stdout, its progress messages go to the
+ * {@link System.Logger} named after this class at the {@code DEBUG} level.
+ */
+public class ChromedriverResolver {
+
+  public static final String CACHE_FOLDER = "chromedriver-updater";
+
+  private static final System.Logger LOGGER =
+      System.getLogger(ChromedriverResolver.class.getName());
+
+  private final File folder;
+  private final Os os;
+  private final ProcessHandler processHandler;
+  private final DriverIndex index;
+  private final Version.Compatibility compatibility;
+  private final Chromedriver chromedriver;
+  private final VersionCache versionCache;
+  private final ConcurrentMap<Path, CompletableFuture<Path>> resolutions =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<Version, CompletableFuture<Path>> installs =
+      new ConcurrentHashMap<>();
+
+  // created on first use, so embedding the library costs nothing until a driver is resolved
+  private static final class Shared {
+
+    private static final ChromedriverResolver INSTANCE = new ChromedriverResolver(
+        userCacheFolder().toPath(), new Downloader.DownloaderImpl(), Checksums.none(),
+        Version.Compatibility.MAJOR_MINOR);
+  }
+
+  /**
+   * Returns the resolver shared by the whole JVM. It keeps its versions in the
+   * {@value CACHE_FOLDER} folder of the user cache and its downloader is never closed.
+   *
+   * @return the shared resolver
+   */
+  public static ChromedriverResolver shared() {
+    return Shared.INSTANCE;
+  }
+
+  /**
+   * Constructs a resolver that keeps its versions in the given folder.
+   *
+   * @param folder        the folder where the downloads are cached and the versions installed
+   * @param downloader    the downloader for fetching ChromeDriver builds, closed by the caller
+   * @param checksums     the expected digests of the archives
+   * @param compatibility which parts of an installed version have to match Chrome to be used
+   */
+  public ChromedriverResolver(final Path folder, final Downloader downloader,
+      final Checksums checksums, final Version.Compatibility compatibility) {
+    this(folder.toFile(), Os.current(), new ProcessHandler.ProcessHandlerImpl(), downloader,
+        new DriverIndex(folder.toFile(), downloader), checksums, compatibility);
+  }
+
+  ChromedriverResolver(final File folder, final Os os, final ProcessHandler processHandler,
+      final Downloader downloader, final DriverIndex index, final Checksums checksums,
+      final Version.Compatibility compatibility) {
+    assert folder != null : "Folder cannot be null";
+    assert os != null : "Operating system cannot be null";
+    assert processHandler != null : "ProcessHandler cannot be null";
+    assert downloader != null : "Downloader cannot be null";
+    assert index != null : "Index cannot be null";
+    assert checksums != null : "Checksums cannot be null";
+    assert compatibility != null : "Compatibility cannot be null";
+
+    this.folder = folder;
+    this.os = os;
+    this.processHandler = processHandler;
+    this.index = index;
+    this.compatibility = compatibility;
+    this.chromedriver = Chromedriver.inVersionsFolder(folder, os, processHandler, downloader,
+        checksums);
+    this.versionCache = new VersionCache(new File(folder, VersionCache.INDEX_FILE));
+  }
+
+  /**
+   * Resolves the ChromeDriver for the given Chrome, installing it first when no installed version
+   * matches. The work runs on a virtual thread of its own.
+   *
+   * @param chromePath the Chrome executable, or its installation folder on windows
+   * @return the future ChromeDriver executable. Cancelling it doesn't affect other callers
+   */
+  public CompletableFuture<Path> resolve(final Path chromePath) {
+    assert chromePath != null : "Chrome path cannot be null";
+
+    final Path chrome = chromePath.toAbsolutePath().normalize();
+    final CompletableFuture<Path> created = new CompletableFuture<>();
+    final CompletableFuture<Path> running = resolutions.putIfAbsent(chrome, created);
+    if (running != null) {
+      return running.copy();
+    }
+
+    Thread.ofVirtual().name("chromedriver-resolver").start(() -> {
+      try {
+        created.complete(Log.to(ChromedriverResolver::debug, () -> resolveNow(chrome)));
+      } catch (Throwable e) {
+        // removed first, so a caller that sees the failure and retries starts over
+        resolutions.remove(chrome, created);
+        created.completeExceptionally(e);
+      }
+    });
+    return created.copy();
+  }
+
+  /**
+   * Returns the folder where the downloads are cached and the versions installed.
+   *
+   * @return the versions folder
+   */
+  public File getFolder() {
+    return folder;
+  }
+
+  private Path resolveNow(final Path chrome) {
+    final Version chromeVersion = new Chrome(chrome.toString(), os, processHandler,
+        VersionProbe.cached(versionCache, VersionProbe.chrome())).getVersion();
+
+    // an installed version is found without the index, so warm runs never touch the network
+    final List<Version> installed = chromedriver.getInstalledVersions();
+    for (int i = installed.size() - 1; i >= 0; i--) {
+      if (installed.get(i).isCompatibleWith(chromeVersion, compatibility)) {
+        return chromedriver.getInstalledPath(installed.get(i));
+      }
+    }
+
+    final DriverIndex.Entry download = chromedriver.resolve(chromeVersion, index);
+    return once(installs, download.version(), () -> install(download));
+  }
+
+  private Path install(final DriverIndex.Entry download) {
+    final File extractedFile = chromedriver.fetch(download, Chromedriver.ExtractionMode.KEEP_ZIP);
+    try {
+      return chromedriver.installVersion(extractedFile, download.version());
+    } finally {
+      if (!extractedFile.delete()) {
+        Log.printf("Could not remove extracted ChromeDriver at %s\n",
+            extractedFile.getAbsolutePath());
+      }
+    }
+  }
+
+  // Chrome installations that need the same version share a single download and extraction
+  private static <K> Path once(final ConcurrentMap<K, CompletableFuture<Path>> running,
+      final K key, final Supplier<Path> work) {
+    final CompletableFuture<Path> created = new CompletableFuture<>();
+    final CompletableFuture<Path> existing = running.putIfAbsent(key, created);
+    if (existing != null) {
+      return existing.join();
+    }
+
+    try {
+      final Path result = work.get();
+      created.complete(result);
+      return result;
+    } catch (RuntimeException e) {
+      running.remove(key, created);
+      created.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private static void debug(final String message) {
+    LOGGER.log(System.Logger.Level.DEBUG, message.stripTrailing());
+  }
+
+  // the folder of this tool in the cache of the user, shared with the discovery of the command line
+  static File userCacheFolder() {
+    final String windowsCache = System.getenv("LOCALAPPDATA");
+    final String xdgCache = System.getenv("XDG_CACHE_HOME");
+    final File cache;
+    if (Os.current() == Os.WINDOWS && windowsCache != null) {
+      cache = new File(windowsCache);
+    } else if (xdgCache != null && !xdgCache.isEmpty()) {
+      cache = new File(xdgCache);
+    } else {
+      cache = new File(System.getProperty("user.home"), ".cache");
+    }
+    return new File(cache, CACHE_FOLDER);
+  }
+}
@@ -0,0 +1,322 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.DirectoryCache;
+import com.dieg0407.utils.chromedriver.model.DownloadCache;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds the Chrome and ChromeDriver installations under a set of directory trees and pairs them,
+ * for hosts where browsers and drivers sit in many toolchain and container layer directories.
+ * <p>
+ * Every directory is a fork/join task that lists its own entries, so the listings of large trees
+ * block on the filesystem side by side. Binaries are recognized by their name and the magic number
+ * of an ELF, PE or Mach-O executable, without reading any further. Version control folders, the
+ * pseudo filesystems of linux, symbolic links to directories and the versions folders of this tool
+ * aren't walked, nor is anything below the maximum depth. An application bundle on macOS is only
+ * looked into for its executable.
+ * <p>
+ * The listing of every directory is kept in a {@link DirectoryCache}, so a later discovery only
+ * lists the directories that changed and otherwise costs a {@code stat} per directory.
+ */
+public class Discovery {
+
+  public static final String INDEX_FILE = "discovery.index";
+  public static final int DEFAULT_MAX_DEPTH = 16;
+  // a Chrome pairs with a ChromeDriver in its folder or up to two folders above it, such as the
+  // chrome-linux64 and chromedriver-linux64 folders of a toolchain
+  static final int MAX_PAIR_DISTANCE = 2;
+
+  private static final Set<String> CHROME_NAMES = Set.of("chrome", "chrome.exe",
+      "google chrome", "google chrome for testing", "chromium", "chromium-browser");
+  private static final Set<String> CHROMEDRIVER_NAMES = Set.of("chromedriver",
+      "chromedriver.exe");
+  private static final Set<String> PRUNED_NAMES = Set.of(".git", ".hg", ".svn");
+  private static final Set<Path> PRUNED_PATHS = Set.of(Path.of("/proc"), Path.of("/sys"),
+      Path.of("/dev"), Path.of("/run"));
+  private static final String BUNDLE_SUFFIX = ".app";
+  // directory listings block on the filesystem rather than on the CPU
+  private static final int PARALLELISM = 2 * Runtime.getRuntime().availableProcessors();
+
+  /**
+   * What a discovery found.
+   *
+   * @param chromes       the Chrome executables, sorted
+   * @param chromedrivers the ChromeDriver executables, sorted
+   * @param directories   the number of directories visited
+   * @param listed        the number of directories that had to be listed, the others were cached
+   * @param elapsed       how long the discovery took
+   */
+  public record Result(List<Path> chromes, List<Path> chromedrivers, long directories,
+                       long listed, Duration elapsed) {
+
+    /**
+     * Pairs every ChromeDriver with the Chrome closest to it, the one with the deepest common
+     * folder, so the driver of a toolchain goes with the browser of that toolchain. A ChromeDriver
+     * is left out when no Chrome shares its folder or one of the {@value MAX_PAIR_DISTANCE}
+     * folders above it, or when several Chrome installations are equally close.
+     *
+     * @return one pair per ChromeDriver that has a Chrome of its own
+     */
+    public List<Fleet.Pair> pairs() {
+      final List<Fleet.Pair> pairs = new ArrayList<>();
+      for (Path chromedriver : chromedrivers) {
+        closestChrome(chromedriver).ifPresent(chrome ->
+            pairs.add(new Fleet.Pair(chrome.toString(), chromedriver.toString())));
+      }
+      return pairs;
+    }
+
+    /**
+     * Returns the ChromeDriver executables left out of {@link #pairs()}.
+     *
+     * @return the ChromeDriver executables without a Chrome of their own, sorted
+     */
+    public List<Path> unpaired() {
+      return chromedrivers.stream()
+          .filter(chromedriver -> closestChrome(chromedriver).isEmpty())
+          .toList();
+    }
+
+    private Optional<Path> closestChrome(final Path chromedriver) {
+      Path closest = null;
+      int closestDepth = -1;
+      boolean ambiguous = false;
+      for (Path chrome : chromes) {
+        final int depth = commonDepth(chrome, chromedriver);
+        if (depth > closestDepth) {
+          closest = chrome;
+          closestDepth = depth;
+          ambiguous = false;
+        } else if (depth == closestDepth) {
+          ambiguous = true;
+        }
+      }
+
+      final int minimumDepth = chromedriver.getParent().getNameCount() - MAX_PAIR_DISTANCE;
+      return closest == null || ambiguous || closestDepth < minimumDepth
+          ? Optional.empty()
+          : Optional.of(closest);
+    }
+  }
+
+  private final DirectoryCache cache;
+  private final int maxDepth;
+
+  /**
+   * Constructs a Discovery that keeps the listings in the given cache.
+   *
+   * @param cache    the cache of the directory listings
+   * @param maxDepth the number of levels walked below each root
+   */
+  public Discovery(final DirectoryCache cache, final int maxDepth) {
+    assert cache != null : "DirectoryCache cannot be null";
+    assert maxDepth >= 0 : "Max depth cannot be negative";
+
+    this.cache = cache;
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * Walks the given roots in parallel.
+   *
+   * @param roots the directories to walk, unreadable ones are skipped
+   * @return the binaries found
+   */
+  public Result discover(final List<Path> roots) {
+    assert roots != null : "Roots cannot be null";
+
+    final long start = System.nanoTime();
+    final Walk walk = new Walk();
+    final ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+    try {
+      final List<Task> tasks = roots.stream()
+          .map(root -> new Task(walk, root.toAbsolutePath().normalize(), 0))
+          .toList();
+      pool.invoke(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          invokeAll(tasks);
+        }
+      });
+    } finally {
+      pool.shutdown();
+    }
+    cache.save(walk.visited);
+
+    return new Result(sorted(walk.chromes), sorted(walk.chromedrivers), walk.visited.size(),
+        walk.listed.sum(), Duration.ofNanos(System.nanoTime() - start));
+  }
+
+  private static final class Walk {
+
+    private final Set<Path> visited = ConcurrentHashMap.newKeySet();
+    private final Set<Path> chromes = ConcurrentHashMap.newKeySet();
+    private final Set<Path> chromedrivers = ConcurrentHashMap.newKeySet();
+    private final LongAdder listed = new LongAdder();
+  }
+
+  private final class Task extends RecursiveAction {
+
+    private final Walk walk;
+    private final Path directory;
+    private final int depth;
+
+    private Task(final Walk walk, final Path directory, final int depth) {
+      this.walk = walk;
+      this.directory = directory;
+      this.depth = depth;
+    }
+
+    @Override
+    protected void compute() {
+      // roots may overlap, every directory is walked once
+      if (!walk.visited.add(directory)) {
+        return;
+      }
+
+      final DirectoryCache.Listing listing = listingOf(directory, walk);
+      listing.chromes().forEach(name -> walk.chromes.add(directory.resolve(name)));
+      listing.chromedrivers().forEach(name -> walk.chromedrivers.add(directory.resolve(name)));
+      if (depth < maxDepth) {
+        invokeAll(listing.directories().stream()
+            .map(name -> new Task(walk, directory.resolve(name), depth + 1))
+            .toList());
+      }
+    }
+  }
+
+  private DirectoryCache.Listing listingOf(final Path directory, final Walk walk) {
+    final long modifiedNanos;
+    try {
+      modifiedNanos = Files.readAttributes(directory, BasicFileAttributes.class,
+          LinkOption.NOFOLLOW_LINKS).lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    } catch (IOException e) {
+      return DirectoryCache.Listing.EMPTY;
+    }
+
+    return cache.get(directory, modifiedNanos).orElseGet(() -> {
+      walk.listed.increment();
+      final DirectoryCache.Listing listing = list(directory);
+      cache.put(directory, modifiedNanos, listing);
+      return listing;
+    });
+  }
+
+  // only the entries of the directory itself, its subdirectories are listed by tasks of their own
+  private static DirectoryCache.Listing list(final Path directory) {
+    final List<String> directories = new ArrayList<>();
+    final List<String> chromes = new ArrayList<>();
+    final List<String> chromedrivers = new ArrayList<>();
+    final boolean[] versionsFolder = {false};
+    try {
+      Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1,
+          new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(final Path file,
+                final BasicFileAttributes attributes) {
+              final String name = file.getFileName().toString();
+              final String lowerCaseName = name.toLowerCase(Locale.ROOT);
+              if (name.equals(DownloadCache.INDEX_FILE)) {
+                // the installed versions belong to the location that links to them
+                versionsFolder[0] = true;
+                return FileVisitResult.TERMINATE;
+              }
+
+              if (attributes.isDirectory()) {
+                if (lowerCaseName.endsWith(BUNDLE_SUFFIX)) {
+                  final String executable = "Contents/MacOS/"
+                      + name.substring(0, name.length() - BUNDLE_SUFFIX.length());
+                  if (isChrome(file.resolve(executable))) {
+                    chromes.add(name + "/" + executable);
+                  }
+                } else if (!PRUNED_NAMES.contains(name) && !PRUNED_PATHS.contains(file)) {
+                  directories.add(name);
+                }
+              } else if (CHROME_NAMES.contains(lowerCaseName) && isExecutable(file)) {
+                chromes.add(name);
+              } else if (CHROMEDRIVER_NAMES.contains(lowerCaseName) && isExecutable(file)) {
+                chromedrivers.add(name);
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    } catch (IOException e) {
+      return DirectoryCache.Listing.EMPTY;
+    }
+
+    return versionsFolder[0]
+        ? DirectoryCache.Listing.EMPTY
+        : new DirectoryCache.Listing(directories, chromes, chromedrivers);
+  }
+
+  private static boolean isChrome(final Path executable) {
+    return CHROME_NAMES.contains(executable.getFileName().toString().toLowerCase(Locale.ROOT))
+        && isExecutable(executable);
+  }
+
+  // the magic numbers of ELF, PE and Mach-O (thin in both byte orders and universal) binaries,
+  // wrapper scripts and files that merely share the name don't have one. Links are followed
+  static boolean isExecutable(final Path file) {
+    final byte[] header = new byte[4];
+    try (InputStream inputStream = Files.newInputStream(file)) {
+      if (inputStream.readNBytes(header, 0, header.length) < 2) {
+        return false;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+
+    final int magic = ((header[0] & 0xff) << 24) | ((header[1] & 0xff) << 16)
+        | ((header[2] & 0xff) << 8) | (header[3] & 0xff);
+    return magic == 0x7f454c46
+        || (header[0] == 'M' && header[1] == 'Z')
+        || magic == 0xfeedface || magic == 0xfeedfacf
+        || magic == 0xcefaedfe || magic == 0xcffaedfe
+        || magic == 0xcafebabe;
+  }
+
+  static int commonDepth(final Path first, final Path second) {
+    final Path firstFolder = first.getParent();
+    final Path secondFolder = second.getParent();
+    if (firstFolder == null || secondFolder == null) {
+      return 0;
+    }
+
+    int depth = 0;
+    final int length = Math.min(firstFolder.getNameCount(), secondFolder.getNameCount());
+    while (depth < length && firstFolder.getName(depth).equals(secondFolder.getName(depth))) {
+      depth++;
+    }
+    return depth;
+  }
+
+  private static List<Path> sorted(final Set<Path> paths) {
+    return paths.stream().sorted(Comparator.naturalOrder()).toList();
+  }
+}
@@ -0,0 +1,302 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.BinaryStore;
+import com.dieg0407.utils.chromedriver.model.Checksums;
+import com.dieg0407.utils.chromedriver.model.DownloadCache;
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.Os;
+import com.dieg0407.utils.chromedriver.model.ProcessHandler;
+import com.dieg0407.utils.chromedriver.model.Version;
+import com.dieg0407.utils.chromedriver.model.VersionCache;
+import com.dieg0407.utils.chromedriver.model.VersionProbe;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Updates many Chrome/ChromeDriver pairs from a single JVM. Every pair runs on its own virtual
+ * thread, downloads are bounded by a semaphore and pairs that need the same driver version share a
+ * single download and extraction.
+ */
+public class Fleet {
+
+  static final int DEFAULT_MAX_DOWNLOADS = 4;
+
+  public record Pair(String chromeLocation, String chromedriverLocation) {
+
+  }
+
+  public enum Status {
+    UP_TO_DATE,
+    UPDATED,
+    FAILED,
+  }
+
+  public record Result(Pair pair, Status status, String detail, Duration elapsed) {
+
+  }
+
+  private final Os os;
+  private final ProcessHandler processHandler;
+  private final Downloader downloader;
+  private final DownloadCache cache;
+  private final VersionCache versionCache;
+  private final DriverIndex driverIndex;
+  private final Chromedriver.ExtractionMode mode;
+  private final Version.Compatibility compatibility;
+  private final Semaphore downloads;
+  private final Checksums checksums;
+  private final BinaryStore store;
+  private final Chromedriver.Replacement replacement;
+  private final Map<Version, CompletableFuture<File>> fetches = new ConcurrentHashMap<>();
+
+  /**
+   * How a Fleet downloads, matches and installs the versions of its pairs.
+   *
+   * @param mode          whether downloaded zips are kept in the cache or streamed
+   * @param compatibility which parts of the versions have to match for a pair to be up to date
+   * @param maxDownloads  the maximum number of downloads running at the same time
+   * @param checksums     the expected digests of the archives
+   * @param store         the store of the canonical executables
+   * @param replacement   how every location is pointed at its installed version
+   */
+  public record Options(Chromedriver.ExtractionMode mode, Version.Compatibility compatibility,
+                        int maxDownloads, Checksums checksums, BinaryStore store,
+                        Chromedriver.Replacement replacement) {
+
+    public Options {
+      assert mode != null : "Extraction mode cannot be null";
+      assert compatibility != null : "Compatibility cannot be null";
+      assert maxDownloads > 0 : "Max downloads must be greater than 0";
+      assert checksums != null : "Checksums cannot be null";
+      assert store != null : "BinaryStore cannot be null";
+      assert replacement != null : "Replacement cannot be null";
+    }
+
+    /**
+     * The options of a Fleet that keeps the downloaded zips, matches the major and minor versions,
+     * runs up to {@value DEFAULT_MAX_DOWNLOADS} downloads at the same time, verifies no checksum,
+     * keeps no canonical executable and links every location to its installed version.
+     *
+     * @return the default options
+     */
+    public static Options defaults() {
+      return new Options(Chromedriver.ExtractionMode.KEEP_ZIP, Version.Compatibility.MAJOR_MINOR,
+          DEFAULT_MAX_DOWNLOADS, Checksums.none(), BinaryStore.none(),
+          Chromedriver.Replacement.SYMLINK);
+    }
+
+    public Options withMode(final Chromedriver.ExtractionMode mode) {
+      return new Options(mode, compatibility, maxDownloads, checksums, store, replacement);
+    }
+
+    public Options withCompatibility(final Version.Compatibility compatibility) {
+      return new Options(mode, compatibility, maxDownloads, checksums, store, replacement);
+    }
+
+    public Options withMaxDownloads(final int maxDownloads) {
+      return new Options(mode, compatibility, maxDownloads, checksums, store, replacement);
+    }
+
+    public Options withChecksums(final Checksums checksums) {
+      return new Options(mode, compatibility, maxDownloads, checksums, store, replacement);
+    }
+
+    public Options withStore(final BinaryStore store) {
+      return new Options(mode, compatibility, maxDownloads, checksums, store, replacement);
+    }
+
+    public Options withReplacement(final Chromedriver.Replacement replacement) {
+      return new Options(mode, compatibility, maxDownloads, checksums, store, replacement);
+    }
+  }
+
+  /**
+   * Constructs a Fleet that shares the given collaborators between all the pairs.
+   *
+   * @param os             the operating system on which the pairs are installed
+   * @param processHandler the handler for executing processes
+   * @param downloader     the downloader for fetching ChromeDriver updates
+   * @param cache          the cache where the shared downloads are stored and extracted
+   * @param versionCache   the cache of the versions of the binaries
+   * @param driverIndex    the index of the published ChromeDriver builds
+   * @param options        how the versions are downloaded, matched and installed
+   */
+  public Fleet(final Os os, final ProcessHandler processHandler, final Downloader downloader,
+      final DownloadCache cache, final VersionCache versionCache, final DriverIndex driverIndex,
+      final Options options) {
+    assert os != null : "Operating system cannot be null";
+    assert processHandler != null : "ProcessHandler cannot be null";
+    assert downloader != null : "Downloader cannot be null";
+    assert cache != null : "DownloadCache cannot be null";
+    assert versionCache != null : "VersionCache cannot be null";
+    assert driverIndex != null : "DriverIndex cannot be null";
+    assert options != null : "Options cannot be null";
+
+    this.os = os;
+    this.processHandler = processHandler;
+    this.downloader = downloader;
+    this.cache = cache;
+    this.versionCache = versionCache;
+    this.driverIndex = driverIndex;
+    this.mode = options.mode();
+    this.compatibility = options.compatibility();
+    this.downloads = new Semaphore(options.maxDownloads());
+    this.checksums = options.checksums();
+    this.store = options.store();
+    this.replacement = options.replacement();
+  }
+
+  /**
+   * Reads a manifest where every non-empty line that doesn't start with '#' holds a pair in the
+   * format {@code <chrome-location>,<chromedriver-location>}.
+   *
+   * @param manifest the manifest file
+   * @return the pairs in the order they appear in the manifest
+   * @throws IOException if the manifest can't be read
+   */
+  public static List<Pair> readManifest(final Path manifest) throws IOException {
+    final List<Pair> pairs = new ArrayList<>();
+    int lineNumber = 0;
+    for (String line : Files.readAllLines(manifest)) {
+      lineNumber++;
+      final String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+        continue;
+      }
+
+      final String[] parts = trimmed.split(",");
+      if (parts.length != 2 || parts[0].isBlank() || parts[1].isBlank()) {
+        throw new IllegalArgumentException(
+            "Unexpected manifest line " + lineNumber + ": '" + line
+                + "'. Expected format: '<chrome-location>,<chromedriver-location>'");
+      }
+      pairs.add(new Pair(parts[0].trim(), parts[1].trim()));
+    }
+    return pairs;
+  }
+
+  /**
+   * Updates every pair concurrently and waits for all of them to finish.
+   *
+   * @param pairs the pairs to update
+   * @return the result of every pair, in the same order as the given pairs
+   */
+  public List<Result> run(final List<Pair> pairs) {
+    final List<Future<Result>> futures = new ArrayList<>();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (Pair pair : pairs) {
+        futures.add(executor.submit(() -> update(pair)));
+      }
+    } finally {
+      // the extracted executables were copied into every location, they are no longer needed
+      fetches.values().stream()
+          .filter(fetch -> fetch.state() == Future.State.SUCCESS)
+          .map(CompletableFuture::resultNow)
+          .forEach(File::delete);
+      fetches.clear();
+    }
+
+    // closing the executor waits for every task, so all the futures are done at this point
+    final List<Result> results = new ArrayList<>();
+    for (Future<Result> future : futures) {
+      results.add(future.resultNow());
+    }
+    return results;
+  }
+
+  /**
+   * Removes the versions installed in the shared versions folder and kept in the store that are
+   * older than the given number of newest ones, except those a location still links to.
+   *
+   * @param keep the number of newest versions that are always kept
+   */
+  public void prune(final int keep) {
+    Chromedriver.inVersionsFolder(cache.getFolder(), os, processHandler, downloader, checksums)
+        .prune(keep);
+    store.prune(keep);
+  }
+
+  private Result update(final Pair pair) {
+    final long start = System.nanoTime();
+    try {
+      final Chrome chrome = new Chrome(pair.chromeLocation(), os, processHandler,
+          VersionProbe.cached(versionCache, VersionProbe.chrome()));
+      final Chromedriver chromedriver = new Chromedriver(pair.chromedriverLocation(), os,
+          processHandler, downloader, Chromedriver.Options.defaults()
+              .withCache(cache)
+              .withVersionProbe(VersionProbe.cached(versionCache, VersionProbe.chromedriver()))
+              .withChecksums(checksums)
+              .withStore(store)
+              .withReplacement(replacement));
+
+      // both probes may have to execute their binary, run them side by side
+      final CompletableFuture<Version> probedChrome = CompletableFuture.supplyAsync(
+          chrome::getVersion, runnable -> Thread.ofVirtual().start(runnable));
+      final Version chromedriverVersion = chromedriver.getVersion();
+      final Version chromeVersion = probedChrome.join();
+      if (chromedriverVersion.isUpToDateWith(chromeVersion, compatibility)) {
+        return new Result(pair, Status.UP_TO_DATE, chromedriverVersion.identifier(),
+            elapsedSince(start));
+      }
+
+      final DriverIndex.Entry download = chromedriver.resolve(chromeVersion, driverIndex);
+      if (download.version().equals(chromedriverVersion)) {
+        return new Result(pair, Status.UP_TO_DATE, chromedriverVersion.identifier(),
+            elapsedSince(start));
+      }
+
+      final File extractedFile = fetch(chromedriver, download);
+      chromedriver.install(extractedFile, download.version());
+      return new Result(pair, Status.UPDATED,
+          chromedriverVersion.identifier() + " -> " + download.version().identifier(),
+          elapsedSince(start));
+    } catch (Exception e) {
+      final Throwable cause = e instanceof CompletionException && e.getCause() != null
+          ? e.getCause() : e;
+      return new Result(pair, Status.FAILED, String.valueOf(cause.getMessage()),
+          elapsedSince(start));
+    }
+  }
+
+  // the first pair asking for a version downloads it, the others wait for the same future
+  private File fetch(final Chromedriver chromedriver, final DriverIndex.Entry download) {
+    final CompletableFuture<File> fetch = new CompletableFuture<>();
+    final CompletableFuture<File> existing = fetches.putIfAbsent(download.version(), fetch);
+    if (existing != null) {
+      return existing.join();
+    }
+
+    try {
+      downloads.acquire();
+      try {
+        fetch.complete(chromedriver.fetch(download, mode));
+      } finally {
+        downloads.release();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fetch.completeExceptionally(e);
+    } catch (RuntimeException e) {
+      fetch.completeExceptionally(e);
+    }
+    return fetch.join();
+  }
+
+  private static Duration elapsedSince(final long start) {
+    return Duration.ofNanos(System.nanoTime() - start);
+  }
+}
@@ -0,0 +1,276 @@
+package com.dieg0407.utils.chromedriver;
+
+import static java.lang.String.format;
+
+import com.dieg0407.utils.chromedriver.model.Checksums;
+import com.dieg0407.utils.chromedriver.model.DownloadCache;
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.FileLease;
+import com.dieg0407.utils.chromedriver.model.Log;
+import com.dieg0407.utils.chromedriver.model.Metrics;
+import com.dieg0407.utils.chromedriver.model.Version;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the download cache over HTTP with the same layout as the Chrome for Testing host, so
+ * other instances can download ChromeDriver from the LAN by pointing
+ * {@link Chromedriver#DOWNLOAD_BASE_URL} at {@code http://<host>:<port>}. A version that isn't
+ * cached is downloaded from the upstream host once, the requests that arrive meanwhile wait for
+ * the same download. Responses support single byte ranges, so segmented and resumed downloads work
+ * against the mirror too.
+ */
+public class Mirror implements AutoCloseable {
+
+  private static final Pattern ARCHIVE = Pattern.compile(
+      "/(\\d+\\.\\d+\\.\\d+\\.\\d+)/([\\w-]+)/chromedriver-\\2\\.zip");
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+  private final DownloadCache cache;
+  private final Downloader upstream;
+  private final Checksums checksums;
+  private final String upstreamBase;
+  private final InetSocketAddress address;
+  private final Map<String, CompletableFuture<File>> fetches = new ConcurrentHashMap<>();
+  private HttpServer server;
+  private ExecutorService executor;
+
+  /**
+   * Constructs a Mirror that pulls missing versions from the Chrome for Testing host.
+   *
+   * @param cache     the cache to serve and to store the pulled versions
+   * @param upstream  the downloader for pulling missing versions
+   * @param checksums the expected digests of the pulled archives
+   * @param address   the address to listen on, port 0 picks a free port
+   */
+  public Mirror(final DownloadCache cache, final Downloader upstream, final Checksums checksums,
+      final InetSocketAddress address) {
+    this(cache, upstream, checksums, address, Chromedriver.DOWNLOAD_BASE_URL);
+  }
+
+  /**
+   * Constructs a Mirror that pulls missing versions from the given host.
+   *
+   * @param cache        the cache to serve and to store the pulled versions
+   * @param upstream     the downloader for pulling missing versions
+   * @param checksums    the expected digests of the pulled archives
+   * @param address      the address to listen on, port 0 picks a free port
+   * @param upstreamBase the base URL of the host to pull from, without a trailing '/'
+   */
+  public Mirror(final DownloadCache cache, final Downloader upstream, final Checksums checksums,
+      final InetSocketAddress address, final String upstreamBase) {
+    assert cache != null : "DownloadCache cannot be null";
+    assert upstream != null : "Downloader cannot be null";
+    assert checksums != null : "Checksums cannot be null";
+    assert address != null : "Address cannot be null";
+    assert upstreamBase != null : "Upstream base cannot be null";
+
+    this.cache = cache;
+    this.upstream = upstream;
+    this.checksums = checksums;
+    this.address = address;
+    this.upstreamBase = upstreamBase;
+  }
+
+  /**
+   * Starts serving in the background, every request is handled on its own virtual thread.
+   *
+   * @throws IOException if the address can't be bound
+   */
+  public synchronized void start() throws IOException {
+    assert server == null : "Mirror already started";
+
+    executor = Executors.newVirtualThreadPerTaskExecutor();
+    server = HttpServer.create(address, 0);
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+    Log.printf("Serving the download cache %s at %s\n", cache.getFolder(), getBaseUri());
+  }
+
+  /**
+   * Returns the base URL that other instances use instead of the Chrome for Testing host.
+   *
+   * @return the base URL of the running mirror
+   */
+  public synchronized URI getBaseUri() {
+    assert server != null : "Mirror not started";
+
+    final InetSocketAddress bound = server.getAddress();
+    final String host = bound.getAddress().isAnyLocalAddress()
+        ? "localhost" : bound.getAddress().getHostAddress();
+    return URI.create(format("http://%s:%d", host, bound.getPort()));
+  }
+
+  @Override
+  public synchronized void close() {
+    if (server != null) {
+      server.stop(0);
+      executor.close();
+      server = null;
+    }
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    try (exchange) {
+      final String method = exchange.getRequestMethod();
+      if (!method.equals("GET") && !method.equals("HEAD")) {
+        exchange.getResponseHeaders().add("Allow", "GET, HEAD");
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+
+      final Matcher matcher = ARCHIVE.matcher(exchange.getRequestURI().getPath());
+      if (!matcher.matches()) {
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+
+      final File archive;
+      try {
+        archive = archiveOf(Version.fromRawVersion(matcher.group(1)), matcher.group(2));
+      } catch (RuntimeException e) {
+        Log.printf("Failed to pull %s: %s\n", exchange.getRequestURI(), e.getMessage());
+        exchange.sendResponseHeaders(502, -1);
+        return;
+      }
+      serve(exchange, archive, method.equals("HEAD"));
+    }
+  }
+
+  // the first request for a missing version pulls it, the others wait for the same future
+  private File archiveOf(final Version version, final String platform) {
+    final Optional<File> cached = cache.get(version, platform);
+    Metrics.global().cacheLookup("download", cached.isPresent());
+    if (cached.isPresent()) {
+      return cached.get();
+    }
+
+    final String key = version.identifier() + "/" + platform;
+    final CompletableFuture<File> fetch = new CompletableFuture<>();
+    final CompletableFuture<File> existing = fetches.putIfAbsent(key, fetch);
+    if (existing != null) {
+      return existing.join();
+    }
+
+    // the folder may be shared with updaters or other mirrors, they download under the same lease
+    try (FileLease lease = cache.lease(version, platform)) {
+      // another request or process may have pulled it between the lookup and now
+      fetch.complete(cache.get(version, platform).orElseGet(() -> pull(version, platform)));
+    } catch (RuntimeException e) {
+      fetch.completeExceptionally(e);
+    } finally {
+      // later requests find the version in the cache, or try again after a failure
+      fetches.remove(key);
+    }
+    return fetch.join();
+  }
+
+  private File pull(final Version version, final String platform) {
+    final URI url = URI.create(format("%s/%s/%s/chromedriver-%s.zip", upstreamBase,
+        version.identifier(), platform, platform));
+    Log.printf("Pulling ChromeDriver version %s for %s from %s\n", version.identifier(),
+        platform, url);
+
+    if (!cache.getFolder().exists() && !cache.getFolder().mkdirs()) {
+      throw new RuntimeException(
+          "Failed to create versions folder: " + cache.getFolder().getAbsolutePath());
+    }
+    final File destination = new File(cache.getFolder(),
+        format("chromedriver-%s.%s.mirror.zip", version.identifier(), platform));
+    final Downloader.Digested downloaded;
+    try (Metrics.Span span = Metrics.global().start(Metrics.Phase.DOWNLOAD, url)) {
+      downloaded = upstream.downloadDigested(url, destination);
+      span.bytes(downloaded.file().length());
+    }
+    try {
+      checksums.verify(url, downloaded.sha256());
+    } catch (Checksums.MismatchException e) {
+      if (!downloaded.file().delete()) {
+        Log.printf("Could not remove rejected download at %s\n",
+            downloaded.file().getAbsolutePath());
+      }
+      throw e;
+    }
+    return cache.put(version, platform, downloaded.file(), downloaded.sha256());
+  }
+
+  private void serve(final HttpExchange exchange, final File archive, final boolean head)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ)) {
+      final long length = channel.size();
+      // archives are named after their digest, which makes a strong validator
+      final String etag = "\"" + archive.getName().replace(".zip", "") + "\"";
+      exchange.getResponseHeaders().add("Content-Type", "application/zip");
+      exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+      exchange.getResponseHeaders().add("ETag", etag);
+      exchange.getResponseHeaders().add("Last-Modified", lastModified(archive));
+
+      final String range = exchange.getRequestHeaders().getFirst("Range");
+      final String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+      final Matcher matcher = range == null ? null : RANGE.matcher(range);
+      long start = 0;
+      long end = length - 1;
+      int status = 200;
+      if (matcher != null && matcher.matches() && (ifRange == null || ifRange.equals(etag))) {
+        if (matcher.group(1).isEmpty()) {
+          // a suffix range, the last n bytes
+          start = Math.max(0, length - Long.parseLong(matcher.group(2)));
+        } else {
+          start = Long.parseLong(matcher.group(1));
+          if (!matcher.group(2).isEmpty()) {
+            end = Math.min(end, Long.parseLong(matcher.group(2)));
+          }
+        }
+        if (start >= length || start > end) {
+          exchange.getResponseHeaders().add("Content-Range", "bytes */" + length);
+          exchange.sendResponseHeaders(416, -1);
+          return;
+        }
+        exchange.getResponseHeaders().add("Content-Range",
+            format("bytes %d-%d/%d", start, end, length));
+        status = 206;
+      }
+
+      final long count = end - start + 1;
+      if (head) {
+        exchange.getResponseHeaders().add("Content-Length", String.valueOf(count));
+        exchange.sendResponseHeaders(status, -1);
+        return;
+      }
+      exchange.sendResponseHeaders(status, count == 0 ? -1 : count);
+      try (OutputStream body = exchange.getResponseBody()) {
+        final WritableByteChannel target = Channels.newChannel(body);
+        long position = start;
+        while (position <= end) {
+          position += channel.transferTo(position, end - position + 1, target);
+        }
+      }
+    }
+  }
+
+  private static String lastModified(final File archive) throws IOException {
+    return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+        Files.getLastModifiedTime(archive.toPath()).toInstant().atZone(ZoneOffset.UTC));
+  }
+}
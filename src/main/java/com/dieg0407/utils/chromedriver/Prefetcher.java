@@ -0,0 +1,87 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.Log;
+import com.dieg0407.utils.chromedriver.model.ReleaseChannels;
+import com.dieg0407.utils.chromedriver.model.Version;
+import java.util.Optional;
+
+/**
+ * Downloads the ChromeDriver for the Chrome version a host is about to get into the cache before
+ * Chrome is updated, so the update that follows the browser only extracts the cached archive and
+ * switches the location, without waiting on the network while driver and browser don't match.
+ * <p>
+ * The upcoming version is the one staged next to the running Chrome when there is one, and
+ * otherwise the version released on the given channel when it's newer than the installed Chrome.
+ */
+public class Prefetcher {
+
+  public static final String DEFAULT_CHANNEL = "Stable";
+
+  private final Chrome chrome;
+  private final Chromedriver chromedriver;
+  private final DriverIndex index;
+  private final ReleaseChannels channels;
+  private final String channel;
+
+  /**
+   * Constructs a Prefetcher that looks ahead of the given Chrome.
+   *
+   * @param chrome       the Chrome that will be updated
+   * @param chromedriver the ChromeDriver to prefetch for, its cache receives the archive
+   * @param index        the index of the published ChromeDriver builds
+   * @param channels     the versions released on each channel
+   * @param channel      the channel that the Chrome follows, such as {@value DEFAULT_CHANNEL}
+   */
+  public Prefetcher(final Chrome chrome, final Chromedriver chromedriver, final DriverIndex index,
+      final ReleaseChannels channels, final String channel) {
+    assert chrome != null : "Chrome cannot be null";
+    assert chromedriver != null : "Chromedriver cannot be null";
+    assert index != null : "Index cannot be null";
+    assert channels != null : "ReleaseChannels cannot be null";
+    assert channel != null : "Channel cannot be null";
+
+    this.chrome = chrome;
+    this.chromedriver = chromedriver;
+    this.index = index;
+    this.channels = channels;
+    this.channel = channel;
+  }
+
+  /**
+   * Prefetches the ChromeDriver for the upcoming Chrome version, if there is one.
+   *
+   * @return the prefetched build or empty if no newer Chrome version is coming
+   */
+  public Optional<DriverIndex.Entry> prefetch() {
+    final Optional<Version> upcoming = upcomingVersion();
+    if (upcoming.isEmpty()) {
+      Log.println("No upcoming Chrome version to prefetch for");
+      return Optional.empty();
+    }
+
+    final DriverIndex.Entry download = chromedriver.resolve(upcoming.get(), index);
+    Log.printf("Prefetching ChromeDriver version %s for the upcoming Chrome %s\n",
+        download.version().identifier(), upcoming.get().identifier());
+    chromedriver.prefetch(download);
+    return Optional.of(download);
+  }
+
+  /**
+   * Finds the Chrome version that the host will run next.
+   *
+   * @return the staged or released version newer than the installed Chrome, or empty if there is
+   *     none
+   */
+  public Optional<Version> upcomingVersion() {
+    final Optional<Version> staged = chrome.getStagedVersion();
+    if (staged.isPresent()) {
+      Log.printf("Chrome %s is staged to be used after a restart\n",
+          staged.get().identifier());
+      return staged;
+    }
+
+    final Version installed = chrome.getVersion();
+    return channels.latest(channel).filter(released -> released.compareTo(installed) > 0);
+  }
+}
@@ -0,0 +1,300 @@
+package com.dieg0407.utils.chromedriver;
+
+import static java.lang.String.format;
+
+import com.dieg0407.utils.chromedriver.model.AtomicFiles;
+import com.dieg0407.utils.chromedriver.model.Checksums;
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.Log;
+import com.dieg0407.utils.chromedriver.model.Metrics;
+import com.dieg0407.utils.chromedriver.model.Version;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipFile;
+
+/**
+ * Downloads every ChromeDriver build published for a range of versions and a set of platforms
+ * into a folder with the layout of the Chrome for Testing host, {@code <version>/<platform>/
+ * chromedriver-<platform>.zip}, ready to be uploaded to an internal artifact repository or served
+ * as is. Every combination runs on its own virtual thread, bounded by a semaphore, while the
+ * downloader bounds the connections and the bandwidth of all of them together.
+ * <p>
+ * The digests of the stored archives are kept in a {@value CHECKSUMS_FILE} manifest in the folder,
+ * which {@code --checksums} accepts, so archives stored by an earlier run are skipped without being
+ * read again.
+ */
+public class Seeder {
+
+  public static final String CHECKSUMS_FILE = "SHA256SUMS";
+  public static final String INDEX_FOLDER = ".index";
+
+  /**
+   * An inclusive range of versions. A bound may leave out its last parts, the lower bound is then
+   * filled with zeros and the upper one with the largest values, so {@code 124..126} covers every
+   * build of the majors 124 to 126.
+   */
+  public record Range(Version from, Version to) {
+
+    /**
+     * Parses a range in the format {@code <from>..<to>} or a single, possibly partial, version.
+     *
+     * @param range the range to parse
+     * @return the parsed range
+     * @throws IllegalArgumentException if the range isn't in the expected format
+     */
+    public static Range parse(final String range) {
+      assert range != null : "Range cannot be null";
+
+      final String[] bounds = range.split("\\.\\.", -1);
+      if (bounds.length > 2) {
+        throw new IllegalArgumentException(
+            "Unexpected version range: '" + range + "'. Expected format: '<from>..<to>'");
+      }
+      final Range parsed = new Range(bound(bounds[0], "0"),
+          bound(bounds[bounds.length - 1], "65535"));
+      if (parsed.from().compareTo(parsed.to()) > 0) {
+        throw new IllegalArgumentException("Empty version range: '" + range + "'");
+      }
+      return parsed;
+    }
+
+    private static Version bound(final String bound, final String filler) {
+      final List<String> parts = new ArrayList<>(List.of(bound.trim().split("\\.", -1)));
+      if (parts.size() > 4) {
+        throw new IllegalArgumentException("Unexpected version: '" + bound + "'");
+      }
+      while (parts.size() < 4) {
+        parts.add(filler);
+      }
+      return Version.fromRawVersion(String.join(".", parts));
+    }
+  }
+
+  public enum Status {
+    DOWNLOADED,
+    STORED_BEFORE,
+    FAILED,
+  }
+
+  public record Result(DriverIndex.Entry entry, Status status, long bytes, Duration elapsed,
+                       String detail) {
+
+  }
+
+  /**
+   * What a run stored, with the platforms that have no build in the range.
+   */
+  public record Summary(List<Result> results, List<String> unpublished, Duration elapsed) {
+
+    public long count(final Status status) {
+      return results.stream().filter(result -> result.status() == status).count();
+    }
+
+    public long downloadedBytes() {
+      return results.stream().filter(result -> result.status() == Status.DOWNLOADED)
+          .mapToLong(Result::bytes).sum();
+    }
+
+    public double bytesPerSecond() {
+      return elapsed.isZero() ? 0 : downloadedBytes() * 1e9 / elapsed.toNanos();
+    }
+  }
+
+  private final DriverIndex index;
+  private final Downloader downloader;
+  private final Checksums checksums;
+  private final File folder;
+  private final Semaphore downloads;
+
+  /**
+   * Constructs a Seeder that stores the archives in the given folder.
+   *
+   * @param index        the index of the published ChromeDriver builds
+   * @param downloader   the downloader, which bounds the connections and bandwidth of all
+   *                     downloads
+   * @param checksums    the expected digests of the archives
+   * @param folder       the folder where the archives are stored
+   * @param maxDownloads the maximum number of archives downloaded at the same time
+   */
+  public Seeder(final DriverIndex index, final Downloader downloader, final Checksums checksums,
+      final File folder, final int maxDownloads) {
+    assert index != null : "Index cannot be null";
+    assert downloader != null : "Downloader cannot be null";
+    assert checksums != null : "Checksums cannot be null";
+    assert folder != null : "Folder cannot be null";
+    assert maxDownloads > 0 : "Max downloads must be greater than 0";
+
+    this.index = index;
+    this.downloader = downloader;
+    this.checksums = checksums;
+    this.folder = folder;
+    this.downloads = new Semaphore(maxDownloads);
+  }
+
+  /**
+   * Downloads, verifies and stores the builds of every platform within the range, then rewrites
+   * the {@value CHECKSUMS_FILE} manifest. A failed build doesn't stop the others.
+   *
+   * @param range     the versions to store
+   * @param platforms the Chrome for Testing platforms to store
+   * @return what was stored
+   * @throws InterruptedException if the thread is interrupted while waiting for the downloads
+   */
+  public Summary seed(final Range range, final List<String> platforms)
+      throws InterruptedException {
+    assert range != null : "Range cannot be null";
+    assert platforms != null : "Platforms cannot be null";
+
+    final long start = System.nanoTime();
+    final Map<String, String> stored = readManifest();
+    final List<String> unpublished = new ArrayList<>();
+    final List<Future<Result>> futures = new ArrayList<>();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (String platform : platforms) {
+        final List<DriverIndex.Entry> entries = index.between(range.from(), range.to(), platform);
+        if (entries.isEmpty()) {
+          unpublished.add(platform);
+          continue;
+        }
+        for (DriverIndex.Entry entry : entries) {
+          futures.add(executor.submit(() -> store(entry, stored)));
+        }
+      }
+    }
+
+    final List<Result> results = new ArrayList<>();
+    for (Future<Result> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      }
+    }
+
+    synchronized (stored) {
+      writeManifest(stored);
+    }
+    return new Summary(results, unpublished, Duration.ofNanos(System.nanoTime() - start));
+  }
+
+  private Result store(final DriverIndex.Entry entry, final Map<String, String> stored)
+      throws InterruptedException {
+    final String path = pathOf(entry);
+    final File archive = new File(folder, path);
+    final long start = System.nanoTime();
+
+    final String known;
+    synchronized (stored) {
+      known = stored.get(path);
+    }
+    if (known != null && archive.isFile()) {
+      try {
+        checksums.verify(entry.url(), known);
+        return result(entry, Status.STORED_BEFORE, archive.length(), start, "");
+      } catch (Checksums.MismatchException e) {
+        return result(entry, Status.FAILED, 0, start, e.getMessage());
+      }
+    }
+
+    downloads.acquire();
+    try (Metrics.Span span = Metrics.global().start(Metrics.Phase.DOWNLOAD, entry.url())) {
+      final Downloader.Digested downloaded = download(entry.url(), archive);
+      span.bytes(downloaded.file().length());
+      synchronized (stored) {
+        stored.put(path, downloaded.sha256());
+      }
+      return result(entry, Status.DOWNLOADED, downloaded.file().length(), start, "");
+    } catch (RuntimeException | IOException e) {
+      return result(entry, Status.FAILED, 0, start, e.getMessage());
+    } finally {
+      downloads.release();
+    }
+  }
+
+  // the archive only appears under its final name once it's verified
+  private Downloader.Digested download(final URI url, final File archive) throws IOException {
+    Files.createDirectories(archive.toPath().getParent());
+    final File staged = new File(archive.getParentFile(), archive.getName() + ".tmp");
+    final Downloader.Digested downloaded = downloader.downloadDigested(url, staged);
+    try {
+      checksums.verify(url, downloaded.sha256());
+      checkHasExecutable(downloaded.file());
+      AtomicFiles.move(downloaded.file().toPath(), archive.toPath());
+    } finally {
+      Files.deleteIfExists(staged.toPath());
+    }
+    return new Downloader.Digested(archive, downloaded.sha256());
+  }
+
+  // the central directory is at the end, a truncated archive has none
+  private static void checkHasExecutable(final File archive) throws IOException {
+    try (ZipFile zip = new ZipFile(archive)) {
+      final boolean found = zip.stream().anyMatch(entry -> !entry.isDirectory()
+          && (entry.getName().endsWith("/chromedriver")
+          || entry.getName().endsWith("/chromedriver.exe")));
+      if (!found) {
+        throw new IOException("No ChromeDriver executable in " + archive.getName());
+      }
+    }
+  }
+
+  private Map<String, String> readManifest() {
+    final Map<String, String> stored = new TreeMap<>();
+    final Path manifest = folder.toPath().resolve(CHECKSUMS_FILE);
+    if (!Files.exists(manifest)) {
+      return stored;
+    }
+    try {
+      for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+        final String[] parts = line.trim().split("\\s+", 2);
+        if (parts.length == 2 && !parts[0].startsWith("#")) {
+          stored.put(parts[1], parts[0]);
+        }
+      }
+    } catch (IOException e) {
+      // the archives are downloaded again and the manifest rewritten
+      Log.printf("Ignoring unreadable %s: %s\n", manifest, e.getMessage());
+    }
+    return stored;
+  }
+
+  private void writeManifest(final Map<String, String> stored) {
+    final StringBuilder content = new StringBuilder();
+    stored.forEach((path, sha256) -> content.append(sha256).append("  ").append(path)
+        .append('\n'));
+    final Path manifest = folder.toPath().resolve(CHECKSUMS_FILE);
+    try {
+      Files.createDirectories(folder.toPath());
+      final Path staged = manifest.resolveSibling(CHECKSUMS_FILE + ".tmp");
+      Files.writeString(staged, content, StandardCharsets.UTF_8);
+      AtomicFiles.move(staged, manifest);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to write " + manifest, e);
+    }
+  }
+
+  private static String pathOf(final DriverIndex.Entry entry) {
+    return format("%s/%s/chromedriver-%s.zip", entry.version().identifier(), entry.platform(),
+        entry.platform());
+  }
+
+  private static Result result(final DriverIndex.Entry entry, final Status status,
+      final long bytes, final long start, final String detail) {
+    return new Result(entry, status, bytes, Duration.ofNanos(System.nanoTime() - start), detail);
+  }
+}
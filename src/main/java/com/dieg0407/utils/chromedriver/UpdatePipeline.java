@@ -0,0 +1,110 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.Log;
+import com.dieg0407.utils.chromedriver.model.Version;
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Updates a single Chrome/ChromeDriver pair. Both binaries are probed side by side, and the
+ * ChromeDriver build is only resolved and fetched once both probes show that an update is needed,
+ * so a pair that is up to date never touches the index or the network.
+ */
+public class UpdatePipeline {
+
+  public enum Status {
+    UP_TO_DATE,
+    CLOSEST_PUBLISHED,
+    UPDATED,
+  }
+
+  /**
+   * The outcome of an update.
+   *
+   * @param status              whether ChromeDriver was updated
+   * @param chromeVersion       the version of Chrome
+   * @param chromedriverVersion the version of ChromeDriver before the update
+   * @param installed           the version of ChromeDriver after the update
+   */
+  public record Result(Status status, Version chromeVersion, Version chromedriverVersion,
+                       Version installed) {
+
+  }
+
+  private static final Executor VIRTUAL_THREADS = runnable -> Thread.ofVirtual().start(runnable);
+
+  private final Chrome chrome;
+  private final Chromedriver chromedriver;
+  private final DriverIndex index;
+  private final Chromedriver.ExtractionMode mode;
+  private final Version.Compatibility compatibility;
+
+  /**
+   * Constructs the pipeline of the given pair.
+   *
+   * @param chrome        the Chrome to match
+   * @param chromedriver  the ChromeDriver to update
+   * @param index         the index of the published ChromeDriver builds
+   * @param mode          how the executable is extracted from the downloaded zip
+   * @param compatibility which parts of the versions have to match for the pair to be up to date
+   */
+  public UpdatePipeline(final Chrome chrome, final Chromedriver chromedriver,
+      final DriverIndex index, final Chromedriver.ExtractionMode mode,
+      final Version.Compatibility compatibility) {
+    assert chrome != null : "Chrome cannot be null";
+    assert chromedriver != null : "Chromedriver cannot be null";
+    assert index != null : "Index cannot be null";
+    assert mode != null : "Extraction mode cannot be null";
+    assert compatibility != null : "Compatibility cannot be null";
+
+    this.chrome = chrome;
+    this.chromedriver = chromedriver;
+    this.index = index;
+    this.mode = mode;
+    this.compatibility = compatibility;
+  }
+
+  /**
+   * Runs the update.
+   *
+   * @return the outcome of the update
+   */
+  public Result run() {
+    final CompletableFuture<Version> probedChrome = CompletableFuture.supplyAsync(
+        chrome::getVersion, VIRTUAL_THREADS);
+    final CompletableFuture<Version> probedChromedriver = CompletableFuture.supplyAsync(
+        chromedriver::getVersion, VIRTUAL_THREADS);
+
+    final Version chromeVersion = join(probedChrome);
+    final Version chromedriverVersion = join(probedChromedriver);
+    if (chromedriverVersion.isUpToDateWith(chromeVersion, compatibility)) {
+      return new Result(Status.UP_TO_DATE, chromeVersion, chromedriverVersion,
+          chromedriverVersion);
+    }
+
+    final DriverIndex.Entry download = chromedriver.resolve(chromeVersion, index);
+    if (download.version().equals(chromedriverVersion)) {
+      return new Result(Status.CLOSEST_PUBLISHED, chromeVersion, chromedriverVersion,
+          chromedriverVersion);
+    }
+
+    final File extractedFile = chromedriver.fetch(download, mode);
+    chromedriver.install(extractedFile, download.version());
+    if (!extractedFile.delete()) {
+      Log.printf("Could not remove extracted ChromeDriver at %s\n",
+          extractedFile.getAbsolutePath());
+    }
+    return new Result(Status.UPDATED, chromeVersion, chromedriverVersion, download.version());
+  }
+
+  private static <T> T join(final CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException cause ? cause : e;
+    }
+  }
+}
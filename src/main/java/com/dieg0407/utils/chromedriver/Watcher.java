@@ -0,0 +1,145 @@
+package com.dieg0407.utils.chromedriver;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import com.dieg0407.utils.chromedriver.model.Log;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+import java.util.regex.Pattern;
+
+/**
+ * Runs an update whenever Chrome is upgraded. The folders where Chrome is installed are watched
+ * for changes to the Chrome binary (linux) or for new version-numbered folders (windows). As a
+ * fallback for missed events, the update also runs periodically with a random jitter, so a fleet
+ * started at the same time doesn't hit the download host at the same minute.
+ */
+public class Watcher {
+
+  private static final Pattern VERSION_FOLDER = Pattern.compile("\\d+\\.\\d+\\.\\d+\\.\\d+");
+
+  private final List<Path> chromeLocations;
+  private final Runnable update;
+  private final Duration interval;
+  private final Duration settle;
+  private final RandomGenerator random;
+
+  /**
+   * Constructs a Watcher for the given Chrome installations.
+   *
+   * @param chromeLocations the paths to the Chrome executables to watch
+   * @param update          the update to run when any of them changes
+   * @param interval        the average time between fallback updates
+   * @param settle          how long the folders have to stay quiet after a change before the
+   *                        update runs, installers write many files in a row
+   * @param random          the source of the fallback jitter
+   */
+  public Watcher(final List<Path> chromeLocations, final Runnable update,
+      final Duration interval, final Duration settle, final RandomGenerator random) {
+    assert chromeLocations != null && !chromeLocations.isEmpty()
+        : "Chrome locations cannot be null or empty";
+    assert update != null : "Update cannot be null";
+    assert interval != null && !interval.isNegative() && !interval.isZero()
+        : "Interval must be positive";
+    assert settle != null && !settle.isNegative() : "Settle cannot be negative";
+    assert random != null : "Random cannot be null";
+
+    this.chromeLocations = chromeLocations;
+    this.update = update;
+    this.interval = interval;
+    this.settle = settle;
+    this.random = random;
+  }
+
+  /**
+   * Runs the update once and then every time Chrome changes, until the thread is interrupted.
+   *
+   * @throws IOException          if the folders can't be watched
+   * @throws InterruptedException when the thread is interrupted, which stops the watcher
+   */
+  public void run() throws IOException, InterruptedException {
+    try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      final Set<String> binaries = new HashSet<>();
+      for (Path chromeLocation : chromeLocations) {
+        // package managers usually link the binary from elsewhere, watch where it really lives
+        final Path binary = chromeLocation.toRealPath();
+        binaries.add(binary.getFileName().toString());
+        binary.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        Log.printf("Watching %s for Chrome upgrades\n", binary.getParent());
+      }
+
+      runUpdate("startup");
+      long nextFallback = System.nanoTime() + jittered(interval).toNanos();
+      while (!Thread.currentThread().isInterrupted()) {
+        final long timeout = Math.max(0, nextFallback - System.nanoTime());
+        final WatchKey key = watchService.poll(timeout, TimeUnit.NANOSECONDS);
+        if (key == null) {
+          runUpdate("scheduled check");
+          nextFallback = System.nanoTime() + jittered(interval).toNanos();
+          continue;
+        }
+
+        boolean changed = isRelevant(key, binaries);
+        if (!changed) {
+          continue;
+        }
+
+        // wait for the installer to finish before looking at the new version
+        WatchKey next = watchService.poll(settle.toNanos(), TimeUnit.NANOSECONDS);
+        while (next != null) {
+          isRelevant(next, binaries);
+          next = watchService.poll(settle.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        runUpdate("Chrome changed");
+        nextFallback = System.nanoTime() + jittered(interval).toNanos();
+      }
+    }
+    throw new InterruptedException("Watcher interrupted");
+  }
+
+  // consumes the events of the key and resets it so it keeps receiving events
+  private static boolean isRelevant(final WatchKey key, final Set<String> binaries) {
+    boolean relevant = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        relevant = true;
+        continue;
+      }
+      final String name = event.context().toString();
+      if (binaries.contains(name) || VERSION_FOLDER.matcher(name).matches()) {
+        relevant = true;
+      }
+    }
+    key.reset();
+    return relevant;
+  }
+
+  private void runUpdate(final String reason) {
+    Log.printf("Checking ChromeDriver (%s)\n", reason);
+    try {
+      update.run();
+    } catch (RuntimeException e) {
+      // a failed update shouldn't stop the watcher, the next change or check retries it
+      e.printStackTrace(System.err);
+    }
+  }
+
+  // somewhere between 75% and 125% of the interval
+  private Duration jittered(final Duration interval) {
+    final long quarter = interval.toMillis() / 4;
+    final long jitter = quarter == 0 ? 0 : random.nextLong(-quarter, quarter + 1);
+    return interval.plusMillis(jitter);
+  }
+}
@@ -0,0 +1,35 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Replaces files with a single rename, so readers never see them missing or half written.
+ */
+public final class AtomicFiles {
+
+  private AtomicFiles() {
+  }
+
+  /**
+   * Moves the source over the target with an atomic rename. Filesystems that can't rename
+   * atomically get a move that replaces the target instead.
+   *
+   * @param source the file to move, usually staged next to the target
+   * @param target the file to replace
+   * @throws IOException if the file can't be moved
+   */
+  public static void move(final Path source, final Path target) throws IOException {
+    assert source != null : "Source cannot be null";
+    assert target != null : "Target cannot be null";
+
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+
+/**
+ * A budget of bytes per second shared by every download that reads through it. It's a token
+ * bucket holding up to one second of bytes: a reader takes the bytes it read from the bucket and
+ * sleeps off any debt, so concurrent downloads split the budget between them and a burst after an
+ * idle second is allowed.
+ */
+public class Bandwidth {
+
+  private static final Bandwidth UNLIMITED = new Bandwidth(Long.MAX_VALUE);
+
+  private final long bytesPerSecond;
+  private double tokens;
+  private long refilledAt;
+
+  /**
+   * Constructs a budget of the given bytes per second.
+   *
+   * @param bytesPerSecond the bytes that may be read every second by all the readers together
+   */
+  public Bandwidth(final long bytesPerSecond) {
+    assert bytesPerSecond > 0 : "Bytes per second must be greater than 0";
+
+    this.bytesPerSecond = bytesPerSecond;
+    this.tokens = bytesPerSecond;
+    this.refilledAt = System.nanoTime();
+  }
+
+  /**
+   * Returns a budget that never makes a reader wait.
+   *
+   * @return the unlimited budget
+   */
+  public static Bandwidth unlimited() {
+    return UNLIMITED;
+  }
+
+  /**
+   * Takes the given bytes from the budget, waiting until the budget allows them.
+   *
+   * @param bytes the bytes that were read
+   * @throws InterruptedIOException if the thread is interrupted while waiting
+   */
+  public void take(final long bytes) throws InterruptedIOException {
+    if (this == UNLIMITED || bytes <= 0) {
+      return;
+    }
+
+    final Duration wait = reserve(bytes);
+    if (wait.isZero()) {
+      return;
+    }
+    try {
+      Thread.sleep(wait);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+    }
+  }
+
+  // the bucket goes into debt, so the readers that come next wait for the ones before them
+  private synchronized Duration reserve(final long bytes) {
+    final long now = System.nanoTime();
+    tokens = Math.min(bytesPerSecond, tokens + (now - refilledAt) * bytesPerSecond / 1e9);
+    refilledAt = now;
+    tokens -= bytes;
+    return tokens >= 0 ? Duration.ZERO
+        : Duration.ofNanos((long) (-tokens * 1e9 / bytesPerSecond));
+  }
+
+  public long getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+}
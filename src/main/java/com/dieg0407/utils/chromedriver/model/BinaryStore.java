@@ -0,0 +1,184 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Keeps one canonical ChromeDriver executable per version, from which every installation of that
+ * version is made. An installation on the same filesystem as the store is a hard link to the
+ * canonical file, so N installations cost the disk space, writes and page cache of one. Elsewhere
+ * it's a copy made by {@link Files#copy}, which the JDK leaves to the kernel ({@code
+ * copy_file_range} on Linux) so filesystems that can share the blocks, such as btrfs or XFS, clone
+ * the file instead of writing it again.
+ * <p>
+ * Installed executables are only ever replaced by a rename, never written in place, so the files
+ * that share a canonical executable can't change one another.
+ */
+public class BinaryStore {
+
+  public static final String EXECUTABLE_NAME = "chromedriver";
+
+  /**
+   * How an installation was made.
+   */
+  public enum Method {
+    /**
+     * A hard link to the canonical executable, nothing was written.
+     */
+    HARDLINK,
+    /**
+     * A copy of the executable, cloned by the filesystem where it supports it.
+     */
+    COPY,
+  }
+
+  private static final BinaryStore NONE = new BinaryStore();
+
+  private final File folder;
+
+  private BinaryStore() {
+    this.folder = null;
+  }
+
+  /**
+   * Constructs a store that keeps the canonical executables in the given folder, as
+   * {@code <folder>/<version>/}{@value EXECUTABLE_NAME}.
+   *
+   * @param folder the folder of the store, on the filesystem of the installations to link them
+   */
+  public BinaryStore(final File folder) {
+    assert folder != null : "Folder cannot be null";
+
+    this.folder = folder;
+  }
+
+  /**
+   * Returns a store that keeps nothing, every installation is a copy of the extracted executable.
+   *
+   * @return the empty store
+   */
+  public static BinaryStore none() {
+    return NONE;
+  }
+
+  /**
+   * Makes the target a copy of the given extracted executable, linked to the canonical executable
+   * of its version when possible. The canonical executable is stored first if it isn't yet.
+   *
+   * @param extractedFile the extracted ChromeDriver executable, left untouched
+   * @param version       the version of the executable
+   * @param target        the file to create, replaced if it exists
+   * @return how the target was made
+   */
+  public Method materialize(final Path extractedFile, final Version version, final Path target) {
+    assert extractedFile != null : "Extracted file cannot be null";
+    assert version != null : "Version cannot be null";
+    assert target != null : "Target cannot be null";
+
+    try {
+      if (folder == null) {
+        Files.copy(extractedFile, target, StandardCopyOption.REPLACE_EXISTING);
+        return Method.COPY;
+      }
+
+      final Path canonical = store(extractedFile, version);
+      Files.deleteIfExists(target);
+      try {
+        Files.createLink(target, canonical);
+        return Method.HARDLINK;
+      } catch (UnsupportedOperationException | IOException e) {
+        // another filesystem or no support for links
+        Files.copy(canonical, target, StandardCopyOption.REPLACE_EXISTING);
+        return Method.COPY;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to materialize chromedriver: " + target, e);
+    }
+  }
+
+  /**
+   * Returns where the canonical executable of the given version is kept.
+   *
+   * @param version the version of ChromeDriver
+   * @return the canonical executable, which may not be stored yet
+   */
+  public Path canonicalPath(final Version version) {
+    assert version != null : "Version cannot be null";
+    assert folder != null : "The empty store keeps no executable";
+
+    return folder.toPath().resolve(version.identifier()).resolve(EXECUTABLE_NAME);
+  }
+
+  /**
+   * Removes the canonical executables older than the given number of newest versions. The
+   * installations linked to them keep working, a hard link doesn't depend on the file it was made
+   * from, only a later installation of a removed version is stored again.
+   *
+   * @param keep the number of newest versions that are always kept
+   * @return the removed versions
+   */
+  public List<Version> prune(final int keep) {
+    assert keep > 0 : "At least one version has to be kept";
+
+    final File[] folders = folder == null ? null : folder.listFiles(File::isDirectory);
+    if (folders == null) {
+      return List.of();
+    }
+
+    final List<Version> stored = new ArrayList<>();
+    for (File versionFolder : folders) {
+      try {
+        stored.add(Version.fromRawVersion(versionFolder.getName()));
+      } catch (IllegalArgumentException e) {
+        // not a stored version
+      }
+    }
+    Collections.sort(stored);
+
+    final List<Version> removed = new ArrayList<>();
+    for (Version version : stored.subList(0, Math.max(0, stored.size() - keep))) {
+      final Path canonical = canonicalPath(version);
+      try (Stream<Path> paths = Files.walk(canonical.getParent())) {
+        for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+          Files.deleteIfExists(path);
+        }
+        removed.add(version);
+      } catch (IOException e) {
+        Log.printf("Could not remove stored ChromeDriver version %s: %s\n",
+            version.identifier(), e.getMessage());
+      }
+    }
+    return removed;
+  }
+
+  // the canonical file only appears complete, processes storing the same version race harmlessly
+  private Path store(final Path extractedFile, final Version version) throws IOException {
+    final Path canonical = canonicalPath(version);
+    if (Files.isRegularFile(canonical)) {
+      return canonical;
+    }
+
+    Files.createDirectories(canonical.getParent());
+    final Path staged = Files.createTempFile(canonical.getParent(), EXECUTABLE_NAME, ".tmp");
+    try {
+      Files.copy(extractedFile, staged, StandardCopyOption.REPLACE_EXISTING);
+      if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+        Files.setPosixFilePermissions(staged, PosixFilePermissions.fromString("rwxr-xr-x"));
+      }
+      AtomicFiles.move(staged, canonical);
+    } finally {
+      Files.deleteIfExists(staged);
+    }
+    return canonical;
+  }
+}
@@ -0,0 +1,203 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The expected SHA-256 digests of the ChromeDriver archives, read from a manifest in the format
+ * written by {@code sha256sum}: one {@code <digest>  <path>} pair per line. A path matches every
+ * URL whose path ends with it, so {@code 138.0.7204.49/linux64/chromedriver-linux64.zip} matches
+ * the archive of that version on any mirror.
+ */
+public class Checksums {
+
+  /**
+   * Thrown when a downloaded or cached archive doesn't have the expected digest.
+   */
+  public static class MismatchException extends RuntimeException {
+
+    private final String expected;
+    private final String actual;
+
+    public MismatchException(final URI url, final String expected, final String actual) {
+      super(format("Checksum mismatch for '%s', expected SHA-256 %s but got %s", url, expected,
+          actual));
+      this.expected = expected;
+      this.actual = actual;
+    }
+
+    public String getExpected() {
+      return expected;
+    }
+
+    public String getActual() {
+      return actual;
+    }
+  }
+
+  private static final Checksums NONE = new Checksums(Map.of());
+
+  private final Map<String, String> digests;
+
+  private Checksums(final Map<String, String> digests) {
+    this.digests = digests;
+  }
+
+  /**
+   * Returns checksums that know no digest, nothing is verified with them.
+   *
+   * @return empty checksums
+   */
+  public static Checksums none() {
+    return NONE;
+  }
+
+  /**
+   * Reads a manifest where every non-empty line that doesn't start with '#' holds a pair in the
+   * format {@code <sha256> <path>}, separated by whitespace. The path may be prefixed with '*' as
+   * {@code sha256sum} does for binary files.
+   *
+   * @param manifest the manifest file
+   * @return the checksums of the manifest
+   * @throws IllegalArgumentException if a line isn't in the expected format
+   */
+  public static Checksums load(final File manifest) {
+    assert manifest != null : "Manifest cannot be null";
+
+    final Map<String, String> digests = new HashMap<>();
+    try {
+      int lineNumber = 0;
+      for (String line : Files.readAllLines(manifest.toPath())) {
+        lineNumber++;
+        final String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+          continue;
+        }
+
+        final String[] parts = trimmed.split("\\s+", 2);
+        if (parts.length != 2 || !isSha256(parts[0])) {
+          throw new IllegalArgumentException(
+              "Unexpected checksum line " + lineNumber + ": '" + line
+                  + "'. Expected format: '<sha256>  <path>'");
+        }
+        final String path = parts[1].startsWith("*") ? parts[1].substring(1) : parts[1];
+        digests.put(path.startsWith("/") ? path : "/" + path, parts[0].toLowerCase(Locale.ROOT));
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read checksums: " + manifest.getAbsolutePath(), e);
+    }
+    return new Checksums(digests);
+  }
+
+  /**
+   * Looks up the expected digest of the archive at the given URL.
+   *
+   * @param url the URL of the archive
+   * @return the expected SHA-256 in lower case hex or empty if the manifest doesn't list it
+   */
+  public Optional<String> expected(final URI url) {
+    assert url != null : "URL cannot be null";
+
+    final String path = url.getPath();
+    if (path == null || digests.isEmpty()) {
+      return Optional.empty();
+    }
+    // try every suffix of the path that starts at a '/', the longest first
+    for (int slash = path.indexOf('/'); slash >= 0; slash = path.indexOf('/', slash + 1)) {
+      final String digest = digests.get(path.substring(slash));
+      if (digest != null) {
+        return Optional.of(digest);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Compares the digest of the archive at the given URL with the expected one. Archives that
+   * aren't listed are accepted.
+   *
+   * @param url    the URL of the archive
+   * @param sha256 the SHA-256 of the archive in hex
+   * @return true if the archive was verified, false if it isn't listed
+   * @throws MismatchException if the digests don't match
+   */
+  public boolean verify(final URI url, final String sha256) {
+    assert sha256 != null : "SHA-256 cannot be null";
+
+    final Optional<String> expected = expected(url);
+    if (expected.isEmpty()) {
+      return false;
+    }
+    if (!expected.get().equalsIgnoreCase(sha256)) {
+      throw new MismatchException(url, expected.get(), sha256);
+    }
+    return true;
+  }
+
+  /**
+   * Creates a new SHA-256 digest.
+   *
+   * @return the digest
+   */
+  public static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Completes the given digest and formats it in lower case hex.
+   *
+   * @param digest the digest to complete
+   * @return the hex digest
+   */
+  public static String hex(final MessageDigest digest) {
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Reads the whole file to compute its SHA-256, for files that weren't digested when written.
+   *
+   * @param file the file to digest
+   * @return the hex digest
+   * @throws IOException if the file can't be read
+   */
+  public static String sha256Of(final Path file) throws IOException {
+    final MessageDigest digest = sha256();
+    try (InputStream inputStream = new DigestInputStream(Files.newInputStream(file), digest)) {
+      final byte[] buffer = new byte[64 * 1024];
+      while (inputStream.read(buffer) != -1) {
+        // the digest is updated while reading
+      }
+    }
+    return hex(digest);
+  }
+
+  private static boolean isSha256(final String value) {
+    if (value.length() != 64) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (Character.digit(value.charAt(i), 16) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,187 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent cache of what a discovery found in each directory, keyed by the path of the
+ * directory and valid while its modification time doesn't change. Creating, removing or renaming
+ * an entry of a directory changes its modification time, so an unchanged directory is known with
+ * a single {@code stat} call instead of being listed again.
+ * <p>
+ * A directory modified less than {@link #RACY_NANOS} before it was listed isn't cached, as a change
+ * right after the listing may not move its modification time on filesystems with a coarse clock.
+ */
+public class DirectoryCache {
+
+  /**
+   * What a directory holds that matters to a discovery, as names relative to the directory.
+   *
+   * @param directories   the subdirectories to walk
+   * @param chromes       the Chrome executables
+   * @param chromedrivers the ChromeDriver executables
+   */
+  public record Listing(List<String> directories, List<String> chromes,
+                        List<String> chromedrivers) {
+
+    public static final Listing EMPTY = new Listing(List.of(), List.of(), List.of());
+  }
+
+  static final long RACY_NANOS = 2_000_000_000L;
+
+  private static final String SEPARATOR = "\0";
+
+  private record Cached(long modifiedNanos, Listing listing) {
+
+  }
+
+  private final File index;
+  private volatile Map<Path, Cached> entries;
+  private volatile boolean dirty;
+
+  /**
+   * Constructs a cache stored in the given index file. Nothing is read from disk until the cache
+   * is used.
+   *
+   * @param index the file where the listings are stored
+   */
+  public DirectoryCache(final File index) {
+    assert index != null : "Index cannot be null";
+
+    this.index = index;
+  }
+
+  /**
+   * Returns the listing of the directory if it didn't change since it was recorded.
+   *
+   * @param directory     the directory
+   * @param modifiedNanos the current modification time of the directory
+   * @return the cached listing or empty if it's unknown or the directory changed
+   */
+  public Optional<Listing> get(final Path directory, final long modifiedNanos) {
+    assert directory != null : "Directory cannot be null";
+
+    final Cached cached = entries().get(directory);
+    return cached != null && cached.modifiedNanos() == modifiedNanos
+        ? Optional.of(cached.listing())
+        : Optional.empty();
+  }
+
+  /**
+   * Records the listing of the directory as it was when it had the given modification time.
+   *
+   * @param directory     the directory
+   * @param modifiedNanos the modification time of the directory before it was listed
+   * @param listing       what the directory holds
+   */
+  public void put(final Path directory, final long modifiedNanos, final Listing listing) {
+    assert directory != null : "Directory cannot be null";
+    assert listing != null : "Listing cannot be null";
+
+    if (System.currentTimeMillis() * 1_000_000 - modifiedNanos < RACY_NANOS
+        || !storable(directory.toString()) || !storable(listing)) {
+      entries().remove(directory);
+    } else {
+      entries().put(directory, new Cached(modifiedNanos, listing));
+    }
+    dirty = true;
+  }
+
+  /**
+   * Drops the listings of the directories that weren't visited, such as removed directories, and
+   * writes the index if anything changed.
+   *
+   * @param visited the directories visited by the last discovery
+   */
+  public synchronized void save(final Set<Path> visited) {
+    assert visited != null : "Visited cannot be null";
+
+    if (entries().keySet().retainAll(visited)) {
+      dirty = true;
+    }
+    if (!dirty) {
+      return;
+    }
+
+    final File folder = index.getAbsoluteFile().getParentFile();
+    try {
+      Files.createDirectories(folder.toPath());
+      final StringBuilder builder = new StringBuilder();
+      for (Map.Entry<Path, Cached> entry : entries().entrySet()) {
+        final Listing listing = entry.getValue().listing();
+        builder.append(entry.getValue().modifiedNanos()).append('\t')
+            .append(entry.getKey()).append('\t')
+            .append(String.join(SEPARATOR, listing.directories())).append('\t')
+            .append(String.join(SEPARATOR, listing.chromes())).append('\t')
+            .append(String.join(SEPARATOR, listing.chromedrivers())).append('\n');
+      }
+      final Path staged = Files.createTempFile(folder.toPath(), index.getName(), ".tmp");
+      Files.writeString(staged, builder);
+      AtomicFiles.move(staged, index.toPath());
+      dirty = false;
+    } catch (IOException e) {
+      // the cache is only an optimization, the next discovery lists everything again
+      Log.printf("Could not write the discovery cache %s: %s\n", index, e.getMessage());
+    }
+  }
+
+  // read by every walking thread, only the first use takes the lock
+  private Map<Path, Cached> entries() {
+    final Map<Path, Cached> loaded = entries;
+    if (loaded != null) {
+      return loaded;
+    }
+    synchronized (this) {
+      if (entries == null) {
+        entries = load();
+      }
+      return entries;
+    }
+  }
+
+  private Map<Path, Cached> load() {
+    final Map<Path, Cached> loaded = new ConcurrentHashMap<>();
+    if (!index.exists()) {
+      return loaded;
+    }
+
+    try {
+      for (String line : Files.readAllLines(index.toPath())) {
+        final String[] parts = line.split("\t", -1);
+        if (parts.length != 5) {
+          continue; // ignore corrupted lines, the directory will be listed again
+        }
+        loaded.put(Path.of(parts[1]), new Cached(Long.parseLong(parts[0]),
+            new Listing(names(parts[2]), names(parts[3]), names(parts[4]))));
+      }
+    } catch (IOException | RuntimeException e) {
+      Log.printf("Ignoring unreadable discovery cache %s: %s\n", index, e.getMessage());
+      loaded.clear();
+    }
+    return loaded;
+  }
+
+  private static List<String> names(final String joined) {
+    return joined.isEmpty() ? List.of() : Arrays.asList(joined.split(SEPARATOR));
+  }
+
+  private static boolean storable(final Listing listing) {
+    return listing.directories().stream().allMatch(DirectoryCache::storable)
+        && listing.chromes().stream().allMatch(DirectoryCache::storable)
+        && listing.chromedrivers().stream().allMatch(DirectoryCache::storable);
+  }
+
+  // tabs and line breaks separate the fields of the index, names that hold them aren't cached
+  private static boolean storable(final String name) {
+    return name.indexOf('\t') < 0 && name.indexOf('\n') < 0 && name.indexOf('\r') < 0
+        && !name.contains(SEPARATOR);
+  }
+}
@@ -0,0 +1,343 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * A content-addressed cache of downloaded ChromeDriver archives. Archives are stored by their
+ * SHA-256 digest and an index file maps every (version, platform) pair to its archive. Entries are
+ * evicted by least recent use whenever the total size of the archives goes over the quota.
+ * <p>
+ * The folder can be shared by several processes, on one host or on several hosts mounting it.
+ * Every operation holds a lock on the {@value LOCK_FILE} file and reads the index again, so
+ * processes never overwrite each other's entries. Downloads are coordinated with a
+ * {@link FileLease} per archive, see {@link #lease(Version, String)}.
+ */
+public class DownloadCache {
+
+  public static final String INDEX_FILE = "cache.index";
+  public static final String LOCK_FILE = "cache.lock";
+  public static final long DEFAULT_QUOTA_IN_BYTES = 512L * 1024 * 1024;
+
+  public record Entry(Version version, String platform, String sha256, long size,
+                      long lastAccess) {
+
+    String key() {
+      return key(version, platform);
+    }
+
+    static String key(final Version version, final String platform) {
+      return version.identifier() + "/" + platform;
+    }
+  }
+
+  private final File folder;
+  private final long quotaInBytes;
+  private Map<String, Entry> entries;
+  private long lastAccess;
+
+  /**
+   * Constructs a cache stored in the given folder. Nothing is read from disk until the cache is
+   * used.
+   *
+   * @param folder       the folder where the archives and the index are stored
+   * @param quotaInBytes the maximum size of all the archives together
+   */
+  public DownloadCache(final File folder, final long quotaInBytes) {
+    assert folder != null : "Folder cannot be null";
+    assert quotaInBytes > 0 : "Quota must be greater than 0 bytes";
+
+    this.folder = folder;
+    this.quotaInBytes = quotaInBytes;
+  }
+
+  public File getFolder() {
+    return folder;
+  }
+
+  /**
+   * Looks up the archive of the given version and platform, marking it as recently used.
+   *
+   * @param version  the version of the archive
+   * @param platform the platform of the archive
+   * @return the cached archive or empty if it isn't cached
+   */
+  public Optional<File> get(final Version version, final String platform) {
+    assert version != null : "Version cannot be null";
+    assert platform != null : "Platform cannot be null";
+
+    return locked(() -> lookup(version, platform));
+  }
+
+  private Optional<File> lookup(final Version version, final String platform) {
+    final Entry entry = index().get(Entry.key(version, platform));
+    if (entry == null) {
+      return Optional.empty();
+    }
+
+    final File archive = archiveOf(entry.sha256());
+    if (!archive.exists() || archive.length() != entry.size()) {
+      // someone removed or truncated the archive behind our back
+      entries.remove(entry.key());
+      save();
+      return Optional.empty();
+    }
+
+    entries.put(entry.key(), new Entry(version, platform, entry.sha256(), entry.size(), tick()));
+    save();
+    return Optional.of(archive);
+  }
+
+  /**
+   * Returns the SHA-256 recorded when the archive of the given version and platform was cached, so
+   * a cached archive can be verified without reading it again.
+   *
+   * @param version  the version of the archive
+   * @param platform the platform of the archive
+   * @return the digest of the archive or empty if it isn't cached
+   */
+  public Optional<String> digestOf(final Version version, final String platform) {
+    assert version != null : "Version cannot be null";
+    assert platform != null : "Platform cannot be null";
+
+    return locked(() -> Optional.ofNullable(index().get(Entry.key(version, platform)))
+        .map(Entry::sha256));
+  }
+
+  /**
+   * Acquires the lease for downloading the archive of the given version and platform, waiting
+   * while another process holds it. Whoever waited should look the archive up again once the
+   * lease is acquired, the previous holder probably cached it.
+   *
+   * @param version  the version of the archive
+   * @param platform the platform of the archive
+   * @return the acquired lease, closing it lets the next process in
+   */
+  public FileLease lease(final Version version, final String platform) {
+    assert version != null : "Version cannot be null";
+    assert platform != null : "Platform cannot be null";
+
+    final File lease = new File(folder, format("%s.%s.lease", version.identifier(), platform));
+    try {
+      return FileLease.acquire(lease.toPath());
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to acquire lease: " + lease.getAbsolutePath(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting for lease: " + lease.getAbsolutePath(),
+          e);
+    }
+  }
+
+  /**
+   * Moves a downloaded archive into the cache and evicts the least recently used entries if the
+   * quota is exceeded. The just added entry is never evicted. The archive is read to compute its
+   * digest, use {@link #put(Version, String, File, String)} when it's already known.
+   *
+   * @param version    the version of the archive
+   * @param platform   the platform of the archive
+   * @param downloaded the downloaded archive, it's moved into the cache
+   * @return the cached archive
+   */
+  public File put(final Version version, final String platform, final File downloaded) {
+    assert downloaded != null && downloaded.exists() : "Downloaded file must exist";
+
+    try {
+      return put(version, platform, downloaded, Checksums.sha256Of(downloaded.toPath()));
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "Failed to store " + downloaded.getAbsolutePath() + " in the download cache", e);
+    }
+  }
+
+  /**
+   * Moves a downloaded archive with a known digest into the cache and evicts the least recently
+   * used entries if the quota is exceeded. The just added entry is never evicted.
+   *
+   * @param version    the version of the archive
+   * @param platform   the platform of the archive
+   * @param downloaded the downloaded archive, it's moved into the cache
+   * @param sha256     the SHA-256 of the archive in hex, computed while it was downloaded
+   * @return the cached archive
+   */
+  public File put(final Version version, final String platform,
+      final File downloaded, final String sha256) {
+    assert version != null : "Version cannot be null";
+    assert platform != null : "Platform cannot be null";
+    assert downloaded != null && downloaded.exists() : "Downloaded file must exist";
+    assert sha256 != null : "SHA-256 cannot be null";
+
+    return locked(() -> store(version, platform, downloaded, sha256));
+  }
+
+  private File store(final Version version, final String platform, final File downloaded,
+      final String sha256) {
+    try {
+      final File archive = archiveOf(sha256);
+      if (archive.exists()) {
+        Files.delete(downloaded.toPath());
+      } else {
+        Files.move(downloaded.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      final Entry entry = new Entry(version, platform, sha256, archive.length(), tick());
+      index().put(entry.key(), entry);
+      evict(entry);
+      save();
+      return archive;
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "Failed to store " + downloaded.getAbsolutePath() + " in the download cache", e);
+    }
+  }
+
+  /**
+   * Returns the cached entries, from the least to the most recently used.
+   *
+   * @return the cached entries
+   */
+  public List<Entry> entries() {
+    return locked(this::sortedEntries);
+  }
+
+  private List<Entry> sortedEntries() {
+    return index().values().stream()
+        .sorted(Comparator.comparingLong(Entry::lastAccess))
+        .toList();
+  }
+
+  // file locks can't overlap within one JVM, so every instance takes turns on the class first
+  private <T> T locked(final Supplier<T> action) {
+    synchronized (DownloadCache.class) {
+      createFolder();
+      final Path lockFile = new File(folder, LOCK_FILE).toPath();
+      try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE)) {
+        final FileLock lock = FileLease.lockOrWarn(channel, lockFile);
+        try {
+          // another process may have changed the index since it was last read
+          entries = null;
+          return action.get();
+        } finally {
+          if (lock != null) {
+            lock.release();
+          }
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to lock download cache: " + lockFile, e);
+      }
+    }
+  }
+
+  private void evict(final Entry keep) throws IOException {
+    final List<Entry> candidates = new ArrayList<>(sortedEntries());
+    long total = totalSize();
+    for (Entry candidate : candidates) {
+      if (total <= quotaInBytes) {
+        break;
+      }
+      if (candidate.equals(keep)) {
+        continue;
+      }
+
+      entries.remove(candidate.key());
+      // the same archive can be shared by several entries, only remove it when unused
+      final boolean shared = entries.values().stream()
+          .anyMatch(entry -> entry.sha256().equals(candidate.sha256()));
+      if (!shared) {
+        Files.deleteIfExists(archiveOf(candidate.sha256()).toPath());
+        total -= candidate.size();
+      }
+      Log.printf("Evicted ChromeDriver %s for %s from the download cache\n",
+          candidate.version().identifier(), candidate.platform());
+    }
+  }
+
+  private long totalSize() {
+    return entries.values().stream()
+        .map(entry -> Map.entry(entry.sha256(), entry.size()))
+        .distinct()
+        .mapToLong(Map.Entry::getValue)
+        .sum();
+  }
+
+  private Map<String, Entry> index() {
+    if (entries != null) {
+      return entries;
+    }
+
+    entries = new LinkedHashMap<>();
+    final Path index = new File(folder, INDEX_FILE).toPath();
+    if (!Files.exists(index)) {
+      return entries;
+    }
+
+    try {
+      for (String line : Files.readAllLines(index)) {
+        final String[] parts = line.split("\t");
+        if (parts.length != 5) {
+          continue; // ignore corrupted lines, the archive will be downloaded again
+        }
+        final Entry entry = new Entry(Version.fromRawVersion(parts[0]), parts[1], parts[2],
+            Long.parseLong(parts[3]), Long.parseLong(parts[4]));
+        entries.put(entry.key(), entry);
+        lastAccess = Math.max(lastAccess, entry.lastAccess());
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      throw new RuntimeException("Failed to read download cache index: " + index, e);
+    }
+    return entries;
+  }
+
+  private void save() {
+    createFolder();
+
+    final StringBuilder builder = new StringBuilder();
+    for (Entry entry : entries.values()) {
+      builder.append(format("%s\t%s\t%s\t%d\t%d\n", entry.version().identifier(),
+          entry.platform(), entry.sha256(), entry.size(), entry.lastAccess()));
+    }
+
+    // write a sibling first so a crash never leaves a half written index behind, under a unique
+    // name as the lock of the index isn't taken on filesystems without locks
+    final Path index = new File(folder, INDEX_FILE).toPath();
+    try {
+      final Path staged = Files.createTempFile(folder.toPath(), INDEX_FILE, ".tmp");
+      Files.writeString(staged, builder);
+      AtomicFiles.move(staged, index);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to write download cache index: " + index, e);
+    }
+  }
+
+  private void createFolder() {
+    if (!folder.exists() && !folder.mkdirs()) {
+      throw new RuntimeException("Failed to create cache folder: " + folder.getAbsolutePath());
+    }
+  }
+
+  // strictly increasing, so entries touched within the same millisecond keep their order
+  private long tick() {
+    lastAccess = Math.max(System.currentTimeMillis(), lastAccess + 1);
+    return lastAccess;
+  }
+
+  private File archiveOf(final String sha256) {
+    return new File(folder, sha256 + ".zip");
+  }
+}
@@ -3,11 +3,47 @@ package com.dieg0407.utils.chromedriver.model;
 import static java.lang.String.format;
 
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-public interface Downloader {
+public interface Downloader extends AutoCloseable {
+
+  /**
+   * A downloaded file and the SHA-256 of its content.
+   */
+  record Digested(File file, String sha256) {
+
+  }
 
   /**
    * Downloads a file from the specified URL to the given destination. If the file already exists at
@@ -19,10 +55,241 @@ public interface Downloader {
    */
   File download(final URI uri, final File destination);
 
+  /**
+   * Downloads a file like {@link #download(URI, File)} and returns the SHA-256 of its content, so
+   * it can be verified and cached without being read again. Implementations that can't digest the
+   * content while it's written read the downloaded file once more.
+   *
+   * @param uri         the URI of the file to download
+   * @param destination the destination file where the downloaded content will be saved
+   * @return the downloaded file and its digest
+   */
+  default Digested downloadDigested(final URI uri, final File destination) {
+    final File file = download(uri, destination);
+    try {
+      return new Digested(file, Checksums.sha256Of(file.toPath()));
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to digest " + file.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Opens a stream over the content of the specified URL, so it can be consumed while it's being
+   * downloaded. Closing the stream before reaching its end aborts the download.
+   *
+   * @param uri the URI of the file to download
+   * @return a stream over the downloaded content
+   */
+  InputStream open(final URI uri);
+
+  /**
+   * Downloads a file only if it changed since it was last downloaded into the destination. The
+   * validators returned by the server (ETag and Last-Modified) are stored next to the destination
+   * and sent back on the next call, so an unchanged file is answered with a 304 and no body.
+   *
+   * @param uri         the URI of the file to download
+   * @param destination the destination file where the downloaded content will be saved
+   * @return true if the file was downloaded, false if the destination was already up to date
+   */
+  boolean downloadIfModified(final URI uri, final File destination);
+
+  /**
+   * Releases the connections held by the downloader.
+   */
+  @Override
+  default void close() {
+  }
+
+  /**
+   * Sends the downloads under an upstream base URL to a mirror with the same layout instead, such
+   * as another instance serving its download cache. Whenever the mirror fails the download is
+   * retried from the upstream host, so an unreachable mirror only costs a failed request.
+   */
+  class MirrorDownloader implements Downloader {
+
+    private final Downloader delegate;
+    private final String upstreamBase;
+    private final String mirrorBase;
+
+    /**
+     * Constructs a downloader that rewrites the URLs starting with the upstream base.
+     *
+     * @param delegate     the downloader that fetches from the mirror and the upstream host
+     * @param upstreamBase the base URL that the mirror replaces
+     * @param mirrorBase   the base URL of the mirror
+     */
+    public MirrorDownloader(final Downloader delegate, final String upstreamBase,
+        final String mirrorBase) {
+      assert delegate != null : "Downloader cannot be null";
+      assert upstreamBase != null && !upstreamBase.isEmpty()
+          : "Upstream base cannot be null or empty";
+      assert mirrorBase != null && !mirrorBase.isEmpty() : "Mirror base cannot be null or empty";
+
+      this.delegate = delegate;
+      this.upstreamBase = stripTrailingSlash(upstreamBase);
+      this.mirrorBase = stripTrailingSlash(mirrorBase);
+    }
+
+    @Override
+    public File download(final URI uri, final File destination) {
+      return downloadDigested(uri, destination).file();
+    }
+
+    @Override
+    public Digested downloadDigested(final URI uri, final File destination) {
+      final Optional<URI> mirrored = mirrored(uri);
+      if (mirrored.isPresent()) {
+        try {
+          return delegate.downloadDigested(mirrored.get(), destination);
+        } catch (RuntimeException e) {
+          fallingBack(mirrored.get(), e);
+        }
+      }
+      return delegate.downloadDigested(uri, destination);
+    }
+
+    @Override
+    public InputStream open(final URI uri) {
+      final Optional<URI> mirrored = mirrored(uri);
+      if (mirrored.isPresent()) {
+        try {
+          return delegate.open(mirrored.get());
+        } catch (RuntimeException e) {
+          fallingBack(mirrored.get(), e);
+        }
+      }
+      return delegate.open(uri);
+    }
+
+    @Override
+    public boolean downloadIfModified(final URI uri, final File destination) {
+      // the mirror only serves archives
+      return delegate.downloadIfModified(uri, destination);
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+
+    private Optional<URI> mirrored(final URI uri) {
+      final String url = uri.toString();
+      if (!url.startsWith(upstreamBase + "/")) {
+        return Optional.empty();
+      }
+      return Optional.of(URI.create(mirrorBase + url.substring(upstreamBase.length())));
+    }
+
+    private static void fallingBack(final URI mirrored, final RuntimeException e) {
+      Log.printf("Mirror failed to serve %s, downloading from upstream: %s\n", mirrored,
+          e.getMessage());
+    }
+
+    private static String stripTrailingSlash(final String url) {
+      return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+  }
+
+  /**
+   * Downloads files in segments fetched in parallel with HTTP range requests. The segments are
+   * written into a preallocated {@code .part} file next to the destination and the completed ones
+   * are recorded in a {@code .journal} file, so an interrupted download resumes from the segments
+   * that were already completed. Servers that don't support ranges are downloaded in a single
+   * stream.
+   * <p>
+   * The SHA-256 of the content is computed while it's written. A single stream is digested as it
+   * arrives; segments arrive out of order, so the digest follows the contiguous prefix of completed
+   * segments and reads each one back while it's still in the page cache, overlapping the hashing
+   * with the segments still downloading.
+   * <p>
+   * A single HTTP/2 client is shared by every download of the same instance, so connections and
+   * TLS sessions are reused instead of being negotiated for every file. The client is only built
+   * on the first request, runs that find ChromeDriver up to date never load the HTTP stack.
+   */
   class DownloaderImpl implements Downloader {
 
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final long DEFAULT_SEGMENT_SIZE = 2L * 1024 * 1024;
+    public static final String PARTIAL_SUFFIX = ".part";
+    public static final String JOURNAL_SUFFIX = ".journal";
+    public static final String VALIDATORS_SUFFIX = ".validators";
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+
+    private final int parallelism;
+    private final long segmentSize;
+    private final Semaphore connections;
+    private final Bandwidth bandwidth;
+    private ExecutorService executor;
+    private HttpClient client;
+
+    public DownloaderImpl() {
+      this(DEFAULT_PARALLELISM, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructs a downloader that fetches up to the given number of segments at the same time.
+     *
+     * @param parallelism the maximum number of segments downloaded at the same time
+     * @param segmentSize the size in bytes of every segment
+     */
+    public DownloaderImpl(final int parallelism, final long segmentSize) {
+      this(parallelism, segmentSize, Integer.MAX_VALUE, Bandwidth.unlimited());
+    }
+
+    /**
+     * Constructs a downloader whose downloads, together, keep at most the given number of
+     * connections open and read within the given bandwidth.
+     *
+     * @param parallelism    the maximum number of segments of one download fetched at the same
+     *                       time
+     * @param segmentSize    the size in bytes of every segment
+     * @param maxConnections the maximum number of requests of all downloads open at the same time
+     * @param bandwidth      the bandwidth shared by all downloads
+     */
+    public DownloaderImpl(final int parallelism, final long segmentSize, final int maxConnections,
+        final Bandwidth bandwidth) {
+      assert parallelism > 0 : "Parallelism must be greater than 0";
+      assert segmentSize > 0 : "Segment size must be greater than 0 bytes";
+      assert maxConnections > 0 : "Max connections must be greater than 0";
+      assert bandwidth != null : "Bandwidth cannot be null";
+
+      this.parallelism = parallelism;
+      this.segmentSize = segmentSize;
+      this.connections = new Semaphore(maxConnections, true);
+      this.bandwidth = bandwidth;
+    }
+
+    @Override
+    public synchronized void close() {
+      if (client != null) {
+        client.close();
+        executor.close();
+      }
+    }
+
+    private synchronized HttpClient client() {
+      if (client == null) {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .executor(executor)
+            .build();
+      }
+      return client;
+    }
+
     @Override
     public File download(final URI uri, final File destination) {
+      return downloadDigested(uri, destination).file();
+    }
+
+    @Override
+    public Digested downloadDigested(final URI uri, final File destination) {
       assert uri != null : "URL cannot be null";
       assert destination != null : "Destination cannot be null";
 
@@ -35,25 +302,400 @@ public interface Downloader {
         }
       }
 
-      try (final HttpClient client = HttpClient.newHttpClient()) {
-        final var request = java.net.http.HttpRequest.newBuilder()
-            .uri(uri)
-            .build();
+      final Path partial = destination.toPath()
+          .resolveSibling(destination.getName() + PARTIAL_SUFFIX);
+      final Path journal = destination.toPath()
+          .resolveSibling(destination.getName() + JOURNAL_SUFFIX);
+      final MessageDigest digest = Checksums.sha256();
+      try {
+        // asking for the first byte tells whether ranges are supported and how big the file is
+        final Response probe = send(request(uri)
+            .header("Range", "bytes=0-0")
+            .build());
+
+        try (InputStream body = probe.body()) {
+          final Optional<Long> length = probe.headers().firstValue("Content-Range")
+              .map(CONTENT_RANGE::matcher)
+              .filter(Matcher::matches)
+              .map(matcher -> Long.parseLong(matcher.group(1)));
+
+          if (probe.statusCode() == 200) {
+            // the server ignored the range, so the body is already the whole file
+            Files.deleteIfExists(journal);
+            Files.copy(new DigestInputStream(body, digest), partial,
+                StandardCopyOption.REPLACE_EXISTING);
+          } else if (probe.statusCode() == 206 && length.isPresent()) {
+            final String validator = probe.headers().firstValue("ETag")
+                .or(() -> probe.headers().firstValue("Last-Modified"))
+                .orElse("");
+            // the segments need the connection of the probe
+            body.close();
+            downloadSegments(uri, partial, journal, length.get(), validator, digest);
+          } else if (probe.statusCode() == 206 || probe.statusCode() == 416) {
+            // unknown or empty length, there's nothing to split
+            Files.deleteIfExists(journal);
+            body.close();
+            downloadSingle(uri, partial, digest);
+          } else {
+            throw new RuntimeException(format(
+                "Failed to download file from '%s'. HTTP status code: %d",
+                uri, probe.statusCode()
+            ));
+          }
+        }
+
+        Files.move(partial, destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(journal);
+      } catch (Exception e) {
+        throw new RuntimeException("Error downloading file: " + e.getMessage(), e);
+      }
+
+      return new Digested(destination, Checksums.hex(digest));
+    }
+
+    private void downloadSingle(final URI uri, final Path partial, final MessageDigest digest)
+        throws IOException, InterruptedException {
+      final Response response = send(request(uri).build());
 
-        // Send the request and receive the response
-        final var response = client.send(request, BodyHandlers.ofFile(destination.toPath()));
+      try (InputStream body = response.body()) {
+        if (response.statusCode() != 200) {
+          throw new RuntimeException(format(
+              "Failed to download file from '%s'. HTTP status code: %d",
+              uri, response.statusCode()
+          ));
+        }
+        Files.copy(new DigestInputStream(body, digest), partial,
+            StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+
+    private void downloadSegments(final URI uri, final Path partial, final Path journalFile,
+        final long length, final String validator, final MessageDigest digest)
+        throws IOException, InterruptedException, ExecutionException {
+      final Journal journal = Journal.open(journalFile, partial, length, segmentSize, validator);
+      final int segments = (int) ((length + segmentSize - 1) / segmentSize);
+      final Semaphore permits = new Semaphore(parallelism);
+      final PrefixDigest prefix = new PrefixDigest(digest, journal, segments, length);
+
+      try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        // writing the last byte sizes the file upfront, segments are then written in place
+        if (channel.size() > length) {
+          channel.truncate(length);
+        } else if (channel.size() < length) {
+          channel.write(ByteBuffer.wrap(new byte[1]), length - 1);
+        }
+
+        final List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+          for (int segment = 0; segment < segments; segment++) {
+            if (journal.isCompleted(segment)) {
+              continue;
+            }
+
+            final int index = segment;
+            futures.add(executor.submit(() -> {
+              permits.acquire();
+              try {
+                downloadSegment(uri, channel, index, length, validator);
+                channel.force(false);
+                journal.complete(index);
+              } finally {
+                permits.release();
+              }
+              prefix.advance(channel);
+              return null;
+            }));
+          }
+        }
+
+        for (Future<?> future : futures) {
+          future.get();
+        }
+        // when every segment was resumed from a previous run no task advanced the digest
+        prefix.advance(channel);
+      }
+    }
+
+    private void downloadSegment(final URI uri, final FileChannel channel, final int segment,
+        final long length, final String validator)
+        throws IOException, InterruptedException {
+      final long start = segment * segmentSize;
+      final long end = Math.min(length, start + segmentSize) - 1;
+
+      final HttpRequest.Builder request = request(uri)
+          .header("Range", format("bytes=%d-%d", start, end));
+      if (!validator.isEmpty()) {
+        // if the file changed since the probe the server answers with the whole file instead
+        request.header("If-Range", validator);
+      }
+
+      final Response response = send(request.build());
+      try (InputStream body = response.body()) {
+        if (response.statusCode() != 206) {
+          throw new IOException(format(
+              "Expected bytes %d-%d of '%s' but got HTTP status code: %d",
+              start, end, uri, response.statusCode()
+          ));
+        }
+
+        final byte[] buffer = new byte[64 * 1024];
+        long position = start;
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+          final ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+          while (chunk.hasRemaining()) {
+            position += channel.write(chunk, position);
+          }
+        }
+
+        if (position != end + 1) {
+          throw new IOException(format(
+              "Incomplete segment of '%s', expected bytes %d-%d but got up to %d",
+              uri, start, end, position - 1
+          ));
+        }
+      }
+    }
+
+    @Override
+    public InputStream open(final URI uri) {
+      assert uri != null : "URL cannot be null";
+
+      try {
+        final Response response = send(request(uri).build());
 
         if (response.statusCode() != 200) {
+          response.body().close();
           throw new RuntimeException(format(
               "Failed to download file from '%s'. HTTP status code: %d",
               uri, response.statusCode()
           ));
         }
+        return response.body();
+      } catch (Exception e) {
+        throw new RuntimeException("Error downloading file: " + e.getMessage(), e);
+      }
+    }
+
+    @Override
+    public boolean downloadIfModified(final URI uri, final File destination) {
+      assert uri != null : "URL cannot be null";
+      assert destination != null : "Destination cannot be null";
+
+      final Path validatorsFile = destination.toPath()
+          .resolveSibling(destination.getName() + VALIDATORS_SUFFIX);
+      final Path partial = destination.toPath()
+          .resolveSibling(destination.getName() + PARTIAL_SUFFIX);
+      try {
+        final Properties validators = new Properties();
+        if (destination.exists() && Files.exists(validatorsFile)) {
+          try (InputStream inputStream = Files.newInputStream(validatorsFile)) {
+            validators.load(inputStream);
+          }
+        }
+
+        final HttpRequest.Builder request = request(uri);
+        Optional.ofNullable(validators.getProperty("ETag"))
+            .ifPresent(etag -> request.header("If-None-Match", etag));
+        Optional.ofNullable(validators.getProperty("Last-Modified"))
+            .ifPresent(lastModified -> request.header("If-Modified-Since", lastModified));
+
+        final Response response = send(request.build());
+        try (InputStream body = response.body()) {
+          if (response.statusCode() == 304) {
+            return false;
+          }
+          if (response.statusCode() != 200) {
+            throw new RuntimeException(format(
+                "Failed to download file from '%s'. HTTP status code: %d",
+                uri, response.statusCode()
+            ));
+          }
+          Files.copy(body, partial, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        final Properties received = new Properties();
+        response.headers().firstValue("ETag")
+            .ifPresent(etag -> received.setProperty("ETag", etag));
+        response.headers().firstValue("Last-Modified")
+            .ifPresent(lastModified -> received.setProperty("Last-Modified", lastModified));
+
+        Files.move(partial, destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        if (received.isEmpty()) {
+          Files.deleteIfExists(validatorsFile);
+        } else {
+          try (OutputStream outputStream = Files.newOutputStream(validatorsFile)) {
+            received.store(outputStream, uri.toString());
+          }
+        }
+        return true;
       } catch (Exception e) {
         throw new RuntimeException("Error downloading file: " + e.getMessage(), e);
       }
+    }
+
+    private static HttpRequest.Builder request(final URI uri) {
+      return HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT);
+    }
+
+    private record Response(int statusCode, HttpHeaders headers, InputStream body) {
+
+    }
+
+    // a request holds one of the connections until its body is closed
+    private Response send(final HttpRequest request) throws IOException, InterruptedException {
+      connections.acquire();
+      try {
+        final HttpResponse<InputStream> response = client().send(request,
+            BodyHandlers.ofInputStream());
+        return new Response(response.statusCode(), response.headers(),
+            new MeteredInputStream(response.body()));
+      } catch (IOException | InterruptedException | RuntimeException e) {
+        connections.release();
+        throw e;
+      }
+    }
+
+    /**
+     * Reads a response body within the bandwidth and gives its connection back when closed.
+     */
+    private final class MeteredInputStream extends FilterInputStream {
+
+      private boolean closed;
+
+      MeteredInputStream(final InputStream inputStream) {
+        super(inputStream);
+      }
+
+      @Override
+      public int read() throws IOException {
+        final int read = super.read();
+        if (read != -1) {
+          bandwidth.take(1);
+        }
+        return read;
+      }
+
+      @Override
+      public int read(final byte[] buffer, final int offset, final int length)
+          throws IOException {
+        final int read = super.read(buffer, offset, length);
+        if (read > 0) {
+          bandwidth.take(read);
+        }
+        return read;
+      }
+
+      @Override
+      public void close() throws IOException {
+        synchronized (this) {
+          if (closed) {
+            return;
+          }
+          closed = true;
+        }
+        try {
+          super.close();
+        } finally {
+          connections.release();
+        }
+      }
+    }
+
+    /**
+     * Digests the segments of a download in order as they complete. Whoever completes the segment
+     * the digest is waiting for hashes it and every completed one after it, reading them back from
+     * the file while they're still in the page cache.
+     */
+    private final class PrefixDigest {
+
+      private final MessageDigest digest;
+      private final Journal journal;
+      private final int segments;
+      private final long length;
+      private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+      private int next;
+
+      PrefixDigest(final MessageDigest digest, final Journal journal, final int segments,
+          final long length) {
+        this.digest = digest;
+        this.journal = journal;
+        this.segments = segments;
+        this.length = length;
+      }
+
+      synchronized void advance(final FileChannel channel) throws IOException {
+        while (next < segments && journal.isCompleted(next)) {
+          long position = next * segmentSize;
+          final long end = Math.min(length, position + segmentSize);
+          while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+              throw new IOException(format(
+                  "Partial download ended at byte %d, expected %d bytes", position, length));
+            }
+            digest.update(buffer.flip());
+            position += read;
+          }
+          next++;
+        }
+      }
+    }
+
+    /**
+     * Records which segments of a download were completed. The first line identifies the file
+     * being downloaded and the size of its segments, so a journal of a different file or of
+     * differently sized segments is discarded instead of resumed. Without a validator the file
+     * can't be identified, and nothing is resumed.
+     */
+    private static final class Journal {
+
+      private final Path file;
+      private final Set<Integer> completed;
+
+      private Journal(final Path file, final Set<Integer> completed) {
+        this.file = file;
+        this.completed = completed;
+      }
+
+      static Journal open(final Path file, final Path partial, final long length,
+          final long segmentSize, final String validator) throws IOException {
+        final String header = length + " " + segmentSize + " " + validator;
+        final Set<Integer> completed = new HashSet<>();
+
+        if (!validator.isEmpty() && Files.exists(file) && Files.exists(partial)) {
+          final String[] lines = Files.readString(file).split("\n", -1);
+          if (lines[0].equals(header)) {
+            // the last element is either empty or a line torn by a crash, both are skipped
+            try {
+              for (int i = 1; i < lines.length - 1; i++) {
+                completed.add(Integer.parseInt(lines[i]));
+              }
+            } catch (NumberFormatException e) {
+              completed.clear(); // corrupted journal, start over
+            }
+          }
+        }
+
+        if (completed.isEmpty()) {
+          Files.deleteIfExists(partial);
+          Files.writeString(file, header + "\n");
+        } else {
+          Log.printf("Resuming download with %d completed segments\n", completed.size());
+        }
+        return new Journal(file, completed);
+      }
 
-      return destination;
+      synchronized boolean isCompleted(final int segment) {
+        return completed.contains(segment);
+      }
+
+      synchronized void complete(final int segment) throws IOException {
+        Files.writeString(file, segment + "\n", StandardOpenOption.APPEND);
+        completed.add(segment);
+      }
     }
   }
 }
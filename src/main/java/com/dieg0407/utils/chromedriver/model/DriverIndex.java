@@ -0,0 +1,590 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * A local index of the ChromeDriver builds published on Chrome for Testing. The known versions JSON
+ * is downloaded with a conditional request and streamed once into a compact binary file, sorted by
+ * platform and version, that is memory-mapped on later runs. Looking up the driver for a Chrome
+ * version is then a binary search that doesn't touch the network.
+ * <p>
+ * The index is only refreshed when a Chrome version newer than every indexed version is looked up,
+ * and the refresh costs a 304 when the JSON didn't change. Otherwise only the builds newer than
+ * every indexed one are added, published builds don't change once they are indexed.
+ */
+public class DriverIndex {
+
+  public static final URI KNOWN_VERSIONS_URL = URI.create(
+      "https://googlechromelabs.github.io/chrome-for-testing/known-good-versions-with-downloads.json");
+  public static final String KNOWN_VERSIONS_FILE = "known-good-versions-with-downloads.json";
+  public static final String INDEX_FILE = "drivers.index";
+
+  // "CDIX" followed by the format version
+  private static final int MAGIC = 0x43444958;
+  private static final int FORMAT = 1;
+  // version, platform and offset of the url in the url pool
+  private static final int ENTRY_SIZE = Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+  /**
+   * A ChromeDriver build published for a platform.
+   */
+  public record Entry(Version version, String platform, URI url) {
+
+  }
+
+  private final File folder;
+  private final Downloader downloader;
+  private final URI source;
+  private Index index;
+
+  /**
+   * Constructs an index stored in the given folder and refreshed from Chrome for Testing.
+   *
+   * @param folder     the folder where the known versions and the index are stored
+   * @param downloader the downloader used to refresh the known versions
+   */
+  public DriverIndex(final File folder, final Downloader downloader) {
+    this(folder, downloader, KNOWN_VERSIONS_URL);
+  }
+
+  /**
+   * Constructs an index stored in the given folder and refreshed from the given known versions
+   * JSON.
+   *
+   * @param folder     the folder where the known versions and the index are stored
+   * @param downloader the downloader used to refresh the known versions
+   * @param source     the location of the known versions JSON
+   */
+  public DriverIndex(final File folder, final Downloader downloader, final URI source) {
+    assert folder != null : "Folder cannot be null";
+    assert downloader != null : "Downloader cannot be null";
+    assert source != null : "Source cannot be null";
+
+    this.folder = folder;
+    this.downloader = downloader;
+    this.source = source;
+  }
+
+  /**
+   * Finds the published ChromeDriver closest to the given Chrome version. ChromeDriver only works
+   * with a Chrome of the same major version, so only those are considered: the exact version if it
+   * was published, otherwise the newest one before it or, if there is none, the oldest one after
+   * it.
+   *
+   * @param chromeVersion the version of Chrome
+   * @param platform      the Chrome for Testing platform, such as {@code linux64}
+   * @return the closest ChromeDriver or empty if none was published for that major version
+   */
+  public synchronized Optional<Entry> nearest(final Version chromeVersion, final String platform) {
+    assert chromeVersion != null : "Chrome version cannot be null";
+    assert platform != null : "Platform cannot be null";
+
+    if (index().isOlderThan(chromeVersion)) {
+      try {
+        refresh();
+      } catch (RuntimeException e) {
+        // an outdated index still answers older versions
+        Log.printf("Could not refresh the ChromeDriver index: %s\n", e.getMessage());
+      }
+    }
+    return index().nearest(chromeVersion, platform);
+  }
+
+  /**
+   * Lists the ChromeDriver builds published for a platform between two versions.
+   *
+   * @param from     the oldest version to list, inclusive
+   * @param to       the newest version to list, inclusive
+   * @param platform the Chrome for Testing platform, such as {@code linux64}
+   * @return the published builds, oldest first
+   */
+  public synchronized List<Entry> between(final Version from, final Version to,
+      final String platform) {
+    assert from != null && to != null : "Versions cannot be null";
+    assert platform != null : "Platform cannot be null";
+
+    if (index().isOlderThan(to)) {
+      try {
+        refresh();
+      } catch (RuntimeException e) {
+        Log.printf("Could not refresh the ChromeDriver index: %s\n", e.getMessage());
+      }
+    }
+    return index().between(from, to, platform);
+  }
+
+  /**
+   * Downloads the known versions if they changed since the last refresh and adds the builds newer
+   * than every indexed one to the index.
+   *
+   * @return true if builds were added, false if the index was already up to date
+   */
+  public synchronized boolean refresh() {
+    if (!folder.exists() && !folder.mkdirs()) {
+      throw new RuntimeException("Failed to create index folder: " + folder.getAbsolutePath());
+    }
+
+    final File knownVersions = new File(folder, KNOWN_VERSIONS_FILE);
+    final boolean modified = downloader.downloadIfModified(source, knownVersions);
+    if (!modified && !index().isEmpty()) {
+      return false;
+    }
+
+    try (Reader reader = Files.newBufferedReader(knownVersions.toPath(),
+        StandardCharsets.UTF_8)) {
+      final Index current = index();
+      final List<Entry> newer = KnownVersionsParser.parse(reader).stream()
+          .filter(entry -> current.isOlderThan(entry.version()))
+          .toList();
+      if (newer.isEmpty() && !current.isEmpty()) {
+        return false;
+      }
+
+      // the entries are sorted by platform first, so the newer ones can't just be appended
+      final List<Entry> entries = new ArrayList<>(current.entries());
+      entries.addAll(newer);
+      index = Index.write(new File(folder, INDEX_FILE), entries);
+      Log.printf("Indexed %d new ChromeDriver builds from %s\n", newer.size(), source);
+      return true;
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to index " + knownVersions.getAbsolutePath(), e);
+    }
+  }
+
+  private Index index() {
+    if (index == null) {
+      index = Index.read(new File(folder, INDEX_FILE));
+    }
+    return index;
+  }
+
+  /**
+   * The binary index. Entries are fixed size and sorted by platform and then version, the urls are
+   * stored after them:
+   * <pre>
+   * int magic, int format, long newest version, int platform count, platform names,
+   * int entry count, entries (long version, int platform, int url offset), urls
+   * </pre>
+   * Strings are stored as an unsigned short length followed by their UTF-8 bytes.
+   */
+  private static final class Index {
+
+    private static final Index EMPTY = new Index(ByteBuffer.allocate(0), new String[0], 0, 0, 0,
+        0);
+
+    private final ByteBuffer buffer;
+    private final String[] platforms;
+    private final long newest;
+    private final int entries;
+    private final int entriesStart;
+    private final int urlsStart;
+
+    private Index(final ByteBuffer buffer, final String[] platforms, final long newest,
+        final int entries, final int entriesStart, final int urlsStart) {
+      this.buffer = buffer;
+      this.platforms = platforms;
+      this.newest = newest;
+      this.entries = entries;
+      this.entriesStart = entriesStart;
+      this.urlsStart = urlsStart;
+    }
+
+    static Index read(final File file) {
+      if (!file.exists()) {
+        return EMPTY;
+      }
+
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      } catch (IOException | RuntimeException e) {
+        // the index can always be rebuilt from the known versions
+        Log.printf("Ignoring unreadable ChromeDriver index %s: %s\n", file, e.getMessage());
+        return EMPTY;
+      }
+    }
+
+    static Index write(final File file, final List<Entry> entries) throws IOException {
+      final List<String> platforms = new ArrayList<>(new TreeSet<>(
+          entries.stream().map(Entry::platform).toList()));
+      final List<Entry> sorted = entries.stream()
+          .sorted(Comparator.comparing(Entry::platform).thenComparing(Entry::version))
+          .toList();
+
+      final ByteArrayOutputStream urls = new ByteArrayOutputStream();
+      final ByteArrayOutputStream content = new ByteArrayOutputStream();
+      try (DataOutputStream urlPool = new DataOutputStream(urls);
+          DataOutputStream out = new DataOutputStream(content)) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeLong(sorted.stream().map(Entry::version).max(Comparator.naturalOrder())
+            .map(Version::packed).orElse(0L));
+        out.writeInt(platforms.size());
+        for (String platform : platforms) {
+          writeString(out, platform);
+        }
+        out.writeInt(sorted.size());
+        for (Entry entry : sorted) {
+          out.writeLong(entry.version().packed());
+          out.writeInt(platforms.indexOf(entry.platform()));
+          out.writeInt(urlPool.size());
+          writeString(urlPool, entry.url().toString());
+        }
+        urlPool.flush();
+        urls.writeTo(out);
+      }
+
+      final byte[] bytes = content.toByteArray();
+      try {
+        final Path staged = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(),
+            file.getName(), ".tmp");
+        Files.write(staged, bytes);
+        AtomicFiles.move(staged, file.toPath());
+      } catch (IOException e) {
+        // this run still looks up the index it built, without the known versions the next
+        // refresh downloads them in full instead of getting a 304 and indexes them again
+        Log.printf("Could not write the ChromeDriver index %s: %s\n", file, e.getMessage());
+        new File(file.getAbsoluteFile().getParentFile(), KNOWN_VERSIONS_FILE).delete();
+      }
+      return parse(ByteBuffer.wrap(bytes));
+    }
+
+    private static Index parse(final ByteBuffer buffer) {
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+        throw new IllegalArgumentException("Unknown index format");
+      }
+      final long newest = buffer.getLong(8);
+      final String[] platforms = new String[buffer.getInt(16)];
+      int position = 20;
+      for (int i = 0; i < platforms.length; i++) {
+        platforms[i] = readString(buffer, position);
+        position += 2 + (buffer.getShort(position) & 0xFFFF);
+      }
+      final int entries = buffer.getInt(position);
+      final int entriesStart = position + 4;
+      return new Index(buffer, platforms, newest, entries, entriesStart,
+          entriesStart + entries * ENTRY_SIZE);
+    }
+
+    boolean isEmpty() {
+      return entries == 0;
+    }
+
+    List<Entry> entries() {
+      final List<Entry> all = new ArrayList<>(entries);
+      for (int entry = 0; entry < entries; entry++) {
+        all.add(entry(entry));
+      }
+      return all;
+    }
+
+    boolean isOlderThan(final Version version) {
+      return entries == 0 || Long.compareUnsigned(newest, version.packed()) < 0;
+    }
+
+    Optional<Entry> nearest(final Version version, final String platform) {
+      final int platformIndex = platformIndex(platform);
+      if (platformIndex < 0) {
+        return Optional.empty();
+      }
+
+      final int low = lowerBound(platformIndex, version);
+      if (low < entries && platformOf(low) == platformIndex && versionOf(low) == version.packed()) {
+        return Optional.of(entry(low));
+      }
+      if (low > 0 && platformOf(low - 1) == platformIndex
+          && sameMajor(versionOf(low - 1), version)) {
+        return Optional.of(entry(low - 1));
+      }
+      if (low < entries && platformOf(low) == platformIndex && sameMajor(versionOf(low), version)) {
+        return Optional.of(entry(low));
+      }
+      return Optional.empty();
+    }
+
+    List<Entry> between(final Version from, final Version to, final String platform) {
+      final int platformIndex = platformIndex(platform);
+      if (platformIndex < 0) {
+        return List.of();
+      }
+
+      final List<Entry> found = new ArrayList<>();
+      for (int entry = lowerBound(platformIndex, from); entry < entries
+          && platformOf(entry) == platformIndex
+          && Long.compareUnsigned(versionOf(entry), to.packed()) <= 0; entry++) {
+        found.add(entry(entry));
+      }
+      return found;
+    }
+
+    private int platformIndex(final String platform) {
+      for (int i = 0; i < platforms.length; i++) {
+        if (platforms[i].equals(platform)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    // first entry that isn't before the version
+    private int lowerBound(final int platformIndex, final Version version) {
+      int low = 0;
+      int high = entries;
+      while (low < high) {
+        final int middle = (low + high) >>> 1;
+        final int platformOfMiddle = platformOf(middle);
+        if (platformOfMiddle < platformIndex || platformOfMiddle == platformIndex
+            && Long.compareUnsigned(versionOf(middle), version.packed()) < 0) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    private static boolean sameMajor(final long packed, final Version version) {
+      return Version.Compatibility.MAJOR.matches(Version.fromPacked(packed), version);
+    }
+
+    private long versionOf(final int entry) {
+      return buffer.getLong(entriesStart + entry * ENTRY_SIZE);
+    }
+
+    private int platformOf(final int entry) {
+      return buffer.getInt(entriesStart + entry * ENTRY_SIZE + Long.BYTES);
+    }
+
+    private Entry entry(final int entry) {
+      final int urlOffset = buffer.getInt(entriesStart + entry * ENTRY_SIZE + Long.BYTES
+          + Integer.BYTES);
+      return new Entry(Version.fromPacked(versionOf(entry)), platforms[platformOf(entry)],
+          URI.create(readString(buffer, urlsStart + urlOffset)));
+    }
+
+    private static void writeString(final DataOutputStream out, final String value)
+        throws IOException {
+      final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeShort(bytes.length);
+      out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer, final int position) {
+      final byte[] bytes = new byte[buffer.getShort(position) & 0xFFFF];
+      buffer.get(position + 2, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Streams the known versions JSON and keeps only the ChromeDriver downloads, the document is
+   * never held in memory as a tree. The expected shape is:
+   * <pre>
+   * {"versions": [{"version": "...", "downloads": {"chromedriver": [{"platform": "...",
+   * "url": "..."}]}}]}
+   * </pre>
+   */
+  static final class KnownVersionsParser {
+
+    private static final String VERSION = "/versions/*";
+    private static final String DOWNLOAD = VERSION + "/downloads/chromedriver/*";
+
+    private final Reader reader;
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<String[]> downloads = new ArrayList<>();
+    private String version;
+    private String platform;
+    private String url;
+    private int peeked = -2;
+
+    private KnownVersionsParser(final Reader reader) {
+      this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+    }
+
+    static List<Entry> parse(final Reader reader) throws IOException {
+      final KnownVersionsParser parser = new KnownVersionsParser(reader);
+      parser.value("");
+      return parser.entries;
+    }
+
+    private void value(final String path) throws IOException {
+      final int c = next();
+      switch (c) {
+        case '{' -> object(path);
+        case '[' -> array(path);
+        case '"' -> onString(path, string());
+        default -> literal(c);
+      }
+    }
+
+    private void object(final String path) throws IOException {
+      onObjectStart(path);
+      int c = next();
+      while (c != '}') {
+        if (c != '"') {
+          throw unexpected(c);
+        }
+        final String key = string();
+        if (next() != ':') {
+          throw new IOException("Expected ':' after key " + key);
+        }
+        value(path + "/" + key);
+        c = next();
+        if (c == ',') {
+          c = next();
+        } else if (c != '}') {
+          throw unexpected(c);
+        }
+      }
+      onObjectEnd(path);
+    }
+
+    private void array(final String path) throws IOException {
+      if (peek() == ']') {
+        next();
+        return;
+      }
+      while (true) {
+        value(path + "/*");
+        final int c = next();
+        if (c == ']') {
+          return;
+        }
+        if (c != ',') {
+          throw unexpected(c);
+        }
+      }
+    }
+
+    private String string() throws IOException {
+      final StringBuilder builder = new StringBuilder();
+      while (true) {
+        final int c = read();
+        if (c == '"') {
+          return builder.toString();
+        }
+        if (c != '\\') {
+          builder.append((char) c);
+          continue;
+        }
+        final int escaped = read();
+        switch (escaped) {
+          case 'b' -> builder.append('\b');
+          case 'f' -> builder.append('\f');
+          case 'n' -> builder.append('\n');
+          case 'r' -> builder.append('\r');
+          case 't' -> builder.append('\t');
+          case 'u' -> {
+            final char[] hex = new char[4];
+            for (int i = 0; i < hex.length; i++) {
+              hex[i] = (char) read();
+            }
+            builder.append((char) Integer.parseInt(new String(hex), 16));
+          }
+          default -> builder.append((char) escaped);
+        }
+      }
+    }
+
+    // numbers, true, false and null are skipped
+    private void literal(final int first) throws IOException {
+      if (first != '-' && !Character.isLetterOrDigit(first)) {
+        throw unexpected(first);
+      }
+      int c = peek();
+      while (c == '-' || c == '+' || c == '.' || Character.isLetterOrDigit(c)) {
+        read();
+        c = peek();
+      }
+    }
+
+    private void onObjectStart(final String path) {
+      if (path.equals(VERSION)) {
+        version = null;
+        downloads.clear();
+      } else if (path.equals(DOWNLOAD)) {
+        platform = null;
+        url = null;
+      }
+    }
+
+    private void onString(final String path, final String value) {
+      switch (path) {
+        case VERSION + "/version" -> version = value;
+        case DOWNLOAD + "/platform" -> platform = value;
+        case DOWNLOAD + "/url" -> url = value;
+        default -> {
+        }
+      }
+    }
+
+    private void onObjectEnd(final String path) {
+      if (path.equals(DOWNLOAD) && platform != null && url != null) {
+        downloads.add(new String[]{platform, url});
+      } else if (path.equals(VERSION) && version != null && !downloads.isEmpty()) {
+        final Version parsed;
+        try {
+          parsed = Version.fromRawVersion(version);
+        } catch (IllegalArgumentException e) {
+          return; // not a version this tool can handle
+        }
+        for (String[] download : downloads) {
+          entries.add(new Entry(parsed, download[0], URI.create(download[1])));
+        }
+      }
+    }
+
+    // the next character that isn't whitespace
+    private int next() throws IOException {
+      int c = read();
+      while (Character.isWhitespace(c)) {
+        c = read();
+      }
+      return c;
+    }
+
+    private int peek() throws IOException {
+      if (peeked == -2) {
+        peeked = reader.read();
+        while (Character.isWhitespace(peeked)) {
+          peeked = reader.read();
+        }
+      }
+      return peeked;
+    }
+
+    private int read() throws IOException {
+      final int c;
+      if (peeked != -2) {
+        c = peeked;
+        peeked = -2;
+      } else {
+        c = reader.read();
+      }
+      if (c == -1) {
+        throw new IOException("Unexpected end of the known versions");
+      }
+      return c;
+    }
+
+    private static IOException unexpected(final int c) {
+      return new IOException("Unexpected character '" + (char) c + "' in the known versions");
+    }
+  }
+}
@@ -0,0 +1,248 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.FileLockInterruptionException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An exclusive lease on a piece of work shared by several processes, possibly on several hosts
+ * mounting the same folder. The lease is a file created with {@code CREATE_NEW}, which only one
+ * process can win, holding the owner's host, pid and a unique token.
+ * <p>
+ * The owner keeps the lease alive by touching the file every quarter of its time to live. A lease
+ * that hasn't been touched for longer than that belongs to a crashed or hung process on some host
+ * and is taken over. A lease whose owner ran on this host and is no longer alive is recovered
+ * right away instead of after the time to live. Lease files are only ever deleted while holding a
+ * {@link FileLock} on a shared {@value RECOVERY_FILE} file and after checking their token, so a
+ * lease that was just taken over is never deleted by a late owner or a second recoverer.
+ * <p>
+ * The lease file itself isn't locked: closing any channel of a file releases every lock the
+ * process holds on it, so other threads reading the lease would silently drop the owner's lock.
+ */
+public final class FileLease implements AutoCloseable {
+
+  public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(2);
+  public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofMillis(200);
+  public static final String RECOVERY_FILE = "leases.lock";
+
+  private static final String HOST = hostName();
+  private static final long PID = ProcessHandle.current().pid();
+  private static final Set<Path> UNLOCKABLE = ConcurrentHashMap.newKeySet();
+
+  private final Path file;
+  private final String token;
+  private final Thread heartbeat;
+
+  private FileLease(final Path file, final String token, final Thread heartbeat) {
+    this.file = file;
+    this.token = token;
+    this.heartbeat = heartbeat;
+  }
+
+  /**
+   * Acquires the lease with the default time to live, waiting while another live process holds it.
+   *
+   * @param file the lease file
+   * @return the acquired lease, closing it releases the lease
+   * @throws IOException          if the lease file can't be created or read
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public static FileLease acquire(final Path file) throws IOException, InterruptedException {
+    return acquire(file, DEFAULT_TIME_TO_LIVE, DEFAULT_POLL_INTERVAL);
+  }
+
+  /**
+   * Acquires the lease, waiting while another live process holds it.
+   *
+   * @param file         the lease file
+   * @param timeToLive   how long a lease stays valid without being touched by its owner
+   * @param pollInterval how often a waiting process checks the lease again
+   * @return the acquired lease, closing it releases the lease
+   * @throws IOException          if the lease file can't be created or read
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public static FileLease acquire(final Path file, final Duration timeToLive,
+      final Duration pollInterval) throws IOException, InterruptedException {
+    assert file != null : "File cannot be null";
+    assert timeToLive != null && !timeToLive.isNegative() && !timeToLive.isZero()
+        : "Time to live must be positive";
+    assert pollInterval != null && !pollInterval.isNegative() : "Poll interval cannot be negative";
+
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    final String token = HOST + " " + PID + " " + UUID.randomUUID();
+    boolean waiting = false;
+    while (true) {
+      try {
+        Files.writeString(file, token + "\n", StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        final Thread heartbeat = Thread.ofVirtual().start(() -> beat(file, timeToLive));
+        return new FileLease(file, token, heartbeat);
+      } catch (FileAlreadyExistsException e) {
+        if (recoverIfStale(file, timeToLive)) {
+          continue;
+        }
+        if (!waiting) {
+          Log.printf("Waiting for %s held by %s\n", file.getFileName(), ownerOf(file));
+          waiting = true;
+        }
+        Thread.sleep(pollInterval.toMillis());
+      }
+    }
+  }
+
+  /**
+   * Releases the lease so a waiting process can acquire it. An interrupted thread releases it too,
+   * its interrupt is restored once the lease file is gone.
+   */
+  @Override
+  public void close() {
+    heartbeat.interrupt();
+    // interruptible channels would be closed before the lease file is deleted
+    final boolean interrupted = Thread.interrupted();
+    try {
+      withRecoveryLock(file, () -> {
+        // the lease may have been taken over by another process after it expired
+        if (ownerOf(file).equals(token)) {
+          Files.deleteIfExists(file);
+        }
+        return null;
+      });
+    } catch (IOException e) {
+      Log.printf("Failed to release lease %s: %s\n", file, e.getMessage());
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static void beat(final Path file, final Duration timeToLive) {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        Thread.sleep(Math.max(1, timeToLive.toMillis() / 4));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      }
+    } catch (InterruptedException e) {
+      // released
+    } catch (IOException e) {
+      Log.printf("Failed to renew lease %s: %s\n", file, e.getMessage());
+    }
+  }
+
+  private static boolean recoverIfStale(final Path file, final Duration timeToLive)
+      throws IOException {
+    return withRecoveryLock(file, () -> {
+      final String owner;
+      final FileTime touched;
+      try {
+        owner = ownerOf(file);
+        touched = Files.getLastModifiedTime(file);
+      } catch (NoSuchFileException e) {
+        return true; // released meanwhile, try again
+      }
+
+      final boolean expired = System.currentTimeMillis() - touched.toMillis()
+          > timeToLive.toMillis();
+      final boolean orphaned = isOrphaned(owner);
+      if (!expired && !orphaned) {
+        return false;
+      }
+
+      Log.printf("Recovering %s lease %s of %s\n", expired ? "expired" : "orphaned",
+          file.getFileName(), owner.isEmpty() ? "an unknown owner" : owner);
+      Files.deleteIfExists(file);
+      return true;
+    });
+  }
+
+  // only processes of this host can be checked, remote ones are left to the time to live
+  private static boolean isOrphaned(final String owner) {
+    final String[] parts = owner.split(" ");
+    if (parts.length != 3 || !parts[0].equals(HOST)) {
+      return false;
+    }
+    try {
+      final long pid = Long.parseLong(parts[1]);
+      return pid != PID && ProcessHandle.of(pid).map(process -> !process.isAlive()).orElse(true);
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private static String ownerOf(final Path file) throws IOException {
+    try {
+      return Files.readString(file, StandardCharsets.UTF_8).trim();
+    } catch (NoSuchFileException e) {
+      return "";
+    }
+  }
+
+  private interface LockedAction<T> {
+
+    T run() throws IOException;
+  }
+
+  // locks of the same file can't overlap within one JVM, so the threads take turns first
+  private static synchronized <T> T withRecoveryLock(final Path file, final LockedAction<T> action)
+      throws IOException {
+    final Path recovery = file.toAbsolutePath().resolveSibling(RECOVERY_FILE);
+    try (FileChannel channel = FileChannel.open(recovery, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE)) {
+      final FileLock lock = lockOrWarn(channel, recovery);
+      try {
+        return action.run();
+      } finally {
+        if (lock != null) {
+          lock.release();
+        }
+      }
+    }
+  }
+
+  /**
+   * Locks the whole file of the given channel. Some network filesystems don't support locks, the
+   * work is then only serialized within this JVM and a warning is logged once per file, as other
+   * processes sharing the folder are no longer excluded.
+   *
+   * @param channel the channel of the file to lock
+   * @param file    the file, to report it
+   * @return the lock, or null if the filesystem doesn't support locks
+   * @throws IOException if the thread was interrupted while waiting for the lock
+   */
+  static FileLock lockOrWarn(final FileChannel channel, final Path file) throws IOException {
+    try {
+      return channel.lock();
+    } catch (FileLockInterruptionException | ClosedByInterruptException e) {
+      // interrupted, which says nothing about the support for locks
+      throw e;
+    } catch (IOException e) {
+      if (UNLOCKABLE.add(file.toAbsolutePath())) {
+        Log.printf("Warning: could not lock %s, other processes sharing its folder aren't "
+            + "excluded: %s\n", file, e.getMessage());
+      }
+      return null;
+    }
+  }
+
+  private static String hostName() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (IOException e) {
+      return "localhost";
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Where the progress messages of the updater go. The command line prints them to stdout; an
+ * application that embeds the updater sends them elsewhere for the work done on a thread and on
+ * the threads it starts, without affecting other threads.
+ */
+public final class Log {
+
+  private static final InheritableThreadLocal<Consumer<String>> SINK =
+      new InheritableThreadLocal<>();
+
+  private Log() {
+  }
+
+  /**
+   * Formats a message like {@link java.io.PrintStream#printf(String, Object...)} and sends it to
+   * the sink of the current thread, stdout by default.
+   *
+   * @param format the format of the message
+   * @param args   the arguments of the format
+   */
+  public static void printf(final String format, final Object... args) {
+    final String message = String.format(format, args);
+    final Consumer<String> sink = SINK.get();
+    if (sink == null) {
+      System.out.print(message);
+    } else {
+      sink.accept(message);
+    }
+  }
+
+  /**
+   * Sends a message followed by a line break to the sink of the current thread.
+   *
+   * @param message the message
+   */
+  public static void println(final String message) {
+    printf("%s\n", message);
+  }
+
+  /**
+   * Runs the action with its messages, and those of the threads it starts, sent to the given sink.
+   *
+   * @param sink   receives every message, including its line break
+   * @param action the action to run
+   * @param <T>    the type of the result of the action
+   * @return the result of the action
+   */
+  public static <T> T to(final Consumer<String> sink, final Supplier<T> action) {
+    assert sink != null : "Sink cannot be null";
+    assert action != null : "Action cannot be null";
+
+    final Consumer<String> previous = SINK.get();
+    SINK.set(sink);
+    try {
+      return action.get();
+    } finally {
+      SINK.set(previous);
+    }
+  }
+}
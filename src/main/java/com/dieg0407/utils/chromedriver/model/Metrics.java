@@ -0,0 +1,337 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Counts where the time of a run goes: how long each phase of an update took, how many bytes it
+ * moved and how often the caches answered. Every phase is also emitted as a
+ * {@value PhaseEvent#NAME} JFR event, which costs nothing unless a recording is running, so a run
+ * in production can be profiled with {@code -XX:StartFlightRecording}.
+ * <p>
+ * The phases of all the updaters of a process are recorded into {@link #global()}, which
+ * {@code --metrics-out} writes at the end of the run.
+ */
+public class Metrics {
+
+  /**
+   * The phases of an update.
+   */
+  public enum Phase {
+    /**
+     * Reading the Chrome version, from a cache, the binary or by executing Chrome.
+     */
+    CHROME_VERSION,
+    /**
+     * Reading the ChromeDriver version, from a cache, the binary or by executing ChromeDriver.
+     */
+    CHROMEDRIVER_VERSION,
+    /**
+     * Downloading an archive. When streaming, the executable is extracted during this phase.
+     */
+    DOWNLOAD,
+    /**
+     * Extracting the executable from a downloaded or cached archive.
+     */
+    EXTRACTION,
+    /**
+     * Copying the extracted executable into the versions folder.
+     */
+    INSTALL,
+    /**
+     * Replacing the ChromeDriver location with the installed version.
+     */
+    REPLACEMENT;
+
+    String label() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  /**
+   * A running phase, recorded when it's closed whether it succeeded or not.
+   */
+  public static final class Span implements AutoCloseable {
+
+    private final Metrics metrics;
+    private final Phase phase;
+    private final PhaseEvent event;
+    private final long start;
+    private long bytes;
+
+    private Span(final Metrics metrics, final Phase phase, final String target) {
+      this.metrics = metrics;
+      this.phase = phase;
+      this.event = new PhaseEvent();
+      this.event.begin();
+      this.event.phase = phase.label();
+      this.event.target = target;
+      this.start = System.nanoTime();
+    }
+
+    /**
+     * Adds bytes transferred or written by the phase.
+     *
+     * @param count the number of bytes
+     */
+    public void bytes(final long count) {
+      bytes += count;
+    }
+
+    @Override
+    public void close() {
+      metrics.record(phase, System.nanoTime() - start, bytes);
+      if (event.shouldCommit()) {
+        event.bytes = bytes;
+        event.commit();
+      }
+    }
+  }
+
+  @Name(PhaseEvent.NAME)
+  @Label("Update Phase")
+  @Category({"ChromeDriver Updater"})
+  @Description("A phase of a ChromeDriver update")
+  static final class PhaseEvent extends Event {
+
+    static final String NAME = "com.dieg0407.chromedriver.Phase";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Target")
+    @Description("The binary, URL or file the phase worked on")
+    String target;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+  }
+
+  private static final Metrics GLOBAL = new Metrics();
+
+  private final Map<Phase, Totals> phases = new ConcurrentSkipListMap<>();
+  private final Map<String, LongAdder> cacheRequests = new ConcurrentSkipListMap<>();
+
+  private static final class Totals {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder bytes = new LongAdder();
+  }
+
+  /**
+   * Returns the metrics shared by every updater of this process.
+   *
+   * @return the process wide metrics
+   */
+  public static Metrics global() {
+    return GLOBAL;
+  }
+
+  /**
+   * Starts timing a phase, the phase is recorded when the returned span is closed.
+   *
+   * @param phase  the phase
+   * @param target the binary, URL or file the phase works on
+   * @return the running phase
+   */
+  public Span start(final Phase phase, final Object target) {
+    assert phase != null : "Phase cannot be null";
+
+    return new Span(this, phase, String.valueOf(target));
+  }
+
+  /**
+   * Records a phase that ran for the given time.
+   *
+   * @param phase the phase
+   * @param nanos how long it ran in nanoseconds
+   * @param bytes the bytes it transferred or wrote
+   */
+  public void record(final Phase phase, final long nanos, final long bytes) {
+    assert phase != null : "Phase cannot be null";
+
+    final Totals totals = phases.computeIfAbsent(phase, ignored -> new Totals());
+    totals.count.increment();
+    totals.nanos.add(nanos);
+    totals.maxNanos.accumulate(nanos);
+    totals.bytes.add(bytes);
+  }
+
+  /**
+   * Counts a lookup in one of the caches.
+   *
+   * @param cache the name of the cache, such as {@code download} or {@code version}
+   * @param hit   whether the cache had the answer
+   */
+  public void cacheLookup(final String cache, final boolean hit) {
+    assert cache != null : "Cache cannot be null";
+
+    cacheRequests.computeIfAbsent(cache + (hit ? ".hit" : ".miss"), ignored -> new LongAdder())
+        .increment();
+  }
+
+  /**
+   * Returns how many times the given phase was recorded.
+   *
+   * @param phase the phase
+   * @return the number of times it ran
+   */
+  public long count(final Phase phase) {
+    final Totals totals = phases.get(phase);
+    return totals == null ? 0 : totals.count.sum();
+  }
+
+  /**
+   * Returns the bytes recorded for the given phase.
+   *
+   * @param phase the phase
+   * @return the bytes transferred or written by every run of the phase
+   */
+  public long bytes(final Phase phase) {
+    final Totals totals = phases.get(phase);
+    return totals == null ? 0 : totals.bytes.sum();
+  }
+
+  /**
+   * Returns how many lookups in the given cache were answered or not.
+   *
+   * @param cache the name of the cache
+   * @param hit   whether to count the hits or the misses
+   * @return the number of lookups
+   */
+  public long cacheLookups(final String cache, final boolean hit) {
+    final LongAdder lookups = cacheRequests.get(cache + (hit ? ".hit" : ".miss"));
+    return lookups == null ? 0 : lookups.sum();
+  }
+
+  /**
+   * Writes the metrics to the given file, as JSON if its name ends with {@code .json} and in the
+   * Prometheus text format otherwise, such as for the textfile collector of the node exporter. The
+   * file is replaced with a rename, so a collector never reads it half written.
+   *
+   * @param file the file to write
+   * @throws IOException if the file can't be written
+   */
+  public void write(final Path file) throws IOException {
+    assert file != null : "File cannot be null";
+
+    final String content = file.getFileName().toString().endsWith(".json")
+        ? toJson() : toPrometheus();
+    final Path parent = file.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    final Path staged = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+    Files.writeString(staged, content, StandardCharsets.UTF_8);
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      // temporary files are only readable by their owner, collectors may run as another user
+      Files.setPosixFilePermissions(staged, PosixFilePermissions.fromString("rw-r--r--"));
+    }
+    AtomicFiles.move(staged, file);
+  }
+
+  /**
+   * Formats the metrics in the Prometheus text exposition format.
+   *
+   * @return the metrics as text
+   */
+  public String toPrometheus() {
+    final StringBuilder builder = new StringBuilder();
+    family(builder, "phase_runs_total", "counter", "Times each phase of the update ran");
+    phases.forEach((phase, totals) -> sample(builder, "phase_runs_total", phase,
+        String.valueOf(totals.count.sum())));
+    family(builder, "phase_seconds_total", "counter", "Time spent in each phase of the update");
+    phases.forEach((phase, totals) -> sample(builder, "phase_seconds_total", phase,
+        seconds(totals.nanos.sum())));
+    family(builder, "phase_seconds_max", "gauge", "Longest run of each phase of the update");
+    phases.forEach((phase, totals) -> sample(builder, "phase_seconds_max", phase,
+        seconds(totals.maxNanos.get())));
+    family(builder, "phase_bytes_total", "counter",
+        "Bytes transferred or written by each phase of the update");
+    phases.forEach((phase, totals) -> sample(builder, "phase_bytes_total", phase,
+        String.valueOf(totals.bytes.sum())));
+    family(builder, "phase_bytes_per_second", "gauge",
+        "Average throughput of each phase of the update");
+    phases.forEach((phase, totals) -> sample(builder, "phase_bytes_per_second", phase,
+        throughput(totals)));
+    family(builder, "cache_lookups_total", "counter", "Lookups in each cache by result");
+    cacheRequests.forEach((key, lookups) -> {
+      final int dot = key.lastIndexOf('.');
+      builder.append(format("chromedriver_updater_cache_lookups_total{cache=\"%s\",result=\"%s\"}"
+          + " %d\n", key.substring(0, dot), key.substring(dot + 1), lookups.sum()));
+    });
+    return builder.toString();
+  }
+
+  /**
+   * Formats the metrics as a JSON object with a {@code phases} and a {@code caches} member.
+   *
+   * @return the metrics as JSON
+   */
+  public String toJson() {
+    final StringBuilder builder = new StringBuilder("{\n  \"phases\": {");
+    String separator = "\n";
+    for (Map.Entry<Phase, Totals> entry : phases.entrySet()) {
+      final Totals totals = entry.getValue();
+      builder.append(separator).append(format("    \"%s\": {\"runs\": %d, \"seconds\": %s, "
+              + "\"maxSeconds\": %s, \"bytes\": %d, \"bytesPerSecond\": %s}",
+          entry.getKey().label(), totals.count.sum(), seconds(totals.nanos.sum()),
+          seconds(totals.maxNanos.get()), totals.bytes.sum(), throughput(totals)));
+      separator = ",\n";
+    }
+    builder.append(phases.isEmpty() ? "},\n" : "\n  },\n").append("  \"caches\": {");
+
+    final Map<String, long[]> caches = new ConcurrentSkipListMap<>();
+    cacheRequests.forEach((key, lookups) -> {
+      final int dot = key.lastIndexOf('.');
+      caches.computeIfAbsent(key.substring(0, dot), ignored -> new long[2])
+          [key.endsWith(".hit") ? 0 : 1] = lookups.sum();
+    });
+    separator = "\n";
+    for (Map.Entry<String, long[]> entry : caches.entrySet()) {
+      builder.append(separator).append(format("    \"%s\": {\"hits\": %d, \"misses\": %d}",
+          entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+      separator = ",\n";
+    }
+    return builder.append(caches.isEmpty() ? "}\n}\n" : "\n  }\n}\n").toString();
+  }
+
+  private static void family(final StringBuilder builder, final String name, final String type,
+      final String help) {
+    builder.append(format("# HELP chromedriver_updater_%s %s\n", name, help))
+        .append(format("# TYPE chromedriver_updater_%s %s\n", name, type));
+  }
+
+  private static void sample(final StringBuilder builder, final String name, final Phase phase,
+      final String value) {
+    builder.append(format("chromedriver_updater_%s{phase=\"%s\"} %s\n", name, phase.label(),
+        value));
+  }
+
+  private static String seconds(final long nanos) {
+    return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+  }
+
+  private static String throughput(final Totals totals) {
+    final long nanos = totals.nanos.sum();
+    return nanos == 0 ? "0" : String.format(Locale.ROOT, "%.0f", totals.bytes.sum() * 1e9 / nanos);
+  }
+}
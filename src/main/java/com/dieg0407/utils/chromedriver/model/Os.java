@@ -3,5 +3,24 @@ package com.dieg0407.utils.chromedriver.model;
 public enum Os {
   WINDOWS,
   LINUX,
-  MACOS,
+  MACOS;
+
+  /**
+   * Detects the operating system the JVM is running on.
+   *
+   * @return the current operating system
+   * @throws UnsupportedOperationException if the operating system isn't supported
+   */
+  public static Os current() {
+    final String osName = System.getProperty("os.name").toLowerCase();
+    if (osName.contains("win")) {
+      return WINDOWS;
+    } else if (osName.contains("nux")) {
+      return LINUX;
+    } else if (osName.contains("mac")) {
+      return MACOS;
+    } else {
+      throw new UnsupportedOperationException("Unsupported OS: " + osName);
+    }
+  }
 }
@@ -1,9 +1,17 @@
 package com.dieg0407.utils.chromedriver.model;
 
+import static java.lang.String.format;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public interface ProcessHandler {
 
@@ -13,24 +21,141 @@ public interface ProcessHandler {
    * @param processBuilder  the ProcessBuilder to execute
    * @param timeoutInMillis the maximum time to wait for the process to complete, in milliseconds
    * @return the output of the process as a String
-   * @throws IOException          if an I/O error occurs
+   * @throws IOException          if an I/O error occurs or the process doesn't complete in time
    * @throws InterruptedException if the current thread is interrupted while waiting
+   * @throws ProcessException     if the process exits with a non-zero exit code
    */
   String getOutput(final ProcessBuilder processBuilder, final long timeoutInMillis)
       throws IOException, InterruptedException;
 
+  /**
+   * Executes the given ProcessBuilder without blocking. The output is read while the process
+   * runs, so a chatty process never blocks on a full pipe. If the process doesn't complete in time,
+   * it's killed together with all its descendants.
+   *
+   * @param processBuilder  the ProcessBuilder to execute
+   * @param timeoutInMillis the maximum time to wait for the process to complete, in milliseconds
+   * @return a future completed with the output of the process, or completed exceptionally with a
+   * {@link TimeoutException} if the process didn't complete in time, a {@link ProcessException} if
+   * it exited with a non-zero exit code or an {@link IOException} if it couldn't be started
+   */
+  CompletableFuture<String> getOutputAsync(final ProcessBuilder processBuilder,
+      final long timeoutInMillis);
+
+  /**
+   * Thrown when a process exits with a non-zero exit code.
+   */
+  class ProcessException extends RuntimeException {
+
+    private final int exitCode;
+    private final String output;
+
+    public ProcessException(final List<String> command, final int exitCode, final String output) {
+      super(format("Command '%s' exited with code %d: %s", String.join(" ", command), exitCode,
+          output.trim()));
+      this.exitCode = exitCode;
+      this.output = output;
+    }
+
+    public int getExitCode() {
+      return exitCode;
+    }
+
+    public String getOutput() {
+      return output;
+    }
+  }
+
   class ProcessHandlerImpl implements ProcessHandler {
 
+    private static final Executor DRAINERS = runnable -> Thread.ofVirtual().start(runnable);
+
     @Override
     public String getOutput(final ProcessBuilder processBuilder, final long timeoutInMillis)
         throws IOException, InterruptedException {
+      try {
+        return getOutputAsync(processBuilder, timeoutInMillis).get();
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException ioException) {
+          throw ioException;
+        }
+        if (cause instanceof TimeoutException) {
+          throw new IOException(cause.getMessage(), cause);
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+          throw runtimeException;
+        }
+        throw new IOException(cause);
+      }
+    }
+
+    @Override
+    public CompletableFuture<String> getOutputAsync(final ProcessBuilder processBuilder,
+        final long timeoutInMillis) {
       assert processBuilder != null : "ProcessBuilder cannot be null";
       assert timeoutInMillis > 0 : "Timeout must be greater than 0 milliseconds";
 
-      final Process process = processBuilder.start();
-      process.waitFor(timeoutInMillis, TimeUnit.MILLISECONDS);
-      try (final InputStream inputStream = process.getInputStream()) {
-        return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+      final Process process;
+      try {
+        process = processBuilder.start();
+      } catch (IOException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+
+      final CompletableFuture<String> output = drain(process.getInputStream());
+      // stderr is usually redirected into stdout, otherwise it still has to be drained
+      final CompletableFuture<String> errors = processBuilder.redirectErrorStream()
+          ? CompletableFuture.completedFuture("")
+          : drain(process.getErrorStream());
+
+      return process.onExit()
+          .thenCompose(exited -> output.thenCombine(errors, (stdout, stderr) -> {
+            if (exited.exitValue() != 0) {
+              throw new ProcessException(processBuilder.command(), exited.exitValue(),
+                  stdout + stderr);
+            }
+            return stdout;
+          }))
+          .orTimeout(timeoutInMillis, TimeUnit.MILLISECONDS)
+          .exceptionallyCompose(failure -> {
+            final Throwable error = failure instanceof CompletionException
+                && failure.getCause() != null ? failure.getCause() : failure;
+            if (!(error instanceof TimeoutException)) {
+              return CompletableFuture.failedFuture(error);
+            }
+            destroyTree(process);
+            closeStreams(process);
+            return CompletableFuture.failedFuture(new TimeoutException(format(
+                "Command '%s' didn't complete within %d ms and was killed",
+                String.join(" ", processBuilder.command()), timeoutInMillis)));
+          });
+    }
+
+    private static CompletableFuture<String> drain(final InputStream inputStream) {
+      return CompletableFuture.supplyAsync(() -> {
+        try (inputStream) {
+          return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+          throw new CompletionException(e);
+        }
+      }, DRAINERS);
+    }
+
+    // children first, once the parent is gone they are no longer its descendants
+    private static void destroyTree(final Process process) {
+      process.descendants().forEach(ProcessHandle::destroyForcibly);
+      process.destroyForcibly();
+    }
+
+    private static void closeStreams(final Process process) {
+      for (InputStream inputStream : List.of(process.getInputStream(),
+          process.getErrorStream())) {
+        try {
+          inputStream.close();
+        } catch (IOException e) {
+          // already closed or broken, there is nothing left to release
+        }
       }
     }
   }
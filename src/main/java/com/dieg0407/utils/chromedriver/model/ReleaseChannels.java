@@ -0,0 +1,103 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The versions currently released on each Chrome channel, as listed by Chrome for Testing. A
+ * channel moves ahead of the installed Chrome a while before the auto-update reaches a host, which
+ * is when the matching ChromeDriver can be prefetched.
+ * <p>
+ * The listing is refreshed with a conditional request and kept in the given folder, so a host that
+ * can't reach the listing keeps using the last one it saw.
+ */
+public class ReleaseChannels {
+
+  public static final URI LAST_KNOWN_GOOD_VERSIONS_URL = URI.create(
+      "https://googlechromelabs.github.io/chrome-for-testing/last-known-good-versions.json");
+  public static final String LAST_KNOWN_GOOD_VERSIONS_FILE = "last-known-good-versions.json";
+
+  private static final Pattern VERSION = Pattern.compile(
+      "\"version\"\\s*:\\s*\"(\\d+\\.\\d+\\.\\d+\\.\\d+)\"");
+
+  private final File folder;
+  private final Downloader downloader;
+  private final URI source;
+
+  /**
+   * Constructs the channels stored in the given folder and refreshed from Chrome for Testing.
+   *
+   * @param folder     the folder where the listing is stored
+   * @param downloader the downloader used to refresh the listing
+   */
+  public ReleaseChannels(final File folder, final Downloader downloader) {
+    this(folder, downloader, LAST_KNOWN_GOOD_VERSIONS_URL);
+  }
+
+  /**
+   * Constructs the channels stored in the given folder and refreshed from the given listing.
+   *
+   * @param folder     the folder where the listing is stored
+   * @param downloader the downloader used to refresh the listing
+   * @param source     the location of the last known good versions JSON
+   */
+  public ReleaseChannels(final File folder, final Downloader downloader, final URI source) {
+    assert folder != null : "Folder cannot be null";
+    assert downloader != null : "Downloader cannot be null";
+    assert source != null : "Source cannot be null";
+
+    this.folder = folder;
+    this.downloader = downloader;
+    this.source = source;
+  }
+
+  /**
+   * Returns the version released on the given channel, refreshing the listing first.
+   *
+   * @param channel the channel as named by Chrome for Testing, such as {@code Stable} or
+   *                {@code Beta}
+   * @return the released version or empty if the channel isn't listed
+   */
+  public synchronized Optional<Version> latest(final String channel) {
+    assert channel != null : "Channel cannot be null";
+
+    final File listing = new File(folder, LAST_KNOWN_GOOD_VERSIONS_FILE);
+    try {
+      if (!folder.exists() && !folder.mkdirs()) {
+        throw new RuntimeException("Failed to create listing folder: " + folder.getAbsolutePath());
+      }
+      downloader.downloadIfModified(source, listing);
+    } catch (RuntimeException e) {
+      // a stale listing still names a version that may not have reached this host yet
+      Log.printf("Could not refresh the release channels: %s\n", e.getMessage());
+    }
+    if (!listing.exists()) {
+      return Optional.empty();
+    }
+
+    try {
+      return versionOf(Files.readString(listing.toPath(), StandardCharsets.UTF_8), channel);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read " + listing.getAbsolutePath(), e);
+    }
+  }
+
+  // the listing is small and flat: {"channels": {"Stable": {"channel": ..., "version": ...}}}
+  static Optional<Version> versionOf(final String listing, final String channel) {
+    final Matcher object = Pattern.compile("\"" + Pattern.quote(channel) + "\"\\s*:\\s*\\{([^}]*)}")
+        .matcher(listing);
+    if (!object.find()) {
+      return Optional.empty();
+    }
+    final Matcher version = VERSION.matcher(object.group(1));
+    return version.find()
+        ? Optional.of(Version.fromRawVersion(version.group(1)))
+        : Optional.empty();
+  }
+}
@@ -1,43 +1,170 @@
 package com.dieg0407.utils.chromedriver.model;
 
-public record Version(
-    short major,
-    short minor,
-    short patch,
-    short build
-) {
-
-  public static Version fromRawVersion(String version) {
-    if (!version.matches("\\d+\\.\\d+\\.\\d+\\.\\d+")) {
-      throw new IllegalArgumentException(
-          "Version string must be in the format 'major.minor.patch.build' instead got: '" + version
-              + "'");
+/**
+ * A Chrome or ChromeDriver version in the format "major.minor.patch.build". The four parts are
+ * packed into a single {@code long}, 16 bits each with the major part first, so comparing two
+ * versions is comparing two numbers.
+ */
+public final class Version implements Comparable<Version> {
+
+  /**
+   * Which parts of two versions have to match for a ChromeDriver to be used with a Chrome.
+   */
+  public enum Compatibility {
+    /**
+     * Only the major parts have to match, the policy published for ChromeDriver.
+     */
+    MAJOR(0xFFFF_0000_0000_0000L),
+    /**
+     * The major and minor parts have to match.
+     */
+    MAJOR_MINOR(0xFFFF_FFFF_0000_0000L),
+    /**
+     * Every part has to match, down to the build.
+     */
+    EXACT(0xFFFF_FFFF_FFFF_FFFFL);
+
+    private final long mask;
+
+    Compatibility(final long mask) {
+      this.mask = mask;
+    }
+
+    /**
+     * Checks if the given versions match under this policy.
+     *
+     * @param a a version
+     * @param b the other version
+     * @return true if the parts checked by this policy are the same in both versions
+     */
+    public boolean matches(final Version a, final Version b) {
+      return (a.packed & mask) == (b.packed & mask);
+    }
+  }
+
+  private static final int PART_BITS = 16;
+  private static final int MAX_PART = 0xFFFF;
+
+  private final long packed;
+  // computed on first use, racing threads compute the same string
+  private String identifier;
+
+  /**
+   * Constructs a version from its four parts.
+   *
+   * @throws IllegalArgumentException if a part is negative or greater than 65535
+   */
+  public Version(final int major, final int minor, final int patch, final int build) {
+    this(pack(major, minor, patch, build));
+  }
+
+  private Version(final long packed) {
+    this.packed = packed;
+  }
+
+  /**
+   * Parses a version in the format "major.minor.patch.build" in a single pass, without regular
+   * expressions or intermediate strings.
+   *
+   * @param version the version to parse
+   * @return the parsed version
+   * @throws IllegalArgumentException if the version isn't in the expected format
+   */
+  public static Version fromRawVersion(final String version) {
+    if (version == null) {
+      throw invalid(null);
+    }
+
+    long packed = 0;
+    int parts = 0;
+    int value = 0;
+    int digits = 0;
+    for (int i = 0, length = version.length(); i < length; i++) {
+      final char c = version.charAt(i);
+      if (c >= '0' && c <= '9') {
+        value = value * 10 + (c - '0');
+        if (++digits > 5 || value > MAX_PART) {
+          throw invalid(version);
+        }
+      } else if (c == '.' && digits > 0 && parts < 3) {
+        packed = (packed << PART_BITS) | value;
+        parts++;
+        value = 0;
+        digits = 0;
+      } else {
+        throw invalid(version);
+      }
     }
-    final String[] parts = version.split("\\.");
-    assert parts.length == 4 : "raw version should have exactly 4 parts";
+    if (parts != 3 || digits == 0) {
+      throw invalid(version);
+    }
+    return new Version((packed << PART_BITS) | value);
+  }
+
+  // for indexes that store versions as numbers
+  static Version fromPacked(final long packed) {
+    return new Version(packed);
+  }
+
+  long packed() {
+    return packed;
+  }
+
+  public int major() {
+    return part(3);
+  }
 
-    return new Version(
-        Short.parseShort(parts[0]),
-        Short.parseShort(parts[1]),
-        Short.parseShort(parts[2]),
-        Short.parseShort(parts[3])
-    );
+  public int minor() {
+    return part(2);
+  }
+
+  public int patch() {
+    return part(1);
+  }
+
+  public int build() {
+    return part(0);
   }
 
   /**
-   * Checks if this version is less than the other version. It doesn't check the build number or the
-   * patch
+   * Checks if this version is less than the other version, comparing all four parts.
    *
    * @param other the other version to compare with
    * @return true if this version is less than the other version, false otherwise
    */
   public boolean isLessThan(final Version other) {
-    if (this.major < other.major) {
-      return true;
-    } else if (this.major > other.major) {
-      return false;
-    }
-    return this.minor < other.minor;
+    return compareTo(other) < 0;
+  }
+
+  /**
+   * Checks if this version can be used with the other version under the given policy.
+   *
+   * @param other         the other version
+   * @param compatibility the parts that have to match
+   * @return true if both versions match under the policy
+   */
+  public boolean isCompatibleWith(final Version other, final Compatibility compatibility) {
+    assert other != null : "Other version cannot be null";
+    assert compatibility != null : "Compatibility cannot be null";
+
+    return compatibility.matches(this, other);
+  }
+
+  /**
+   * Checks if this ChromeDriver version can be kept for the given Chrome version. A driver that
+   * isn't older than Chrome is always kept, an older one only when it matches under the policy.
+   *
+   * @param chromeVersion the version of Chrome
+   * @param compatibility the parts an older driver has to match
+   * @return true if no update is needed
+   */
+  public boolean isUpToDateWith(final Version chromeVersion, final Compatibility compatibility) {
+    return !isLessThan(chromeVersion) || isCompatibleWith(chromeVersion, compatibility);
+  }
+
+  @Override
+  public int compareTo(final Version other) {
+    return Long.compareUnsigned(packed, other.packed);
   }
 
   /**
@@ -46,6 +173,52 @@ public record Version(
    * @return a string representation of the version
    */
   public String identifier() {
-    return String.format("%d.%d.%d.%d", major, minor, patch, build);
+    String identifier = this.identifier;
+    if (identifier == null) {
+      identifier = new StringBuilder(23)
+          .append(major()).append('.')
+          .append(minor()).append('.')
+          .append(patch()).append('.')
+          .append(build())
+          .toString();
+      this.identifier = identifier;
+    }
+    return identifier;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    return o instanceof Version other && packed == other.packed;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(packed);
+  }
+
+  @Override
+  public String toString() {
+    return identifier();
+  }
+
+  private int part(final int index) {
+    return (int) (packed >>> (index * PART_BITS)) & MAX_PART;
+  }
+
+  private static long pack(final int major, final int minor, final int patch, final int build) {
+    if ((major | minor | patch | build) < 0
+        || Math.max(Math.max(major, minor), Math.max(patch, build)) > MAX_PART) {
+      throw new IllegalArgumentException(String.format(
+          "Version parts must be between 0 and %d instead got: %d.%d.%d.%d", MAX_PART, major,
+          minor, patch, build));
+    }
+    return ((long) major << 3 * PART_BITS) | ((long) minor << 2 * PART_BITS)
+        | ((long) patch << PART_BITS) | build;
+  }
+
+  private static IllegalArgumentException invalid(final String version) {
+    return new IllegalArgumentException(
+        "Version string must be in the format 'major.minor.patch.build' instead got: '" + version
+            + "'");
   }
 }
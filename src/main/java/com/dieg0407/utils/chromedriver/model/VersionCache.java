@@ -0,0 +1,150 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent cache of binary versions keyed by the fingerprint of the binary: its absolute
+ * path, size, modification time and file key (the inode on unix). As long as the fingerprint
+ * doesn't change, the version is known with a single {@code stat} call. Replacing or modifying the
+ * binary changes its fingerprint, which invalidates the cached version.
+ */
+public class VersionCache {
+
+  public static final String INDEX_FILE = "fingerprints.index";
+
+  record Fingerprint(long size, long modifiedNanos, String fileKey) {
+
+  }
+
+  private record Cached(Fingerprint fingerprint, Version version) {
+
+  }
+
+  private final File index;
+  private Map<String, Cached> entries;
+
+  /**
+   * Constructs a cache stored in the given index file. Nothing is read from disk until the cache
+   * is used.
+   *
+   * @param index the file where the versions are stored
+   */
+  public VersionCache(final File index) {
+    assert index != null : "Index cannot be null";
+
+    this.index = index;
+  }
+
+  /**
+   * Returns the cached version of the binary if it didn't change since it was recorded.
+   *
+   * @param binary the Chrome or ChromeDriver executable
+   * @return the cached version or empty if it's unknown or the binary changed
+   */
+  public synchronized Optional<Version> get(final File binary) {
+    assert binary != null : "Binary cannot be null";
+
+    final Cached cached = entries().get(binary.getAbsolutePath());
+    if (cached == null) {
+      return Optional.empty();
+    }
+    return fingerprintOf(binary)
+        .filter(cached.fingerprint()::equals)
+        .map(fingerprint -> cached.version());
+  }
+
+  /**
+   * Records the version of the binary as it is right now.
+   *
+   * @param binary  the Chrome or ChromeDriver executable
+   * @param version the version of the binary
+   */
+  public synchronized void record(final File binary, final Version version) {
+    assert binary != null : "Binary cannot be null";
+    assert version != null : "Version cannot be null";
+
+    final Optional<Fingerprint> fingerprint = fingerprintOf(binary);
+    if (fingerprint.isEmpty()) {
+      return;
+    }
+
+    final Cached cached = new Cached(fingerprint.get(), version);
+    if (cached.equals(entries().put(binary.getAbsolutePath(), cached))) {
+      return; // nothing changed, no need to write the index again
+    }
+    save();
+  }
+
+  static Optional<Fingerprint> fingerprintOf(final File binary) {
+    try {
+      final BasicFileAttributes attributes = Files.readAttributes(binary.toPath(),
+          BasicFileAttributes.class);
+      return Optional.of(new Fingerprint(attributes.size(),
+          attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+          Objects.toString(attributes.fileKey(), "")));
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+  }
+
+  private Map<String, Cached> entries() {
+    if (entries != null) {
+      return entries;
+    }
+
+    entries = new HashMap<>();
+    if (!index.exists()) {
+      return entries;
+    }
+
+    try {
+      for (String line : Files.readAllLines(index.toPath())) {
+        final String[] parts = line.split("\t");
+        if (parts.length != 5) {
+          continue; // ignore corrupted lines, the version will be probed again
+        }
+        entries.put(parts[0], new Cached(
+            new Fingerprint(Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]),
+            Version.fromRawVersion(parts[4])));
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      // the cache is only an optimization, start over instead of failing the run
+      Log.printf("Ignoring unreadable version cache %s: %s\n", index, e.getMessage());
+      entries.clear();
+    }
+    return entries;
+  }
+
+  private void save() {
+    final File folder = index.getAbsoluteFile().getParentFile();
+    final StringBuilder builder = new StringBuilder();
+    for (Map.Entry<String, Cached> entry : entries.entrySet()) {
+      final Fingerprint fingerprint = entry.getValue().fingerprint();
+      builder.append(format("%s\t%d\t%d\t%s\t%s\n", entry.getKey(), fingerprint.size(),
+          fingerprint.modifiedNanos(), fingerprint.fileKey(),
+          entry.getValue().version().identifier()));
+    }
+
+    // write a sibling first so a crash never leaves a half written index behind
+    try {
+      Files.createDirectories(folder.toPath());
+      final Path staged = Files.createTempFile(folder.toPath(), index.getName(), ".tmp");
+      Files.writeString(staged, builder);
+      AtomicFiles.move(staged, index.toPath());
+    } catch (IOException e) {
+      // the cache is only an optimization, the version is probed again on the next run
+      Log.printf("Could not write the version cache %s: %s\n", index, e.getMessage());
+    }
+  }
+}
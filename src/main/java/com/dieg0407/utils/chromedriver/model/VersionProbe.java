@@ -0,0 +1,235 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Obtains the version of a Chrome or ChromeDriver binary without executing it. Probes return empty
+ * when they can't tell the version, so callers can fall back to running the binary.
+ */
+public interface VersionProbe {
+
+  /**
+   * Obtains the version of the given binary.
+   *
+   * @param binary the Chrome or ChromeDriver executable
+   * @return the version or empty if this probe can't tell it
+   */
+  Optional<Version> probe(final File binary);
+
+  /**
+   * Tells the probe the version of the binary when it was obtained some other way, such as
+   * executing it or installing it. Probes that don't remember versions ignore it.
+   *
+   * @param binary  the Chrome or ChromeDriver executable
+   * @param version the version of the binary
+   */
+  default void record(final File binary, final Version version) {
+  }
+
+  /**
+   * Returns a probe that tries every given probe in order and returns the first version found.
+   *
+   * @param probes the probes to try
+   * @return the combined probe
+   */
+  static VersionProbe firstOf(final VersionProbe... probes) {
+    return binary -> {
+      for (VersionProbe probe : probes) {
+        final Optional<Version> version = probe.probe(binary);
+        if (version.isPresent()) {
+          return version;
+        }
+      }
+      return Optional.empty();
+    };
+  }
+
+  /**
+   * Returns a probe that answers from the given cache while the binary doesn't change and asks the
+   * delegate otherwise. Versions found by the delegate or recorded are stored in the cache.
+   *
+   * @param cache    the cache of versions by binary fingerprint
+   * @param delegate the probe used when the cache doesn't know the version
+   * @return the cached probe
+   */
+  static VersionProbe cached(final VersionCache cache, final VersionProbe delegate) {
+    return new VersionProbe() {
+      @Override
+      public Optional<Version> probe(final File binary) {
+        final Optional<Version> cached = cache.get(binary);
+        Metrics.global().cacheLookup("version", cached.isPresent());
+        if (cached.isPresent()) {
+          return cached;
+        }
+
+        final Optional<Version> version = delegate.probe(binary);
+        version.ifPresent(found -> cache.record(binary, found));
+        return version;
+      }
+
+      @Override
+      public void record(final File binary, final Version version) {
+        cache.record(binary, version);
+      }
+    };
+  }
+
+  // nothing in the Chrome binary anchors its version, and scanning a 250 MB binary for a guess
+  // costs more than running it, so only the bundle of macOS is read
+  static VersionProbe chrome() {
+    return new InfoPlist();
+  }
+
+  static VersionProbe chromedriver() {
+    return BinaryScan.forChromedriver();
+  }
+
+  /**
+   * A probe that never finds a version, so the binary is always executed.
+   */
+  static VersionProbe none() {
+    return binary -> Optional.empty();
+  }
+
+  /**
+   * Reads the version of a macOS application from the {@code Info.plist} of its bundle, the
+   * binary is expected at {@code <name>.app/Contents/MacOS/<binary>}.
+   */
+  class InfoPlist implements VersionProbe {
+
+    private static final Pattern SHORT_VERSION = Pattern.compile(
+        "<key>CFBundleShortVersionString</key>\\s*<string>(\\d+\\.\\d+\\.\\d+\\.\\d+)</string>");
+
+    @Override
+    public Optional<Version> probe(final File binary) {
+      assert binary != null : "Binary cannot be null";
+
+      final File macOs = binary.getAbsoluteFile().getParentFile();
+      if (macOs == null || !macOs.getName().equals("MacOS")) {
+        return Optional.empty();
+      }
+
+      final File plist = new File(macOs.getParentFile(), "Info.plist");
+      if (!plist.isFile()) {
+        return Optional.empty();
+      }
+
+      try {
+        // binary plists are left to the fallback
+        final Matcher matcher = SHORT_VERSION.matcher(Files.readString(plist.toPath(),
+            StandardCharsets.ISO_8859_1));
+        return matcher.find()
+            ? Optional.of(Version.fromRawVersion(matcher.group(1)))
+            : Optional.empty();
+      } catch (IOException | IllegalArgumentException e) {
+        return Optional.empty();
+      }
+    }
+  }
+
+  /**
+   * Memory-maps the binary and scans it for the version string embedded at build time. ChromeDriver
+   * embeds its version followed by the commit hash, as in {@code 138.0.7204.49 (d0b7...)}, and
+   * only a version-shaped string anchored that way is taken.
+   */
+  class BinaryScan implements VersionProbe {
+
+    private static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private BinaryScan() {
+    }
+
+    public static BinaryScan forChromedriver() {
+      return new BinaryScan();
+    }
+
+    @Override
+    public Optional<Version> probe(final File binary) {
+      assert binary != null : "Binary cannot be null";
+
+      try (FileChannel channel = FileChannel.open(binary.toPath(), StandardOpenOption.READ)) {
+        final long size = channel.size();
+        if (size == 0 || size > MAX_SIZE) {
+          return Optional.empty();
+        }
+        return scan(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+      } catch (IOException e) {
+        return Optional.empty();
+      }
+    }
+
+    private Optional<Version> scan(final MappedByteBuffer buffer) {
+      final int limit = buffer.limit();
+      final int[] parts = new int[4];
+
+      int i = 0;
+      while (i < limit) {
+        if (!isDigit(buffer.get(i)) || (i > 0 && isVersionByte(buffer.get(i - 1)))) {
+          i++;
+          continue;
+        }
+
+        // parse up to four dot separated numbers of at most five digits each
+        int position = i;
+        int part = 0;
+        boolean valid = true;
+        while (valid) {
+          int value = 0;
+          int digits = 0;
+          while (position < limit && isDigit(buffer.get(position)) && digits <= 5) {
+            value = value * 10 + (buffer.get(position) - '0');
+            position++;
+            digits++;
+          }
+          valid = digits > 0 && digits <= 5 && value <= 0xFFFF;
+          if (!valid) {
+            break;
+          }
+          parts[part++] = value;
+          if (part == 4 || position >= limit || buffer.get(position) != '.') {
+            break;
+          }
+          position++;
+        }
+
+        if (valid && part == 4 && isFollowedByCommit(buffer, position)) {
+          return Optional.of(new Version(parts[0], parts[1], parts[2], parts[3]));
+        }
+        i = Math.max(position, i + 1);
+      }
+      return Optional.empty();
+    }
+
+    // " (" and at least 7 hex characters of the commit hash
+    private static boolean isFollowedByCommit(final MappedByteBuffer buffer, final int position) {
+      if (position + 9 > buffer.limit() || buffer.get(position) != ' '
+          || buffer.get(position + 1) != '(') {
+        return false;
+      }
+      for (int i = position + 2; i < position + 9; i++) {
+        final byte b = buffer.get(i);
+        if (!isDigit(b) && (b < 'a' || b > 'f')) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean isVersionByte(final byte b) {
+      return isDigit(b) || b == '.';
+    }
+
+    private static boolean isDigit(final byte b) {
+      return b >= '0' && b <= '9';
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.Checksums;
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.Os;
+import com.dieg0407.utils.chromedriver.model.ProcessHandler;
+import com.dieg0407.utils.chromedriver.model.Version;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+class ChromedriverResolverTest {
+
+  @TempDir
+  Path tmpDir;
+
+  Downloader downloader;
+  DriverIndex index;
+  ProcessHandler processHandler;
+  Path chrome;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    downloader = Mockito.mock(Downloader.class);
+    Mockito.when(downloader.downloadDigested(Mockito.any(), Mockito.any())).thenCallRealMethod();
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+      // slow enough for every caller to ask while the download runs
+      Thread.sleep(100);
+      final File destination = invocation.getArgument(1);
+      Files.copy(Path.of(getClass().getClassLoader().getResource("test-chromedriver.zip").toURI()),
+          destination.toPath());
+      return destination;
+    });
+    index = Mockito.mock(DriverIndex.class);
+    Mockito.when(index.nearest(Mockito.any(), Mockito.any())).thenReturn(Optional.empty());
+    processHandler = Mockito.mock(ProcessHandler.class);
+    Mockito.when(processHandler.getOutput(Mockito.any(), Mockito.anyLong()))
+        .thenReturn("Google Chrome 124.0.6367.60");
+    chrome = Files.writeString(tmpDir.resolve("google-chrome"), "not an elf binary");
+  }
+
+  @Test
+  void checkConcurrentCallersShareOneResolution() throws Exception {
+    final ChromedriverResolver resolver = resolver();
+    final PrintStream stdout = System.out;
+    final ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    final List<CompletableFuture<Path>> resolutions = new ArrayList<>();
+    System.setOut(new PrintStream(printed));
+    try {
+      for (int i = 0; i < 8; i++) {
+        resolutions.add(resolver.resolve(chrome));
+      }
+      for (CompletableFuture<Path> resolution : resolutions) {
+        Assertions.assertEquals(resolver.getFolder().toPath().resolve("124.0.6367.60")
+            .resolve("chromedriver"), resolution.get(10, TimeUnit.SECONDS));
+      }
+      resolver.resolve(chrome).get(10, TimeUnit.SECONDS);
+    } finally {
+      System.setOut(stdout);
+    }
+
+    Assertions.assertEquals("", printed.toString(), "nothing is printed to stdout");
+    Mockito.verify(downloader, Mockito.times(1)).download(Mockito.any(), Mockito.any());
+    Mockito.verify(processHandler, Mockito.times(1)).getOutput(Mockito.any(), Mockito.anyLong());
+    Assertions.assertTrue(Files.isRegularFile(resolutions.get(0).get()));
+  }
+
+  @Test
+  void checkInstalledVersionIsUsedWithoutTheIndex() throws Exception {
+    final Path installed = resolver().resolve(chrome).get(10, TimeUnit.SECONDS);
+    Mockito.clearInvocations(index, downloader);
+
+    // another JVM finds the version installed by the first one
+    Assertions.assertEquals(installed, resolver().resolve(chrome).get(10, TimeUnit.SECONDS));
+    Mockito.verifyNoInteractions(index, downloader);
+  }
+
+  @Test
+  void checkFailedResolutionIsTriedAgain() throws Exception {
+    Mockito.doThrow(new RuntimeException("Connection reset")).doCallRealMethod()
+        .when(downloader).downloadDigested(Mockito.any(), Mockito.any());
+    final ChromedriverResolver resolver = resolver();
+
+    final ExecutionException failure = Assertions.assertThrows(ExecutionException.class,
+        () -> resolver.resolve(chrome).get(10, TimeUnit.SECONDS));
+    Assertions.assertEquals("Connection reset", failure.getCause().getMessage());
+
+    Assertions.assertTrue(Files.isRegularFile(resolver.resolve(chrome).get(10, TimeUnit.SECONDS)));
+  }
+
+  private ChromedriverResolver resolver() {
+    return new ChromedriverResolver(tmpDir.resolve("resolver").toFile(), Os.LINUX,
+        processHandler, downloader, index, Checksums.none(), Version.Compatibility.MAJOR_MINOR);
+  }
+}
@@ -1,20 +1,36 @@
 package com.dieg0407.utils.chromedriver;
 
+import com.dieg0407.utils.chromedriver.model.BinaryStore;
+import com.dieg0407.utils.chromedriver.model.Checksums;
+import com.dieg0407.utils.chromedriver.model.DownloadCache;
 import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.Metrics;
 import com.dieg0407.utils.chromedriver.model.Os;
 import com.dieg0407.utils.chromedriver.model.ProcessHandler;
 import com.dieg0407.utils.chromedriver.model.Version;
+import com.dieg0407.utils.chromedriver.model.VersionProbe;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 
 class ChromedriverTest {
 
@@ -39,6 +55,7 @@ class ChromedriverTest {
 
     processHandler = Mockito.mock(ProcessHandler.class);
     downloader = Mockito.mock(Downloader.class);
+    Mockito.when(downloader.downloadDigested(Mockito.any(), Mockito.any())).thenCallRealMethod();
 
     tmpDir = new File("tmp");
     if (!tmpDir.exists()) {
@@ -54,6 +71,7 @@ class ChromedriverTest {
 
     if (tmpDir.exists()) {
       Files.walk(tmpDir.toPath())
+          .sorted(Comparator.reverseOrder())
           .forEach(path -> {
             try {
               Files.delete(path);
@@ -61,7 +79,6 @@ class ChromedriverTest {
               throw new RuntimeException("Failed to delete file: " + path, e);
             }
           });
-      tmpDir.delete();
     }
   }
 
@@ -114,14 +131,296 @@ class ChromedriverTest {
   @Test
   void checkUpdateToShouldReplaceOriginal() throws Exception {
     Mockito.when(downloader.download(Mockito.any(), Mockito.any()))
-        .thenReturn(downloadedZipFile);
+        .thenAnswer(this::copyDownloadedZipFile);
 
     String content = Files.readString(this.chromedriverExecutable.toPath()).trim();
-    final Chromedriver chromedriver = new Chromedriver(this.chromedriverExecutable.getAbsolutePath(), Os.LINUX, processHandler, downloader);
+    final Chromedriver chromedriver = new Chromedriver(this.chromedriverExecutable.getAbsolutePath(), Os.LINUX, processHandler, downloader, options());
     chromedriver.updateTo(new Version((short) 123, (short) 456, (short) 7890, (short) 12));
 
     String updatedContent = Files.readString(this.chromedriverExecutable.toPath()).trim();
 
     Assertions.assertNotEquals(content, updatedContent, "The content of the chromedriver should be updated");
   }
+
+  @Test
+  void checkUpdateToReusesCachedDownload() throws Exception {
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any()))
+        .thenAnswer(this::copyDownloadedZipFile);
+
+    final Chromedriver chromedriver = new Chromedriver(this.chromedriverExecutable.getAbsolutePath(), Os.LINUX, processHandler, downloader, options());
+    final Version version = new Version((short) 123, (short) 456, (short) 7890, (short) 12);
+    chromedriver.updateTo(version);
+    // the location is now a link to the installed version, replace it instead of writing through
+    Files.delete(this.chromedriverExecutable.toPath());
+    Files.write(this.chromedriverExecutable.toPath(), "mocked content".getBytes());
+    chromedriver.updateTo(version);
+
+    Mockito.verify(downloader, Mockito.times(1)).download(Mockito.any(), Mockito.any());
+    Assertions.assertNotEquals("mocked content", Files.readString(this.chromedriverExecutable.toPath()).trim());
+  }
+
+  @Test
+  void checkUpdatePhasesAreRecorded() throws Exception {
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any()))
+        .thenAnswer(this::copyDownloadedZipFile);
+    final Metrics metrics = Metrics.global();
+    final long downloads = metrics.count(Metrics.Phase.DOWNLOAD);
+    final long downloadedBytes = metrics.bytes(Metrics.Phase.DOWNLOAD);
+    final long extractions = metrics.count(Metrics.Phase.EXTRACTION);
+    final long replacements = metrics.count(Metrics.Phase.REPLACEMENT);
+    final long hits = metrics.cacheLookups("download", true);
+    final long misses = metrics.cacheLookups("download", false);
+
+    final Chromedriver chromedriver = new Chromedriver(this.chromedriverExecutable.getAbsolutePath(), Os.LINUX, processHandler, downloader, options());
+    final Version version = new Version((short) 123, (short) 456, (short) 7890, (short) 12);
+    chromedriver.updateTo(version);
+    chromedriver.updateTo(version);
+
+    Assertions.assertEquals(downloads + 1, metrics.count(Metrics.Phase.DOWNLOAD));
+    Assertions.assertEquals(downloadedBytes + downloadedZipFile.length(),
+        metrics.bytes(Metrics.Phase.DOWNLOAD));
+    Assertions.assertEquals(extractions + 2, metrics.count(Metrics.Phase.EXTRACTION));
+    Assertions.assertEquals(replacements + 2, metrics.count(Metrics.Phase.REPLACEMENT));
+    Assertions.assertEquals(hits + 1, metrics.cacheLookups("download", true));
+    Assertions.assertEquals(misses + 1, metrics.cacheLookups("download", false));
+  }
+
+  @Test
+  void checkStreamingUpdateDoesNotKeepTheZip() throws Exception {
+    Mockito.when(downloader.open(Mockito.any()))
+        .thenAnswer(invocation -> Files.newInputStream(downloadedZipFile.toPath()));
+
+    final Chromedriver chromedriver = new Chromedriver(this.chromedriverExecutable.getAbsolutePath(), Os.LINUX, processHandler, downloader, options());
+    chromedriver.updateTo(new Version((short) 123, (short) 456, (short) 7890, (short) 12),
+        Chromedriver.ExtractionMode.STREAMING);
+
+    Mockito.verify(downloader, Mockito.never()).download(Mockito.any(), Mockito.any());
+    Assertions.assertNotEquals("mocked content", Files.readString(this.chromedriverExecutable.toPath()).trim());
+    Assertions.assertTrue(cache().entries().isEmpty());
+  }
+
+  @Test
+  void checkUpdateToInstallsAnExecutableWithoutChmod() throws Exception {
+    Assumptions.assumeTrue(
+        FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any()))
+        .thenAnswer(this::copyDownloadedZipFile);
+
+    final Chromedriver chromedriver = new Chromedriver(
+        this.chromedriverExecutable.getAbsolutePath(), Os.LINUX, processHandler, downloader,
+        options());
+    chromedriver.updateTo(new Version(123, 456, 7890, 12));
+
+    Assertions.assertTrue(Files.getPosixFilePermissions(chromedriverExecutable.toPath())
+        .contains(PosixFilePermission.OWNER_EXECUTE));
+    Mockito.verifyNoInteractions(processHandler);
+  }
+
+  @Test
+  void checkDirectoriesNamedLikeTheExecutableAreSkipped() throws Exception {
+    final File zip = new File(tmpDir, "decoy.zip");
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(
+        Files.newOutputStream(zip.toPath()))) {
+      zipOutputStream.putNextEntry(new ZipEntry("chromedriver-win64/chromedriver.exe/"));
+      zipOutputStream.putNextEntry(new ZipEntry("chromedriver-win64/chromedriver.exe"));
+      zipOutputStream.write("new driver".getBytes());
+      zipOutputStream.closeEntry();
+    }
+    Mockito.when(downloader.open(Mockito.any()))
+        .thenAnswer(invocation -> Files.newInputStream(zip.toPath()));
+
+    final Chromedriver chromedriver = new Chromedriver(
+        this.chromedriverExecutable.getAbsolutePath(), Os.WINDOWS, processHandler, downloader,
+        options());
+    chromedriver.updateTo(new Version(123, 456, 7890, 12), Chromedriver.ExtractionMode.STREAMING);
+
+    Assertions.assertEquals("new driver", Files.readString(this.chromedriverExecutable.toPath()));
+  }
+
+  @Test
+  void checkVersionsAreInstalledSideBySideAndSwitchedBack() throws Exception {
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any()))
+        .thenAnswer(this::copyDownloadedZipFile);
+
+    final Chromedriver chromedriver = new Chromedriver(
+        this.chromedriverExecutable.getAbsolutePath(), Os.LINUX, processHandler, downloader,
+        options());
+    final Version older = new Version(123, 456, 7890, 12);
+    final Version newer = new Version(124, 0, 1, 1);
+    chromedriver.updateTo(older);
+    chromedriver.updateTo(newer);
+
+    Assertions.assertEquals(List.of(older, newer), chromedriver.getInstalledVersions());
+    Assertions.assertTrue(Files.isSymbolicLink(chromedriverExecutable.toPath()));
+    Assertions.assertEquals(new File(tmpDir, "versions/124.0.1.1/chromedriver").getAbsoluteFile()
+        .toPath(), Files.readSymbolicLink(chromedriverExecutable.toPath()));
+
+    chromedriver.switchTo(older);
+
+    Assertions.assertEquals(new File(tmpDir, "versions/123.456.7890.12/chromedriver")
+        .getAbsoluteFile().toPath(), Files.readSymbolicLink(chromedriverExecutable.toPath()));
+    Mockito.verify(downloader, Mockito.times(2)).download(Mockito.any(), Mockito.any());
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> chromedriver.switchTo(new Version(1, 0, 0, 0)));
+  }
+
+  @Test
+  void checkCopyReplacementDoesNotLinkIntoTheVersionsFolder() throws Exception {
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any()))
+        .thenAnswer(this::copyDownloadedZipFile);
+
+    final Chromedriver chromedriver = new Chromedriver(
+        this.chromedriverExecutable.getAbsolutePath(), Os.LINUX, processHandler, downloader,
+        options().withVersionProbe(VersionProbe.none())
+            .withReplacement(Chromedriver.Replacement.COPY));
+    final Version version = new Version(124, 0, 1, 1);
+    chromedriver.updateTo(version);
+
+    Assertions.assertFalse(Files.isSymbolicLink(chromedriverExecutable.toPath()));
+    // the location keeps working once the installed version is gone
+    Files.delete(chromedriver.getInstalledPath(version));
+    Assertions.assertFalse(Files.readString(chromedriverExecutable.toPath()).isEmpty());
+  }
+
+  @Test
+  void checkPruneKeepsTheNewestAndTheLinkedVersions() throws Exception {
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any()))
+        .thenAnswer(this::copyDownloadedZipFile);
+
+    final Chromedriver chromedriver = new Chromedriver(
+        this.chromedriverExecutable.getAbsolutePath(), Os.LINUX, processHandler, downloader,
+        options());
+    final List<Version> versions = List.of(new Version(121, 0, 1, 1), new Version(122, 0, 1, 1),
+        new Version(123, 0, 1, 1), new Version(124, 0, 1, 1));
+    for (Version version : versions) {
+      chromedriver.updateTo(version);
+    }
+    chromedriver.switchTo(versions.get(0));
+    // another location sharing the versions folder
+    final File other = new File(tmpDir, "chromedriver");
+    Files.writeString(other.toPath(), "mocked content");
+    new Chromedriver(other.getAbsolutePath(), Os.LINUX, processHandler, downloader, options())
+        .switchTo(versions.get(1));
+
+    Assertions.assertEquals(List.of(versions.get(2)), chromedriver.prune(1));
+    Assertions.assertEquals(List.of(versions.get(0), versions.get(1), versions.get(3)),
+        chromedriver.getInstalledVersions());
+    Assertions.assertTrue(Files.isRegularFile(chromedriverExecutable.toPath()));
+    Assertions.assertTrue(Files.isRegularFile(other.toPath()));
+  }
+
+  @Test
+  void checkChecksumMismatchLeavesChromedriverUntouched() throws Exception {
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any()))
+        .thenAnswer(this::copyDownloadedZipFile);
+    Mockito.when(downloader.open(Mockito.any()))
+        .thenAnswer(invocation -> Files.newInputStream(downloadedZipFile.toPath()));
+    final File manifest = new File(tmpDir, "checksums.sha256");
+    Files.writeString(manifest.toPath(),
+        "0".repeat(64) + "  123.456.7890.12/linux64/chromedriver-linux64.zip\n");
+
+    final Chromedriver chromedriver = new Chromedriver(
+        this.chromedriverExecutable.getAbsolutePath(), Os.LINUX, processHandler, downloader,
+        options().withVersionProbe(VersionProbe.none()).withChecksums(Checksums.load(manifest)));
+    final Version version = new Version(123, 456, 7890, 12);
+    for (Chromedriver.ExtractionMode mode : Chromedriver.ExtractionMode.values()) {
+      Assertions.assertThrows(Checksums.MismatchException.class,
+          () -> chromedriver.updateTo(version, mode));
+    }
+
+    Assertions.assertEquals("mocked content",
+        Files.readString(this.chromedriverExecutable.toPath()));
+    Assertions.assertTrue(cache().entries().isEmpty(), "a rejected zip is not cached");
+    Assertions.assertTrue(chromedriver.getInstalledVersions().isEmpty());
+  }
+
+  @Test
+  void checkMatchingChecksumIsVerifiedFromTheCache() throws Exception {
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any()))
+        .thenAnswer(this::copyDownloadedZipFile);
+    final File manifest = new File(tmpDir, "checksums.sha256");
+    Files.writeString(manifest.toPath(), Checksums.sha256Of(downloadedZipFile.toPath())
+        + "  123.456.7890.12/linux64/chromedriver-linux64.zip\n");
+
+    final Chromedriver chromedriver = new Chromedriver(
+        this.chromedriverExecutable.getAbsolutePath(), Os.LINUX, processHandler, downloader,
+        options().withVersionProbe(VersionProbe.none()).withChecksums(Checksums.load(manifest)));
+    final Version version = new Version(123, 456, 7890, 12);
+    chromedriver.updateTo(version);
+    chromedriver.updateTo(version, Chromedriver.ExtractionMode.STREAMING);
+
+    Mockito.verify(downloader, Mockito.times(1)).download(Mockito.any(), Mockito.any());
+    Mockito.verify(downloader, Mockito.never()).open(Mockito.any());
+    Assertions.assertEquals(List.of(version), chromedriver.getInstalledVersions());
+  }
+
+  @Test
+  void checkConcurrentUpdatersShareOneDownload() throws Exception {
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any()))
+        .thenAnswer(invocation -> {
+          Thread.sleep(300); // long enough for the other updater to find the lease taken
+          return copyDownloadedZipFile(invocation);
+        });
+    final Version version = new Version(123, 456, 7890, 12);
+
+    // separate instances, as separate processes would have
+    final List<CompletableFuture<Void>> updaters = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      final File location = File.createTempFile("chromedriver", ".tmp", tmpDir);
+      final Chromedriver chromedriver = new Chromedriver(location.getAbsolutePath(), Os.LINUX,
+          processHandler, downloader, options());
+      updaters.add(CompletableFuture.runAsync(() -> chromedriver.updateTo(version)));
+    }
+    updaters.forEach(CompletableFuture::join);
+
+    Mockito.verify(downloader, Mockito.times(1)).download(Mockito.any(), Mockito.any());
+    Assertions.assertEquals(1, cache().entries().size());
+  }
+
+  @Test
+  void checkStoreLinksEveryLocationToOneExecutable() throws Exception {
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any()))
+        .thenAnswer(this::copyDownloadedZipFile);
+    final BinaryStore store = new BinaryStore(new File(tmpDir, "store"));
+    final Version version = new Version(123, 456, 7890, 12);
+
+    // each location with a versions folder of its own, as separate users or volumes have
+    final List<Chromedriver> chromedrivers = new ArrayList<>();
+    for (String owner : List.of("first", "second")) {
+      final File folder = Files.createDirectories(new File(tmpDir, owner).toPath()).toFile();
+      final File location = Files.writeString(folder.toPath().resolve("chromedriver"), "old")
+          .toFile();
+      chromedrivers.add(new Chromedriver(location.getAbsolutePath(), Os.LINUX, processHandler,
+          downloader, Chromedriver.Options.defaults()
+              .withCache(new DownloadCache(new File(folder, "versions"),
+                  DownloadCache.DEFAULT_QUOTA_IN_BYTES))
+              .withVersionProbe(VersionProbe.none())
+              .withStore(store)));
+    }
+    for (Chromedriver chromedriver : chromedrivers) {
+      chromedriver.updateTo(version);
+    }
+
+    final Path canonical = store.canonicalPath(version);
+    for (Chromedriver chromedriver : chromedrivers) {
+      Assertions.assertTrue(Files.isSameFile(canonical, chromedriver.getInstalledPath(version)));
+      Assertions.assertNotEquals("old", Files.readString(chromedriver.getLocation().toPath()));
+    }
+    Assumptions.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("unix"));
+    Assertions.assertEquals(3, Files.getAttribute(canonical, "unix:nlink"));
+  }
+
+  private DownloadCache cache() {
+    return new DownloadCache(new File(tmpDir, "versions"), DownloadCache.DEFAULT_QUOTA_IN_BYTES);
+  }
+
+  private Chromedriver.Options options() {
+    return Chromedriver.Options.defaults().withCache(cache());
+  }
+
+  private File copyDownloadedZipFile(final InvocationOnMock invocation) throws IOException {
+    final File destination = invocation.getArgument(1);
+    Files.copy(downloadedZipFile.toPath(), destination.toPath());
+    return destination;
+  }
 }
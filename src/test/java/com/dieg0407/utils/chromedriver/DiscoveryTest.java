@@ -0,0 +1,140 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.DirectoryCache;
+import com.dieg0407.utils.chromedriver.model.DownloadCache;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiscoveryTest {
+
+  private static final byte[] ELF = {0x7f, 'E', 'L', 'F', 2, 1, 1, 0};
+
+  @TempDir
+  Path tmpDir;
+
+  private Path root;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    root = tmpDir.resolve("root");
+    executable(root.resolve("toolchains/stable/chrome/chrome"));
+    executable(root.resolve("toolchains/stable/driver/chromedriver"));
+    executable(root.resolve("toolchains/beta/chrome"));
+    executable(root.resolve("toolchains/beta/chromedriver"));
+    // a wrapper script that only shares the name of the executable
+    Files.writeString(Files.createDirectories(root.resolve("scripts")).resolve("chrome"),
+        "#!/bin/sh\nexec chrome \"$@\"\n");
+    // the installed versions of this tool and version control folders aren't walked
+    executable(root.resolve("versions/124.0.6367.60/chromedriver"));
+    Files.writeString(root.resolve("versions").resolve(DownloadCache.INDEX_FILE), "");
+    executable(root.resolve(".git/objects/chromedriver"));
+    settle(root);
+  }
+
+  @Test
+  void checkEveryDriverIsPairedWithTheClosestChrome() {
+    final Discovery.Result result = discovery(Discovery.DEFAULT_MAX_DEPTH)
+        .discover(List.of(root, root.resolve("toolchains")));
+
+    Assertions.assertEquals(List.of(root.resolve("toolchains/beta/chrome"),
+        root.resolve("toolchains/stable/chrome/chrome")), result.chromes());
+    Assertions.assertEquals(List.of(root.resolve("toolchains/beta/chromedriver"),
+        root.resolve("toolchains/stable/driver/chromedriver")), result.chromedrivers());
+    Assertions.assertEquals(List.of(
+        new Fleet.Pair(root.resolve("toolchains/beta/chrome").toString(),
+            root.resolve("toolchains/beta/chromedriver").toString()),
+        new Fleet.Pair(root.resolve("toolchains/stable/chrome/chrome").toString(),
+            root.resolve("toolchains/stable/driver/chromedriver").toString())), result.pairs());
+  }
+
+  @Test
+  void checkDriversWithoutAChromeOfTheirOwnAreNotPaired() throws IOException {
+    // far from every Chrome
+    executable(root.resolve("layers/a/usr/lib/driver/chromedriver"));
+    // two Chrome installations are equally close
+    executable(root.resolve("toolchains/canary/chrome-a/chrome"));
+    executable(root.resolve("toolchains/canary/chrome-b/chrome"));
+    executable(root.resolve("toolchains/canary/driver/chromedriver"));
+
+    final Discovery.Result result = discovery(Discovery.DEFAULT_MAX_DEPTH)
+        .discover(List.of(root));
+
+    Assertions.assertEquals(List.of(root.resolve("layers/a/usr/lib/driver/chromedriver"),
+        root.resolve("toolchains/canary/driver/chromedriver")), result.unpaired());
+    Assertions.assertEquals(List.of(root.resolve("toolchains/beta/chromedriver").toString(),
+            root.resolve("toolchains/stable/driver/chromedriver").toString()),
+        result.pairs().stream().map(Fleet.Pair::chromedriverLocation).toList());
+  }
+
+  @Test
+  void checkNothingBelowTheMaxDepthIsWalked() {
+    final Discovery.Result result = discovery(2).discover(List.of(root));
+
+    Assertions.assertEquals(List.of(root.resolve("toolchains/beta/chrome")), result.chromes());
+    Assertions.assertEquals(List.of(root.resolve("toolchains/beta/chromedriver")),
+        result.chromedrivers());
+  }
+
+  @Test
+  void checkUnchangedDirectoriesAreNotListedAgain() throws IOException {
+    final Discovery.Result first = discovery(Discovery.DEFAULT_MAX_DEPTH)
+        .discover(List.of(root));
+    final Discovery.Result second = discovery(Discovery.DEFAULT_MAX_DEPTH)
+        .discover(List.of(root));
+
+    Assertions.assertEquals(first.directories(), first.listed());
+    Assertions.assertEquals(0, second.listed());
+    Assertions.assertEquals(first.chromedrivers(), second.chromedrivers());
+
+    // a new driver changes its directory, which is the only one listed again
+    executable(root.resolve("toolchains/beta/lib/chromedriver"));
+    settle(root);
+    final Discovery.Result third = discovery(Discovery.DEFAULT_MAX_DEPTH)
+        .discover(List.of(root));
+
+    Assertions.assertEquals(2, third.listed());
+    Assertions.assertTrue(third.chromedrivers()
+        .contains(root.resolve("toolchains/beta/lib/chromedriver")));
+  }
+
+  @Test
+  void checkOnlyExecutableHeadersAreRecognized() throws IOException {
+    Assertions.assertTrue(Discovery.isExecutable(root.resolve("toolchains/beta/chrome")));
+    Assertions.assertTrue(Discovery.isExecutable(
+        Files.write(tmpDir.resolve("chrome.exe"), new byte[]{'M', 'Z', 0, 0})));
+    Assertions.assertFalse(Discovery.isExecutable(root.resolve("scripts/chrome")));
+    Assertions.assertFalse(Discovery.isExecutable(tmpDir.resolve("missing")));
+  }
+
+  private Discovery discovery(final int maxDepth) {
+    return new Discovery(new DirectoryCache(tmpDir.resolve(Discovery.INDEX_FILE).toFile()),
+        maxDepth);
+  }
+
+  private static void executable(final Path file) throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.write(file, ELF);
+  }
+
+  // directories modified within the last seconds aren't cached, they are aged instead of waited on
+  private static void settle(final Path root) throws IOException {
+    final FileTime aged = FileTime.from(Instant.now().minus(1, ChronoUnit.MINUTES));
+    try (Stream<Path> paths = Files.walk(root)) {
+      for (Path path : paths.filter(Files::isDirectory).toList()) {
+        if (Files.getLastModifiedTime(path).compareTo(aged) > 0) {
+          Files.setLastModifiedTime(path, aged);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.DownloadCache;
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.Os;
+import com.dieg0407.utils.chromedriver.model.ProcessHandler;
+import com.dieg0407.utils.chromedriver.model.VersionCache;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+class FleetTest {
+
+  @TempDir
+  Path tmpDir;
+
+  ProcessHandler processHandler;
+  Downloader downloader;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    URL testZipFile = getClass().getClassLoader().getResource("test-chromedriver.zip");
+    if (testZipFile == null) {
+      throw new IllegalStateException("Test zip file not found in resources");
+    }
+
+    processHandler = Mockito.mock(ProcessHandler.class);
+    Mockito.when(processHandler.getOutput(Mockito.any(), Mockito.anyLong()))
+        .thenAnswer(invocation -> {
+          final ProcessBuilder builder = invocation.getArgument(0);
+          final String command = builder.command().get(0);
+          if (command.contains("chrome-")) {
+            return "Google Chrome 123.456.7890.12";
+          }
+          if (command.contains("stale-driver")) {
+            return "ChromeDriver 122.0.0.1 (randomsha)";
+          }
+          return "ChromeDriver 123.456.7890.12 (randomsha)";
+        });
+
+    downloader = Mockito.mock(Downloader.class);
+    Mockito.when(downloader.downloadDigested(Mockito.any(), Mockito.any())).thenCallRealMethod();
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any()))
+        .thenAnswer(invocation -> {
+          final File destination = invocation.getArgument(1);
+          Files.copy(Path.of(testZipFile.toURI()), destination.toPath());
+          return destination;
+        });
+  }
+
+  @Test
+  void checkManifestIsParsed() throws IOException {
+    final Path manifest = tmpDir.resolve("manifest.txt");
+    Files.writeString(manifest, """
+        # comment
+        /opt/chrome-1/chrome, /opt/drivers/chromedriver-1
+
+        /opt/chrome-2/chrome,/opt/drivers/chromedriver-2
+        """);
+
+    final List<Fleet.Pair> pairs = Fleet.readManifest(manifest);
+
+    Assertions.assertEquals(List.of(
+        new Fleet.Pair("/opt/chrome-1/chrome", "/opt/drivers/chromedriver-1"),
+        new Fleet.Pair("/opt/chrome-2/chrome", "/opt/drivers/chromedriver-2")
+    ), pairs);
+  }
+
+  @Test
+  void checkMalformedManifestLineIsRejected() throws IOException {
+    final Path manifest = tmpDir.resolve("manifest.txt");
+    Files.writeString(manifest, "/opt/chrome/chrome\n");
+
+    final IllegalArgumentException ex = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> Fleet.readManifest(manifest));
+    Assertions.assertTrue(ex.getMessage().contains("line 1"));
+  }
+
+  @Test
+  void checkPairsNeedingTheSameVersionShareOneDownload() throws Exception {
+    final List<Fleet.Pair> pairs = List.of(
+        pair("chrome-1", "stale-driver-1"),
+        pair("chrome-2", "stale-driver-2"),
+        pair("chrome-3", "stale-driver-3"),
+        pair("chrome-4", "current-driver")
+    );
+
+    final Fleet fleet = new Fleet(Os.LINUX, processHandler, downloader, cache(),
+        versionCache(), driverIndex(), Fleet.Options.defaults().withMaxDownloads(2));
+    final List<Fleet.Result> results = fleet.run(pairs);
+
+    Assertions.assertEquals(List.of(Fleet.Status.UPDATED, Fleet.Status.UPDATED,
+            Fleet.Status.UPDATED, Fleet.Status.UP_TO_DATE),
+        results.stream().map(Fleet.Result::status).toList());
+    Mockito.verify(downloader, Mockito.times(1)).download(Mockito.any(), Mockito.any());
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertNotEquals("mocked content",
+          Files.readString(Path.of(pairs.get(i).chromedriverLocation())));
+    }
+    Assertions.assertEquals("mocked content",
+        Files.readString(Path.of(pairs.get(3).chromedriverLocation())));
+  }
+
+  @Test
+  void checkFailuresAreReportedPerPair() {
+    final Fleet fleet = new Fleet(Os.LINUX, processHandler, downloader, cache(),
+        versionCache(), driverIndex(), Fleet.Options.defaults().withMaxDownloads(1));
+    final List<Fleet.Result> results = fleet.run(
+        List.of(new Fleet.Pair("missing-chrome-location", "missing-driver-location")));
+
+    Assertions.assertEquals(Fleet.Status.FAILED, results.get(0).status());
+    Assertions.assertTrue(results.get(0).detail().contains("File does not exist"));
+  }
+
+  private DownloadCache cache() {
+    return new DownloadCache(tmpDir.resolve("versions").toFile(),
+        DownloadCache.DEFAULT_QUOTA_IN_BYTES);
+  }
+
+  private DriverIndex driverIndex() {
+    return new DriverIndex(tmpDir.resolve("versions").toFile(), downloader);
+  }
+
+  private VersionCache versionCache() {
+    return new VersionCache(tmpDir.resolve("versions").resolve(VersionCache.INDEX_FILE).toFile());
+  }
+
+  private Fleet.Pair pair(final String chrome, final String chromedriver) throws IOException {
+    final Path chromeFile = Files.writeString(tmpDir.resolve(chrome), "chrome");
+    final Path chromedriverFile = Files.writeString(tmpDir.resolve(chromedriver),
+        "mocked content");
+    return new Fleet.Pair(chromeFile.toString(), chromedriverFile.toString());
+  }
+}
@@ -0,0 +1,172 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.Checksums;
+import com.dieg0407.utils.chromedriver.model.DownloadCache;
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.Os;
+import com.dieg0407.utils.chromedriver.model.ProcessHandler;
+import com.dieg0407.utils.chromedriver.model.Version;
+import com.dieg0407.utils.chromedriver.model.VersionProbe;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+class MirrorTest {
+
+  static final Version VERSION = new Version(123, 456, 7890, 12);
+  static final String ARCHIVE_PATH = "/123.456.7890.12/linux64/chromedriver-linux64.zip";
+
+  @TempDir
+  Path tmpDir;
+
+  HttpServer upstream;
+  AtomicInteger upstreamRequests;
+  byte[] zip;
+  Mirror mirror;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    zip = Files.readAllBytes(Path.of(getClass().getClassLoader()
+        .getResource("test-chromedriver.zip").toURI()));
+    upstreamRequests = new AtomicInteger();
+
+    // a host without range support, so every download is exactly one request
+    upstream = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    upstream.createContext("/", this::serveUpstream);
+    upstream.start();
+
+    mirror = new Mirror(new DownloadCache(tmpDir.resolve("mirror").toFile(),
+        DownloadCache.DEFAULT_QUOTA_IN_BYTES), new Downloader.DownloaderImpl(), Checksums.none(),
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), upstreamBase());
+    mirror.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    mirror.close();
+    upstream.stop(0);
+  }
+
+  @Test
+  void checkInstancesShareOneUpstreamDownload() throws Exception {
+    for (String name : new String[]{"first", "second", "third"}) {
+      try (Downloader downloader = new Downloader.MirrorDownloader(
+          new Downloader.DownloaderImpl(2, 100), upstreamBase(), mirror.getBaseUri().toString())) {
+        final Chromedriver chromedriver = chromedriver(name, downloader);
+        chromedriver.updateTo(upstreamDownload(), Chromedriver.ExtractionMode.KEEP_ZIP);
+
+        Assertions.assertEquals(List.of(VERSION), chromedriver.getInstalledVersions());
+      }
+    }
+
+    Assertions.assertEquals(1, upstreamRequests.get(), "only the mirror reached the upstream");
+  }
+
+  @Test
+  void checkRangesAreServed() throws Exception {
+    final URI archive = URI.create(mirror.getBaseUri() + ARCHIVE_PATH);
+
+    try (HttpClient client = HttpClient.newHttpClient()) {
+      final HttpResponse<byte[]> whole = client.send(HttpRequest.newBuilder(archive).build(),
+          HttpResponse.BodyHandlers.ofByteArray());
+      Assertions.assertEquals(200, whole.statusCode());
+      Assertions.assertArrayEquals(zip, whole.body());
+      final String etag = whole.headers().firstValue("ETag").orElseThrow();
+
+      final HttpResponse<byte[]> range = client.send(HttpRequest.newBuilder(archive)
+          .header("Range", "bytes=10-19").header("If-Range", etag).build(),
+          HttpResponse.BodyHandlers.ofByteArray());
+      Assertions.assertEquals(206, range.statusCode());
+      Assertions.assertEquals("bytes 10-19/" + zip.length,
+          range.headers().firstValue("Content-Range").orElseThrow());
+      Assertions.assertArrayEquals(Arrays.copyOfRange(zip, 10, 20), range.body());
+
+      final HttpResponse<byte[]> suffix = client.send(HttpRequest.newBuilder(archive)
+          .header("Range", "bytes=-5").build(), HttpResponse.BodyHandlers.ofByteArray());
+      Assertions.assertArrayEquals(Arrays.copyOfRange(zip, zip.length - 5, zip.length),
+          suffix.body());
+
+      final HttpResponse<byte[]> changed = client.send(HttpRequest.newBuilder(archive)
+          .header("Range", "bytes=10-19").header("If-Range", "\"other\"").build(),
+          HttpResponse.BodyHandlers.ofByteArray());
+      Assertions.assertEquals(200, changed.statusCode(), "a stale validator gets the whole file");
+
+      final HttpResponse<byte[]> unsatisfiable = client.send(HttpRequest.newBuilder(archive)
+          .header("Range", "bytes=" + zip.length + "-").build(),
+          HttpResponse.BodyHandlers.ofByteArray());
+      Assertions.assertEquals(416, unsatisfiable.statusCode());
+
+      final HttpResponse<byte[]> unknown = client.send(HttpRequest.newBuilder(
+              URI.create(mirror.getBaseUri() + "/known-good-versions.json")).build(),
+          HttpResponse.BodyHandlers.ofByteArray());
+      Assertions.assertEquals(404, unknown.statusCode());
+    }
+    Assertions.assertEquals(1, upstreamRequests.get());
+  }
+
+  @Test
+  void checkUnreachableMirrorFallsBackToUpstream() throws Exception {
+    final String unreachable = mirror.getBaseUri().toString();
+    mirror.close();
+
+    try (Downloader downloader = new Downloader.MirrorDownloader(new Downloader.DownloaderImpl(),
+        upstreamBase(), unreachable)) {
+      chromedriver("fallback", downloader).updateTo(upstreamDownload(),
+          Chromedriver.ExtractionMode.STREAMING);
+    }
+
+    Assertions.assertEquals(1, upstreamRequests.get());
+  }
+
+  private Chromedriver chromedriver(final String name, final Downloader downloader)
+      throws IOException {
+    final Path folder = Files.createDirectories(tmpDir.resolve(name));
+    final File location = Files.writeString(folder.resolve("chromedriver"), "old").toFile();
+    return new Chromedriver(location.getAbsolutePath(), Os.LINUX,
+        Mockito.mock(ProcessHandler.class), downloader, Chromedriver.Options.defaults()
+            .withCache(new DownloadCache(folder.resolve("versions").toFile(),
+                DownloadCache.DEFAULT_QUOTA_IN_BYTES))
+            .withVersionProbe(VersionProbe.none()));
+  }
+
+  private DriverIndex.Entry upstreamDownload() {
+    return new DriverIndex.Entry(VERSION, "linux64", URI.create(upstreamBase() + ARCHIVE_PATH));
+  }
+
+  private String upstreamBase() {
+    return "http://localhost:" + upstream.getAddress().getPort() + "/chrome-for-testing-public";
+  }
+
+  private void serveUpstream(final HttpExchange exchange) throws IOException {
+    try (exchange; OutputStream body = exchange.getResponseBody()) {
+      if (!exchange.getRequestURI().getPath().equals("/chrome-for-testing-public"
+          + ARCHIVE_PATH)) {
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+      upstreamRequests.incrementAndGet();
+      exchange.sendResponseHeaders(200, zip.length);
+      body.write(zip);
+    }
+  }
+}
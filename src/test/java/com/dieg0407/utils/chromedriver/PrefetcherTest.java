@@ -0,0 +1,115 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.DownloadCache;
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.Os;
+import com.dieg0407.utils.chromedriver.model.ProcessHandler;
+import com.dieg0407.utils.chromedriver.model.ReleaseChannels;
+import com.dieg0407.utils.chromedriver.model.Version;
+import com.dieg0407.utils.chromedriver.model.VersionProbe;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+class PrefetcherTest {
+
+  static final String LISTING = """
+      {"timestamp":"2025-06-01T00:00:00.000Z","channels":{
+      "Stable":{"channel":"Stable","version":"124.0.6367.60","revision":"1274542"},
+      "Beta":{"channel":"Beta","version":"125.0.6422.4","revision":"1287751"}}}
+      """;
+
+  @TempDir
+  Path tmpDir;
+
+  Downloader downloader;
+  DriverIndex index;
+  Path chromeFolder;
+  Chromedriver chromedriver;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    downloader = Mockito.mock(Downloader.class);
+    Mockito.when(downloader.downloadDigested(Mockito.any(), Mockito.any())).thenCallRealMethod();
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+      final File destination = invocation.getArgument(1);
+      Files.copy(Path.of(getClass().getClassLoader().getResource("test-chromedriver.zip").toURI()),
+          destination.toPath());
+      return destination;
+    });
+    Mockito.when(downloader.downloadIfModified(Mockito.any(), Mockito.any()))
+        .thenAnswer(invocation -> {
+          Files.writeString(invocation.<File>getArgument(1).toPath(), LISTING);
+          return true;
+        });
+    // no build is indexed, the builds named after the Chrome versions are used
+    index = Mockito.mock(DriverIndex.class);
+    Mockito.when(index.nearest(Mockito.any(), Mockito.any())).thenReturn(Optional.empty());
+
+    chromeFolder = Files.createDirectories(tmpDir.resolve("chrome"));
+    Files.createDirectories(chromeFolder.resolve("123.0.6312.122"));
+    final File location = Files.writeString(tmpDir.resolve("chromedriver"), "old").toFile();
+    chromedriver = new Chromedriver(location.getAbsolutePath(), Os.LINUX,
+        Mockito.mock(ProcessHandler.class), downloader,
+        Chromedriver.Options.defaults().withCache(cache()).withVersionProbe(VersionProbe.none()));
+  }
+
+  @Test
+  void checkReleasedVersionIsPrefetchedIntoTheCache() throws Exception {
+    final Optional<DriverIndex.Entry> prefetched = prefetcher("Stable").prefetch();
+
+    final Version upcoming = Version.fromRawVersion("124.0.6367.60");
+    Assertions.assertEquals(Optional.of(upcoming), prefetched.map(DriverIndex.Entry::version));
+    Assertions.assertTrue(cache().get(upcoming, "linux64").isPresent());
+    Assertions.assertEquals("old", Files.readString(chromedriver.getLocation().toPath()),
+        "prefetching doesn't install anything");
+
+    // once Chrome is updated, the update only extracts and switches
+    chromedriver.updateTo(upcoming);
+    Mockito.verify(downloader, Mockito.times(1)).download(Mockito.any(), Mockito.any());
+    Assertions.assertEquals(List.of(upcoming), chromedriver.getInstalledVersions());
+  }
+
+  @Test
+  void checkStagedVersionComesBeforeTheChannel() throws Exception {
+    Files.createDirectories(chromeFolder.resolve("124.0.6367.91"));
+    Files.writeString(chromeFolder.resolve(Chrome.WINDOWS_STAGED_EXECUTABLE), "");
+
+    Assertions.assertEquals(Optional.of(Version.fromRawVersion("124.0.6367.91")),
+        prefetcher("Beta").upcomingVersion());
+    Mockito.verify(downloader, Mockito.never()).downloadIfModified(Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  void checkNothingIsPrefetchedWithoutANewerVersion() throws Exception {
+    Files.createDirectories(chromeFolder.resolve("125.0.6422.4"));
+
+    Assertions.assertEquals(Optional.empty(), prefetcher("Stable").prefetch());
+    Assertions.assertEquals(Optional.empty(), prefetcher("Dev").prefetch(),
+        "a channel missing from the listing");
+    Mockito.verify(downloader, Mockito.never()).download(Mockito.any(), Mockito.any());
+  }
+
+  private Prefetcher prefetcher(final String channel) throws IOException {
+    final File chromeLocation = Files.writeString(chromeFolder.resolve("chrome.exe"), "")
+        .toFile();
+    final Chrome chrome = new Chrome(chromeLocation.getAbsolutePath(), Os.WINDOWS,
+        Mockito.mock(ProcessHandler.class));
+    return new Prefetcher(chrome, chromedriver, index,
+        new ReleaseChannels(tmpDir.resolve("versions").toFile(), downloader), channel);
+  }
+
+  private DownloadCache cache() {
+    return new DownloadCache(tmpDir.resolve("versions").toFile(),
+        DownloadCache.DEFAULT_QUOTA_IN_BYTES);
+  }
+}
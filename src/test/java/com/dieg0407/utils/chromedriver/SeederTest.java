@@ -0,0 +1,162 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.Bandwidth;
+import com.dieg0407.utils.chromedriver.model.Checksums;
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.Version;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SeederTest {
+
+  @TempDir
+  Path tmpDir;
+
+  HttpServer server;
+  AtomicInteger archiveRequests;
+  byte[] zip;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    zip = Files.readAllBytes(Path.of(getClass().getClassLoader()
+        .getResource("test-chromedriver.zip").toURI()));
+    archiveRequests = new AtomicInteger();
+
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.createContext("/", this::serve);
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  void checkRangesArePadded() {
+    Assertions.assertEquals(new Seeder.Range(Version.fromRawVersion("124.0.0.0"),
+            Version.fromRawVersion("126.65535.65535.65535")),
+        Seeder.Range.parse("124..126"));
+    Assertions.assertEquals(new Seeder.Range(Version.fromRawVersion("125.0.6422.4"),
+            Version.fromRawVersion("125.0.6422.4")),
+        Seeder.Range.parse("125.0.6422.4"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Seeder.Range.parse("126..124"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Seeder.Range.parse("1..2..3"));
+  }
+
+  @Test
+  void checkEveryCombinationIsStoredOnce() throws Exception {
+    final Path store = tmpDir.resolve("store");
+
+    final Seeder.Summary first = seed(store, "124..125", List.of("linux64", "mac-x64",
+        "linux-arm64"));
+
+    Assertions.assertEquals(3, first.count(Seeder.Status.DOWNLOADED));
+    Assertions.assertEquals(3L * zip.length, first.downloadedBytes());
+    Assertions.assertEquals(List.of("linux-arm64"), first.unpublished());
+    Assertions.assertArrayEquals(zip, Files.readAllBytes(
+        store.resolve("124.0.6367.60/mac-x64/chromedriver-mac-x64.zip")));
+    final String sha256 = Checksums.sha256Of(
+        store.resolve("125.0.6422.4/linux64/chromedriver-linux64.zip"));
+    Assertions.assertEquals(List.of(
+            sha256 + "  124.0.6367.60/linux64/chromedriver-linux64.zip",
+            sha256 + "  124.0.6367.60/mac-x64/chromedriver-mac-x64.zip",
+            sha256 + "  125.0.6422.4/linux64/chromedriver-linux64.zip"),
+        Files.readAllLines(store.resolve(Seeder.CHECKSUMS_FILE)));
+
+    // the manifest is accepted as checksums and the stored archives aren't downloaded again
+    final Seeder.Summary second = seed(store, "124..126", List.of("linux64"),
+        Checksums.load(store.resolve(Seeder.CHECKSUMS_FILE).toFile()));
+    Assertions.assertEquals(2, second.count(Seeder.Status.STORED_BEFORE));
+    Assertions.assertEquals(1, second.count(Seeder.Status.DOWNLOADED), "126 is new");
+    Assertions.assertEquals(4, archiveRequests.get());
+  }
+
+  @Test
+  void checkMismatchingArchiveIsNotStored() throws Exception {
+    final Path manifest = Files.writeString(tmpDir.resolve("checksums"),
+        "a".repeat(64) + "  124.0.6367.60/linux64/chromedriver-linux64.zip\n");
+    final Path store = tmpDir.resolve("store");
+
+    final Seeder.Summary summary = seed(store, "124", List.of("linux64"),
+        Checksums.load(manifest.toFile()));
+
+    Assertions.assertEquals(1, summary.count(Seeder.Status.FAILED));
+    Assertions.assertFalse(Files.exists(store.resolve("124.0.6367.60/linux64")
+        .resolve("chromedriver-linux64.zip")));
+    Assertions.assertEquals("", Files.readString(store.resolve(Seeder.CHECKSUMS_FILE)));
+  }
+
+  private Seeder.Summary seed(final Path store, final String range, final List<String> platforms)
+      throws Exception {
+    return seed(store, range, platforms, Checksums.none());
+  }
+
+  private Seeder.Summary seed(final Path store, final String range, final List<String> platforms,
+      final Checksums checksums) throws Exception {
+    try (Downloader downloader = new Downloader.DownloaderImpl(2, 1024, 4,
+        Bandwidth.unlimited())) {
+      final DriverIndex index = new DriverIndex(store.resolve(Seeder.INDEX_FOLDER).toFile(),
+          downloader, URI.create(base() + "/known-good-versions-with-downloads.json"));
+      return new Seeder(index, downloader, checksums, store.toFile(), 2)
+          .seed(Seeder.Range.parse(range), platforms);
+    }
+  }
+
+  private String base() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  private String knownVersions() {
+    final StringBuilder versions = new StringBuilder("{\"versions\":[");
+    final String[][] builds = {{"124.0.6367.60", "linux64", "mac-x64"}, {"125.0.6422.4", "linux64"},
+        {"126.0.6478.55", "linux64"}};
+    for (int i = 0; i < builds.length; i++) {
+      versions.append(i == 0 ? "" : ",").append("{\"version\":\"").append(builds[i][0])
+          .append("\",\"downloads\":{\"chromedriver\":[");
+      for (int j = 1; j < builds[i].length; j++) {
+        versions.append(j == 1 ? "" : ",").append(String.format(
+            "{\"platform\":\"%s\",\"url\":\"%s/%s/%s/chromedriver-%s.zip\"}", builds[i][j], base(),
+            builds[i][0], builds[i][j], builds[i][j]));
+      }
+      versions.append("]}}");
+    }
+    return versions.append("]}").toString();
+  }
+
+  private void serve(final HttpExchange exchange) throws IOException {
+    try (exchange; OutputStream body = exchange.getResponseBody()) {
+      final String path = exchange.getRequestURI().getPath();
+      final byte[] content;
+      if (path.endsWith(".json")) {
+        content = knownVersions().getBytes(StandardCharsets.UTF_8);
+      } else if (path.endsWith(".zip")) {
+        archiveRequests.incrementAndGet();
+        content = zip;
+      } else {
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+      exchange.sendResponseHeaders(200, content.length);
+      body.write(content);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.dieg0407.utils.chromedriver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cold start of the shaded jar: every run is a fresh JVM executing {@code App.main}
+ * end to end on the {@link StartupFixtures}, a Chrome and ChromeDriver that are up to date. So it
+ * includes class loading, picocli's reflection, the version probes and the index lookup, but no
+ * network. When a CDS archive is given the runs are repeated with it to compare both.
+ * <p>
+ * It's not a test, run it with {@code mvn -Pstartup-benchmark verify} or directly with
+ * {@code java -cp target/test-classes:target/classes
+ * com.dieg0407.utils.chromedriver.StartupBenchmark <jar> [archive] [runs]}.
+ */
+public class StartupBenchmark {
+
+  private static final int DEFAULT_RUNS = 10;
+  private static final int WARMUP_RUNS = 2;
+
+  public static void main(final String... args) throws IOException, InterruptedException {
+    if (args.length < 1) {
+      System.err.println("Usage: StartupBenchmark <jar> [cds-archive] [runs]");
+      System.exit(2);
+    }
+
+    final File jar = new File(args[0]);
+    final File archive = args.length > 1 ? new File(args[1]) : null;
+    final int runs = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RUNS;
+    final File fixtures = Files.createTempDirectory("startup-fixtures").toFile();
+
+    StartupFixtures.write(fixtures);
+    report("default", measure(command(jar, null, fixtures), runs));
+    if (archive != null && archive.isFile()) {
+      StartupFixtures.write(fixtures);
+      report("cds", measure(command(jar, archive, fixtures), runs));
+    } else if (archive != null) {
+      System.out.printf("No CDS archive at %s, build it with -Pcds\n", archive);
+    }
+  }
+
+  private static List<String> command(final File jar, final File archive, final File fixtures) {
+    final List<String> command = new ArrayList<>();
+    command.add(new File(System.getProperty("java.home"), "bin/java").getAbsolutePath());
+    if (archive != null) {
+      command.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+    }
+    command.add("-jar");
+    command.add(jar.getAbsolutePath());
+    command.add("-c");
+    command.add(new File(fixtures, "chrome").getAbsolutePath());
+    command.add("-d");
+    command.add(new File(fixtures, "chromedriver").getAbsolutePath());
+    return command;
+  }
+
+  private static long[] measure(final List<String> command, final int runs)
+      throws IOException, InterruptedException {
+    // the first runs pay for the page cache and probe the versions, later runs read them cached
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      run(command);
+    }
+
+    final long[] timings = new long[runs];
+    for (int i = 0; i < runs; i++) {
+      timings[i] = run(command);
+    }
+    Arrays.sort(timings);
+    return timings;
+  }
+
+  private static long run(final List<String> command) throws IOException, InterruptedException {
+    final long start = System.nanoTime();
+    final Process process = new ProcessBuilder(command)
+        .redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+        .start();
+    if (process.waitFor() != 0) {
+      throw new IllegalStateException("Command failed: " + String.join(" ", command));
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static void report(final String name, final long[] timings) {
+    System.out.printf("%-8s runs=%d min=%dms median=%dms p90=%dms\n", name, timings.length,
+        millis(timings[0]), millis(timings[timings.length / 2]),
+        millis(timings[(int) Math.ceil(timings.length * 0.9) - 1]));
+  }
+
+  private static long millis(final long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
@@ -0,0 +1,107 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes a Chrome and a ChromeDriver of the same version that only answer {@code --version}, next
+ * to a driver index that already knows that version. Running the jar on them with
+ * {@code -c <folder>/chrome -d <folder>/chromedriver} takes the path of a real run that finds
+ * ChromeDriver up to date, without touching the network. The executables are shell scripts, so
+ * the fixtures need a POSIX shell.
+ * <p>
+ * Used to train the CDS archive and by {@link StartupBenchmark}, run it with
+ * {@code java -cp target/test-classes:target/classes
+ * com.dieg0407.utils.chromedriver.StartupFixtures <folder>}.
+ */
+public class StartupFixtures {
+
+  static final String VERSION = "124.0.6367.60";
+  private static final List<String> PLATFORMS = List.of("linux64", "mac-arm64", "mac-x64",
+      "win32", "win64");
+
+  public static void main(final String... args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: StartupFixtures <folder>");
+      System.exit(2);
+    }
+
+    write(new File(args[0]));
+  }
+
+  /**
+   * Writes the fixtures in the given folder, replacing the ones written before so every run
+   * starts from a versions folder without cached versions.
+   *
+   * @param folder the folder of the fixtures
+   * @throws IOException if the fixtures can't be written
+   */
+  static void write(final File folder) throws IOException {
+    assert folder != null : "Folder cannot be null";
+
+    if (!folder.exists() && !folder.mkdirs()) {
+      throw new IOException("Failed to create fixtures folder: " + folder.getAbsolutePath());
+    }
+
+    final File versionsFolder = new File(folder, Chromedriver.VERSIONS_FOLDER);
+    if (versionsFolder.exists()) {
+      try (Stream<Path> paths = Files.walk(versionsFolder.toPath())) {
+        for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+          Files.delete(path);
+        }
+      }
+    }
+    executable(new File(folder, "chrome"), "Google Chrome " + VERSION);
+    executable(new File(folder, "chromedriver"),
+        "ChromeDriver " + VERSION + " (refs/branch-heads/6367@{#886})");
+
+    final String knownVersions = PLATFORMS.stream()
+        .map(platform -> String.format("{\"platform\":\"%s\",\"url\":\"https://example.com/%s/"
+            + "%s/chromedriver-%s.zip\"}", platform, VERSION, platform, platform))
+        .collect(Collectors.joining(",",
+            "{\"versions\":[{\"version\":\"" + VERSION + "\",\"downloads\":{\"chromedriver\":[",
+            "]}}]}"));
+    new DriverIndex(versionsFolder, new Offline(knownVersions)).refresh();
+  }
+
+  private static void executable(final File file, final String version) throws IOException {
+    Files.writeString(file.toPath(), "#!/bin/sh\necho '" + version + "'\n");
+    if (!file.setExecutable(true)) {
+      throw new IOException("Could not make " + file.getAbsolutePath() + " executable");
+    }
+  }
+
+  // answers the refresh of the index with the given known versions
+  private record Offline(String knownVersions) implements Downloader {
+
+    @Override
+    public File download(final URI uri, final File destination) {
+      throw new UnsupportedOperationException("The fixtures don't download " + uri);
+    }
+
+    @Override
+    public InputStream open(final URI uri) {
+      throw new UnsupportedOperationException("The fixtures don't download " + uri);
+    }
+
+    @Override
+    public boolean downloadIfModified(final URI uri, final File destination) {
+      try {
+        Files.writeString(destination.toPath(), knownVersions);
+        return true;
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to write " + destination.getAbsolutePath(), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package com.dieg0407.utils.chromedriver;
+
+import com.dieg0407.utils.chromedriver.model.DownloadCache;
+import com.dieg0407.utils.chromedriver.model.Downloader;
+import com.dieg0407.utils.chromedriver.model.DriverIndex;
+import com.dieg0407.utils.chromedriver.model.Os;
+import com.dieg0407.utils.chromedriver.model.ProcessHandler;
+import com.dieg0407.utils.chromedriver.model.Version;
+import com.dieg0407.utils.chromedriver.model.VersionProbe;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+class UpdatePipelineTest {
+
+  static final Version CHROME_VERSION = Version.fromRawVersion("124.0.6367.60");
+
+  @TempDir
+  Path tmpDir;
+
+  Chrome chrome;
+  Downloader downloader;
+  DriverIndex index;
+  ProcessHandler processHandler;
+  Chromedriver chromedriver;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    chrome = Mockito.mock(Chrome.class);
+    Mockito.when(chrome.getVersion()).thenReturn(CHROME_VERSION);
+    downloader = Mockito.mock(Downloader.class);
+    // no build is indexed, the build named after the Chrome version is used
+    index = Mockito.mock(DriverIndex.class);
+    Mockito.when(index.nearest(Mockito.any(), Mockito.any())).thenReturn(Optional.empty());
+    processHandler = Mockito.mock(ProcessHandler.class);
+
+    final Path location = Files.writeString(tmpDir.resolve("chromedriver"), "old");
+    chromedriver = new Chromedriver(location.toString(), Os.LINUX, processHandler, downloader,
+        Chromedriver.Options.defaults().withCache(cache()).withVersionProbe(VersionProbe.none()));
+  }
+
+  @Test
+  void checkOutdatedChromedriverIsUpdated() throws Exception {
+    final byte[] zip = Files.readAllBytes(Path.of(getClass().getClassLoader()
+        .getResource("test-chromedriver.zip").toURI()));
+    Mockito.when(downloader.open(Mockito.any()))
+        .thenAnswer(invocation -> new ByteArrayInputStream(zip));
+    Mockito.when(processHandler.getOutput(Mockito.any(), Mockito.anyLong()))
+        .thenReturn("ChromeDriver 123.0.6312.122 (sha)");
+
+    final UpdatePipeline.Result result = pipeline().run();
+
+    Assertions.assertEquals(UpdatePipeline.Status.UPDATED, result.status());
+    Assertions.assertEquals(CHROME_VERSION, result.installed());
+    Assertions.assertEquals(List.of(CHROME_VERSION), chromedriver.getInstalledVersions());
+    Assertions.assertTrue(cache().get(CHROME_VERSION, "linux64").isPresent(),
+        "the zip is cached while it's extracted");
+    Assertions.assertEquals(zip.length, Files.size(cache().get(CHROME_VERSION, "linux64")
+        .orElseThrow().toPath()));
+    try (var files = Files.list(cache().getFolder().toPath())) {
+      Assertions.assertTrue(files.noneMatch(file -> file.getFileName().toString()
+          .startsWith("chromedriver-124.0.6367.60.linux64.")), "nothing extracted is left");
+    }
+  }
+
+  @Test
+  void checkUpToDatePairTouchesNeitherTheIndexNorTheNetwork() throws Exception {
+    // Chrome is known long before ChromeDriver
+    Mockito.when(processHandler.getOutput(Mockito.any(), Mockito.anyLong()))
+        .thenAnswer(invocation -> {
+          Thread.sleep(200);
+          return "ChromeDriver 124.0.6367.60 (sha)";
+        });
+
+    final UpdatePipeline.Result result = pipeline().run();
+
+    Assertions.assertEquals(UpdatePipeline.Status.UP_TO_DATE, result.status());
+    Mockito.verifyNoInteractions(index, downloader);
+    Assertions.assertEquals("old", Files.readString(chromedriver.getLocation().toPath()));
+    Assertions.assertTrue(cache().entries().isEmpty());
+  }
+
+  @Test
+  void checkKeptZipIsDownloadedThroughTheResumableDownload() throws Exception {
+    final Path zip = Path.of(getClass().getClassLoader()
+        .getResource("test-chromedriver.zip").toURI());
+    Mockito.when(downloader.downloadDigested(Mockito.any(), Mockito.any())).thenCallRealMethod();
+    Mockito.when(downloader.download(Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+      final File destination = invocation.getArgument(1);
+      Files.copy(zip, destination.toPath());
+      return destination;
+    });
+    Mockito.when(processHandler.getOutput(Mockito.any(), Mockito.anyLong()))
+        .thenReturn("ChromeDriver 123.0.6312.122 (sha)");
+
+    final UpdatePipeline.Result result = new UpdatePipeline(chrome, chromedriver, index,
+        Chromedriver.ExtractionMode.KEEP_ZIP, Version.Compatibility.MAJOR_MINOR).run();
+
+    Assertions.assertEquals(UpdatePipeline.Status.UPDATED, result.status());
+    Assertions.assertEquals(List.of(CHROME_VERSION), chromedriver.getInstalledVersions());
+    Mockito.verify(downloader, Mockito.never()).open(Mockito.any());
+  }
+
+  @Test
+  void checkNewerChromedriverIsKept() throws Exception {
+    Mockito.when(processHandler.getOutput(Mockito.any(), Mockito.anyLong()))
+        .thenReturn("ChromeDriver 125.0.6422.60 (sha)");
+
+    final UpdatePipeline.Result result = pipeline().run();
+
+    Assertions.assertEquals(UpdatePipeline.Status.UP_TO_DATE, result.status());
+    Assertions.assertEquals(Version.fromRawVersion("125.0.6422.60"), result.installed());
+    Assertions.assertEquals("old", Files.readString(chromedriver.getLocation().toPath()));
+  }
+
+  private UpdatePipeline pipeline() {
+    return new UpdatePipeline(chrome, chromedriver, index,
+        Chromedriver.ExtractionMode.PIPELINED, Version.Compatibility.MAJOR_MINOR);
+  }
+
+  private DownloadCache cache() {
+    return new DownloadCache(tmpDir.resolve("versions").toFile(),
+        DownloadCache.DEFAULT_QUOTA_IN_BYTES);
+  }
+}
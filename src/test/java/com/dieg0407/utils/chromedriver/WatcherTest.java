@@ -0,0 +1,85 @@
+package com.dieg0407.utils.chromedriver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WatcherTest {
+
+  @TempDir
+  Path tmpDir;
+
+  Path chromeLocation;
+  Semaphore updates;
+  Thread thread;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    chromeLocation = Files.writeString(tmpDir.resolve("chrome"), "chrome");
+    updates = new Semaphore(0);
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    if (thread != null) {
+      thread.interrupt();
+      thread.join();
+    }
+  }
+
+  @Test
+  void checkUpdateRunsOnStartup() throws InterruptedException {
+    start(Duration.ofHours(1));
+
+    Assertions.assertTrue(updates.tryAcquire(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void checkNewVersionFolderTriggersAnUpdate() throws Exception {
+    start(Duration.ofHours(1));
+    Assertions.assertTrue(updates.tryAcquire(5, TimeUnit.SECONDS));
+
+    Files.createDirectory(tmpDir.resolve("124.0.6367.60"));
+
+    Assertions.assertTrue(updates.tryAcquire(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void checkUnrelatedFilesAreIgnored() throws Exception {
+    start(Duration.ofHours(1));
+    Assertions.assertTrue(updates.tryAcquire(5, TimeUnit.SECONDS));
+
+    Files.writeString(tmpDir.resolve("notes.txt"), "unrelated");
+
+    Assertions.assertFalse(updates.tryAcquire(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void checkFallbackRunsWithoutChanges() throws InterruptedException {
+    start(Duration.ofMillis(200));
+
+    Assertions.assertTrue(updates.tryAcquire(3, 5, TimeUnit.SECONDS));
+  }
+
+  private void start(final Duration interval) {
+    final Watcher watcher = new Watcher(List.of(chromeLocation), updates::release, interval,
+        Duration.ofMillis(100), new Random(42));
+    thread = Thread.ofVirtual().start(() -> {
+      try {
+        watcher.run();
+      } catch (IOException | InterruptedException e) {
+        // stopped by the test
+      }
+    });
+  }
+}
@@ -0,0 +1,60 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryStoreTest {
+
+  @TempDir
+  Path tmpDir;
+
+  @Test
+  void checkInstallationsAreLinkedToTheCanonicalExecutable() throws Exception {
+    final BinaryStore store = new BinaryStore(tmpDir.resolve("store").toFile());
+    final Version version = Version.fromRawVersion("124.0.6367.60");
+    final Path extracted = Files.writeString(tmpDir.resolve("extracted"), "driver");
+
+    Assertions.assertEquals(BinaryStore.Method.HARDLINK,
+        store.materialize(extracted, version, tmpDir.resolve("first")));
+    // a later installation doesn't read the extracted file again
+    Files.writeString(extracted, "another build");
+    Assertions.assertEquals(BinaryStore.Method.HARDLINK,
+        store.materialize(extracted, version, Files.writeString(tmpDir.resolve("second"), "old")));
+
+    Assertions.assertTrue(Files.isSameFile(tmpDir.resolve("first"), tmpDir.resolve("second")));
+    Assertions.assertEquals("driver", Files.readString(tmpDir.resolve("second")));
+    Assertions.assertEquals("driver", Files.readString(store.canonicalPath(version)));
+  }
+
+  @Test
+  void checkPrunedVersionsLeaveTheirInstallationsWorking() throws Exception {
+    final BinaryStore store = new BinaryStore(tmpDir.resolve("store").toFile());
+    final Version older = Version.fromRawVersion("123.0.6312.58");
+    final Version newer = Version.fromRawVersion("124.0.6367.60");
+    final Path extracted = Files.writeString(tmpDir.resolve("extracted"), "driver");
+    store.materialize(extracted, older, tmpDir.resolve("first"));
+    store.materialize(extracted, newer, tmpDir.resolve("second"));
+
+    Assertions.assertEquals(List.of(older), store.prune(1));
+
+    Assertions.assertFalse(Files.exists(store.canonicalPath(older).getParent()));
+    Assertions.assertTrue(Files.exists(store.canonicalPath(newer)));
+    Assertions.assertEquals("driver", Files.readString(tmpDir.resolve("first")));
+  }
+
+  @Test
+  void checkWithoutStoreEveryInstallationIsACopy() throws Exception {
+    final Path extracted = Files.writeString(tmpDir.resolve("extracted"), "driver");
+    final Path target = tmpDir.resolve("installed");
+
+    Assertions.assertEquals(BinaryStore.Method.COPY, BinaryStore.none()
+        .materialize(extracted, Version.fromRawVersion("124.0.6367.60"), target));
+
+    Assertions.assertFalse(Files.isSameFile(extracted, target));
+    Assertions.assertEquals("driver", Files.readString(target));
+  }
+}
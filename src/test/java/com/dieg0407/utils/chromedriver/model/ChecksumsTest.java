@@ -0,0 +1,71 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChecksumsTest {
+
+  static final String SHA_1 = "a".repeat(64);
+  static final String SHA_2 = "B".repeat(64);
+
+  @TempDir
+  Path tmpDir;
+
+  @Test
+  void checkPathsMatchTheEndOfTheUrl() throws IOException {
+    final Checksums checksums = load("""
+        # chrome for testing
+        %s  138.0.7204.49/linux64/chromedriver-linux64.zip
+        %s *138.0.7204.49/win64/chromedriver-win64.zip
+        """.formatted(SHA_1, SHA_2));
+
+    Assertions.assertEquals(Optional.of(SHA_1), checksums.expected(URI.create(
+        "https://storage.googleapis.com/chrome-for-testing-public/138.0.7204.49/linux64/chromedriver-linux64.zip")));
+    Assertions.assertEquals(Optional.of(SHA_2.toLowerCase()), checksums.expected(URI.create(
+        "https://mirror.local/138.0.7204.49/win64/chromedriver-win64.zip")));
+    Assertions.assertEquals(Optional.empty(), checksums.expected(URI.create(
+        "https://mirror.local/139.0.7258.5/linux64/chromedriver-linux64.zip")));
+    Assertions.assertEquals(Optional.empty(), checksums.expected(URI.create(
+        "https://mirror.local/x138.0.7204.49/linux64/chromedriver-linux64.zip")));
+  }
+
+  @Test
+  void checkMismatchIsRejected() throws IOException {
+    final Checksums checksums = load(SHA_1 + "  1.0.0.0/linux64/chromedriver-linux64.zip\n");
+    final URI listed = URI.create("https://example.com/1.0.0.0/linux64/chromedriver-linux64.zip");
+
+    Assertions.assertTrue(checksums.verify(listed, SHA_1.toUpperCase()));
+    Assertions.assertFalse(checksums.verify(URI.create("https://example.com/other.zip"), SHA_2));
+    final Checksums.MismatchException e = Assertions.assertThrows(
+        Checksums.MismatchException.class, () -> checksums.verify(listed, SHA_2));
+    Assertions.assertEquals(SHA_1, e.getExpected());
+    Assertions.assertEquals(SHA_2, e.getActual());
+  }
+
+  @Test
+  void checkMalformedLinesAreRejected() throws IOException {
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> load("not-a-digest  chromedriver-linux64.zip\n"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> load(SHA_1 + "\n"));
+  }
+
+  @Test
+  void checkSha256OfFile() throws IOException {
+    final Path file = Files.writeString(tmpDir.resolve("file"), "abc");
+
+    Assertions.assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+        Checksums.sha256Of(file));
+  }
+
+  private Checksums load(final String manifest) throws IOException {
+    final File file = Files.writeString(tmpDir.resolve("checksums.sha256"), manifest).toFile();
+    return Checksums.load(file);
+  }
+}
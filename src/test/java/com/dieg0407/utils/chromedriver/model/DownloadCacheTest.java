@@ -0,0 +1,107 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DownloadCacheTest {
+
+  @TempDir
+  Path tmpDir;
+
+  @Test
+  void checkMissIsEmpty() {
+    final DownloadCache cache = new DownloadCache(tmpDir.toFile(), 1024);
+
+    Assertions.assertEquals(Optional.empty(), cache.get(version(1), "linux64"));
+  }
+
+  @Test
+  void checkHitSurvivesANewInstance() throws IOException {
+    final DownloadCache cache = new DownloadCache(tmpDir.toFile(), 1024);
+    final File archive = cache.put(version(1), "linux64", download("first", 10));
+
+    final DownloadCache reopened = new DownloadCache(tmpDir.toFile(), 1024);
+    Assertions.assertEquals(Optional.of(archive), reopened.get(version(1), "linux64"));
+    Assertions.assertEquals(Optional.empty(), reopened.get(version(1), "win64"));
+  }
+
+  @Test
+  void checkIdenticalArchivesAreStoredOnce() throws IOException {
+    final DownloadCache cache = new DownloadCache(tmpDir.toFile(), 1024);
+    final File first = cache.put(version(1), "linux64", download("first", 10));
+    final File second = cache.put(version(2), "linux64", download("second", 10));
+
+    Assertions.assertEquals(first, second);
+    Assertions.assertEquals(2, cache.entries().size());
+  }
+
+  @Test
+  void checkLeastRecentlyUsedIsEvictedWhenOverQuota() throws IOException {
+    final DownloadCache cache = new DownloadCache(tmpDir.toFile(), 25);
+    final File first = cache.put(version(1), "linux64", download("first", 10));
+    cache.put(version(2), "linux64", download("second", 11));
+    // touching the first one makes the second one the least recently used
+    cache.get(version(1), "linux64");
+    cache.put(version(3), "linux64", download("third", 12));
+
+    Assertions.assertEquals(List.of(version(1), version(3)),
+        cache.entries().stream().map(DownloadCache.Entry::version).toList());
+    Assertions.assertTrue(first.exists());
+    Assertions.assertEquals(Optional.empty(), cache.get(version(2), "linux64"));
+  }
+
+  @Test
+  void checkInterruptedLockIsNotTakenAsMissingSupport() throws IOException {
+    final DownloadCache cache = new DownloadCache(tmpDir.toFile(), 1024);
+    final File download = download("first", 10);
+
+    Thread.currentThread().interrupt();
+    try {
+      Assertions.assertThrows(RuntimeException.class,
+          () -> cache.put(version(1), "linux64", download));
+    } finally {
+      Thread.interrupted();
+    }
+    Assertions.assertEquals(Optional.empty(), cache.get(version(1), "linux64"));
+  }
+
+  @Test
+  void checkRemovedArchiveIsAMiss() throws IOException {
+    final DownloadCache cache = new DownloadCache(tmpDir.toFile(), 1024);
+    final File archive = cache.put(version(1), "linux64", download("first", 10));
+    Files.delete(archive.toPath());
+
+    Assertions.assertEquals(Optional.empty(), cache.get(version(1), "linux64"));
+    Assertions.assertTrue(cache.entries().isEmpty());
+  }
+
+  @Test
+  void checkInstancesSharingTheFolderKeepEachOthersEntries() throws IOException {
+    final DownloadCache first = new DownloadCache(tmpDir.toFile(), 1024);
+    final DownloadCache second = new DownloadCache(tmpDir.toFile(), 1024);
+    // both read the index before either of them writes it
+    first.get(version(1), "linux64");
+    second.get(version(2), "linux64");
+
+    first.put(version(1), "linux64", download("first", 10));
+    second.put(version(2), "linux64", download("second", 11));
+
+    Assertions.assertEquals(2, new DownloadCache(tmpDir.toFile(), 1024).entries().size());
+    Assertions.assertTrue(first.get(version(2), "linux64").isPresent());
+  }
+
+  private File download(final String name, final int size) throws IOException {
+    return Files.writeString(tmpDir.resolve(name + ".zip"), "x".repeat(size)).toFile();
+  }
+
+  private static Version version(final int build) {
+    return new Version((short) 100, (short) 0, (short) 0, (short) build);
+  }
+}
@@ -0,0 +1,310 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DownloaderTest {
+
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+  private static final int SEGMENT_SIZE = 1000;
+
+  @TempDir
+  Path tmpDir;
+
+  HttpServer server;
+  byte[] content;
+  boolean supportsRanges;
+  boolean sendsValidators;
+  final List<String> ranges = new CopyOnWriteArrayList<>();
+  final Set<Long> failingOffsets = ConcurrentHashMap.newKeySet();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    content = new byte[10 * SEGMENT_SIZE + 123];
+    new Random(42).nextBytes(content);
+    supportsRanges = true;
+    sendsValidators = true;
+
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/chromedriver.zip", this::serve);
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  void checkSegmentedDownloadMatchesTheContent() throws IOException {
+    final File destination = tmpDir.resolve("chromedriver.zip").toFile();
+
+    try (Downloader downloader = new Downloader.DownloaderImpl(3, SEGMENT_SIZE)) {
+      downloader.download(uri(), destination);
+    }
+
+    Assertions.assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+    // the probe plus one request per segment
+    Assertions.assertEquals(1 + 11, ranges.size());
+    Assertions.assertFalse(Files.exists(tmpDir.resolve("chromedriver.zip.part")));
+    Assertions.assertFalse(Files.exists(tmpDir.resolve("chromedriver.zip.journal")));
+  }
+
+  @Test
+  void checkServerWithoutRangesIsDownloadedInOneStream() throws IOException {
+    supportsRanges = false;
+    final File destination = tmpDir.resolve("chromedriver.zip").toFile();
+
+    try (Downloader downloader = new Downloader.DownloaderImpl(3, SEGMENT_SIZE)) {
+      downloader.download(uri(), destination);
+    }
+
+    Assertions.assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+    Assertions.assertEquals(1, ranges.size());
+  }
+
+  @Test
+  void checkInterruptedDownloadResumesFromCompletedSegments() throws IOException {
+    final File destination = tmpDir.resolve("chromedriver.zip").toFile();
+    failingOffsets.add(5L * SEGMENT_SIZE);
+
+    try (Downloader downloader = new Downloader.DownloaderImpl(1, SEGMENT_SIZE)) {
+      Assertions.assertThrows(RuntimeException.class,
+          () -> downloader.download(uri(), destination));
+      Assertions.assertTrue(Files.exists(tmpDir.resolve("chromedriver.zip.part")));
+      Assertions.assertTrue(Files.exists(tmpDir.resolve("chromedriver.zip.journal")));
+
+      ranges.clear();
+      failingOffsets.clear();
+      downloader.download(uri(), destination);
+    }
+
+    Assertions.assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+    Assertions.assertFalse(ranges.contains("bytes=0-999"), "completed segments are not fetched");
+    Assertions.assertTrue(ranges.contains("bytes=5000-5999"));
+  }
+
+  @Test
+  void checkDigestIsComputedWhileDownloading() throws IOException {
+    final File destination = tmpDir.resolve("chromedriver.zip").toFile();
+    final MessageDigest digest = Checksums.sha256();
+    digest.update(content);
+    final String expected = Checksums.hex(digest);
+    failingOffsets.add(5L * SEGMENT_SIZE);
+
+    try (Downloader downloader = new Downloader.DownloaderImpl(3, SEGMENT_SIZE)) {
+      Assertions.assertThrows(RuntimeException.class,
+          () -> downloader.downloadDigested(uri(), destination));
+      failingOffsets.clear();
+      // the resumed segments are digested too
+      Assertions.assertEquals(expected, downloader.downloadDigested(uri(), destination).sha256());
+
+      supportsRanges = false;
+      Assertions.assertEquals(expected, downloader.downloadDigested(uri(), destination).sha256());
+    }
+  }
+
+  @Test
+  void checkDownloadsShareTheConnectionAndBandwidthBudget() throws Exception {
+    final AtomicInteger open = new AtomicInteger();
+    final AtomicInteger mostOpen = new AtomicInteger();
+    final HttpServer concurrent = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    concurrent.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    concurrent.createContext("/chromedriver.zip", exchange -> {
+      // the client holds the connection at least until the response starts
+      mostOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        open.decrementAndGet();
+      }
+      serve(exchange);
+    });
+    concurrent.start();
+
+    final URI uri = URI.create("http://localhost:" + concurrent.getAddress().getPort()
+        + "/chromedriver.zip");
+    // a second of budget is available right away, the rest has to wait for it
+    final long bytesPerSecond = content.length * 3L / 2;
+    final long start = System.nanoTime();
+    try (Downloader downloader = new Downloader.DownloaderImpl(3, SEGMENT_SIZE, 2,
+        new Bandwidth(bytesPerSecond))) {
+      final List<CompletableFuture<File>> downloads = List.of(
+          CompletableFuture.supplyAsync(
+              () -> downloader.download(uri, tmpDir.resolve("first.zip").toFile())),
+          CompletableFuture.supplyAsync(
+              () -> downloader.download(uri, tmpDir.resolve("second.zip").toFile())));
+      for (CompletableFuture<File> download : downloads) {
+        Assertions.assertArrayEquals(content, Files.readAllBytes(download.join().toPath()));
+      }
+    } finally {
+      concurrent.stop(0);
+    }
+
+    Assertions.assertEquals(2, mostOpen.get(), "at most 2 requests of both downloads at once");
+    final double seconds = (System.nanoTime() - start) / 1e9;
+    Assertions.assertTrue(seconds >= 0.25, "twice the content at 1.5 times its size per second, "
+        + "with a full bucket, took " + seconds + " s");
+  }
+
+  @Test
+  void checkConditionalRequestTakesAConnectionOfTheBudget() throws Exception {
+    final File destination = tmpDir.resolve("chromedriver.zip").toFile();
+
+    try (Downloader downloader = new Downloader.DownloaderImpl(1, SEGMENT_SIZE, 1,
+        Bandwidth.unlimited())) {
+      final CompletableFuture<Boolean> refresh;
+      try (InputStream held = downloader.open(uri())) {
+        refresh = CompletableFuture.supplyAsync(
+            () -> downloader.downloadIfModified(uri(), destination));
+        Thread.sleep(200);
+        Assertions.assertFalse(refresh.isDone(), "the only connection is still held");
+      }
+      Assertions.assertTrue(refresh.get(10, TimeUnit.SECONDS));
+    }
+
+    Assertions.assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+  }
+
+  @Test
+  void checkJournalOfAnotherFileIsDiscarded() throws IOException {
+    final File destination = tmpDir.resolve("chromedriver.zip").toFile();
+    Files.write(tmpDir.resolve("chromedriver.zip.part"), new byte[content.length]);
+    Files.writeString(tmpDir.resolve("chromedriver.zip.journal"), "1 \"other\"\n0\n1\n");
+
+    try (Downloader downloader = new Downloader.DownloaderImpl(2, SEGMENT_SIZE)) {
+      downloader.download(uri(), destination);
+    }
+
+    Assertions.assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+  }
+
+  @Test
+  void checkJournalOfOtherSegmentSizeIsDiscarded() throws IOException {
+    final File destination = tmpDir.resolve("chromedriver.zip").toFile();
+    failingOffsets.add(5L * SEGMENT_SIZE);
+
+    try (Downloader downloader = new Downloader.DownloaderImpl(1, SEGMENT_SIZE)) {
+      Assertions.assertThrows(RuntimeException.class,
+          () -> downloader.download(uri(), destination));
+    }
+    failingOffsets.clear();
+    ranges.clear();
+    try (Downloader downloader = new Downloader.DownloaderImpl(1, 2 * SEGMENT_SIZE)) {
+      downloader.download(uri(), destination);
+    }
+
+    Assertions.assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+    Assertions.assertTrue(ranges.contains("bytes=0-1999"), "nothing is resumed");
+  }
+
+  @Test
+  void checkDownloadWithoutValidatorIsNotResumed() throws IOException {
+    final File destination = tmpDir.resolve("chromedriver.zip").toFile();
+    sendsValidators = false;
+    failingOffsets.add(5L * SEGMENT_SIZE);
+
+    try (Downloader downloader = new Downloader.DownloaderImpl(1, SEGMENT_SIZE)) {
+      Assertions.assertThrows(RuntimeException.class,
+          () -> downloader.download(uri(), destination));
+      failingOffsets.clear();
+      ranges.clear();
+      downloader.download(uri(), destination);
+    }
+
+    Assertions.assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+    Assertions.assertTrue(ranges.contains("bytes=0-999"), "nothing is resumed");
+  }
+
+  @Test
+  void checkUnchangedFileIsNotDownloadedAgain() throws IOException {
+    final File destination = tmpDir.resolve("chromedriver.zip").toFile();
+
+    try (Downloader downloader = new Downloader.DownloaderImpl()) {
+      Assertions.assertTrue(downloader.downloadIfModified(uri(), destination));
+      Assertions.assertFalse(downloader.downloadIfModified(uri(), destination));
+
+      content = new byte[]{1, 2, 3};
+      Assertions.assertTrue(downloader.downloadIfModified(uri(), destination));
+    }
+
+    final Properties validators = new Properties();
+    try (Reader reader = Files.newBufferedReader(tmpDir.resolve("chromedriver.zip.validators"))) {
+      validators.load(reader);
+    }
+    Assertions.assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+    Assertions.assertEquals("\"" + Arrays.hashCode(content) + "\"",
+        validators.getProperty("ETag"));
+  }
+
+  private URI uri() {
+    return URI.create("http://localhost:" + server.getAddress().getPort() + "/chromedriver.zip");
+  }
+
+  private void serve(final HttpExchange exchange) throws IOException {
+    final String range = exchange.getRequestHeaders().getFirst("Range");
+    ranges.add(String.valueOf(range));
+
+    final Matcher matcher = range == null ? null : RANGE.matcher(range);
+    final String etag = "\"" + Arrays.hashCode(content) + "\"";
+    try (exchange; OutputStream body = exchange.getResponseBody()) {
+      if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        exchange.sendResponseHeaders(304, -1);
+        return;
+      }
+
+      if (sendsValidators) {
+        exchange.getResponseHeaders().add("ETag", etag);
+      }
+      if (!supportsRanges || matcher == null || !matcher.matches()) {
+        exchange.sendResponseHeaders(200, content.length);
+        body.write(content);
+        return;
+      }
+
+      final int start = Integer.parseInt(matcher.group(1));
+      final int end = Integer.parseInt(matcher.group(2));
+      if (failingOffsets.contains((long) start)) {
+        exchange.sendResponseHeaders(500, -1);
+        return;
+      }
+
+      exchange.getResponseHeaders().add("Content-Range",
+          "bytes " + start + "-" + end + "/" + content.length);
+      exchange.sendResponseHeaders(206, end - start + 1);
+      body.write(content, start, end - start + 1);
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+class DriverIndexTest {
+
+  static final String KNOWN_VERSIONS = """
+      {"timestamp":"2025-07-01T10:09:15.519Z","versions":[
+        {"version":"113.0.5672.0","revision":"1121455","downloads":{"chrome":[
+          {"platform":"linux64","url":"https://example.com/113.0.5672.0/linux64/chrome-linux64.zip"}
+        ]}},
+        {"version":"138.0.7204.49","revision":"1465706","downloads":{
+          "chrome":[{"platform":"linux64","url":"https://example.com/chrome.zip"}],
+          "chromedriver":[
+            {"platform":"linux64","url":"https://example.com/138.0.7204.49/linux64/chromedriver-linux64.zip"},
+            {"platform":"win64","url":"https://example.com/138.0.7204.49/win64/chromedriver-win64.zip"}
+          ]}},
+        {"version":"138.0.7204.92","revision":"1465706","downloads":{"chromedriver":[
+          {"platform":"linux64","url":"https://example.com/138.0.7204.92/linux64/chromedriver-linux64.zip"}
+        ]}},
+        {"version":"139.0.7258.5","revision":"1477651","downloads":{"chromedriver":[
+          {"platform":"linux64","url":"https://example.com/139.0.7258.5/linux64/chromedriver-linux64.zip"}
+        ]}}
+      ]}
+      """;
+
+  static final URI SOURCE = URI.create("https://example.com/known-good-versions.json");
+
+  @TempDir
+  Path tmpDir;
+
+  Downloader downloader;
+  String knownVersions;
+
+  @BeforeEach
+  void setUp() {
+    knownVersions = KNOWN_VERSIONS;
+    downloader = Mockito.mock(Downloader.class);
+    Mockito.when(downloader.downloadIfModified(Mockito.any(), Mockito.any()))
+        .thenAnswer(invocation -> {
+          final File destination = invocation.getArgument(1);
+          if (destination.exists() && Files.readString(destination.toPath()).equals(knownVersions)) {
+            return false;
+          }
+          Files.writeString(destination.toPath(), knownVersions);
+          return true;
+        });
+  }
+
+  @Test
+  void checkExactBuildIsFound() {
+    final Optional<DriverIndex.Entry> entry = index().nearest(
+        Version.fromRawVersion("138.0.7204.92"), "linux64");
+
+    Assertions.assertEquals(Optional.of(new DriverIndex.Entry(
+        Version.fromRawVersion("138.0.7204.92"), "linux64",
+        URI.create("https://example.com/138.0.7204.92/linux64/chromedriver-linux64.zip"))), entry);
+  }
+
+  @Test
+  void checkNearestBuildOfTheSameMajorIsFound() {
+    final DriverIndex index = index();
+
+    Assertions.assertEquals("138.0.7204.92", index.nearest(
+        Version.fromRawVersion("138.0.7204.100"), "linux64").orElseThrow().version().identifier());
+    Assertions.assertEquals("138.0.7204.49", index.nearest(
+        Version.fromRawVersion("138.0.7204.60"), "linux64").orElseThrow().version().identifier());
+    Assertions.assertEquals("138.0.7204.49", index.nearest(
+        Version.fromRawVersion("138.0.7204.0"), "win64").orElseThrow().version().identifier());
+    Assertions.assertEquals("139.0.7258.5", index.nearest(
+        Version.fromRawVersion("139.0.7000.0"), "linux64").orElseThrow().version().identifier());
+    Assertions.assertTrue(index.nearest(Version.fromRawVersion("137.0.7151.0"), "linux64")
+        .isEmpty());
+    Assertions.assertTrue(index.nearest(Version.fromRawVersion("139.0.7258.5"), "win64")
+        .isEmpty());
+    Assertions.assertTrue(index.nearest(Version.fromRawVersion("113.0.5672.0"), "linux64")
+        .isEmpty(), "versions without drivers are not indexed");
+  }
+
+  @Test
+  void checkLookupsDontTouchTheNetwork() {
+    index().nearest(Version.fromRawVersion("138.0.7204.92"), "linux64");
+
+    // a new instance reads the index written by the first one
+    final DriverIndex index = index();
+    index.nearest(Version.fromRawVersion("138.0.7204.49"), "linux64");
+    index.nearest(Version.fromRawVersion("139.0.7258.5"), "linux64");
+
+    Mockito.verify(downloader, Mockito.times(1)).downloadIfModified(Mockito.any(), Mockito.any());
+    Assertions.assertTrue(Files.exists(tmpDir.resolve(DriverIndex.INDEX_FILE)));
+  }
+
+  @Test
+  void checkNewerChromeRefreshesTheIndex() {
+    final DriverIndex index = index();
+    index.nearest(Version.fromRawVersion("139.0.7258.5"), "linux64");
+
+    knownVersions = KNOWN_VERSIONS.replace("139.0.7258.5", "140.0.7300.1");
+    final Optional<DriverIndex.Entry> entry = index.nearest(
+        Version.fromRawVersion("140.0.7300.1"), "linux64");
+
+    Assertions.assertEquals("140.0.7300.1", entry.orElseThrow().version().identifier());
+    Mockito.verify(downloader, Mockito.times(2)).downloadIfModified(Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  void checkRefreshOnlyAddsNewerBuilds() throws IOException {
+    final DriverIndex index = index();
+    index.refresh();
+    final byte[] indexed = Files.readAllBytes(tmpDir.resolve(DriverIndex.INDEX_FILE));
+
+    // a changed document without newer builds leaves the index as it is
+    knownVersions = KNOWN_VERSIONS.replace("2025-07-01T10:09:15.519Z", "2025-07-02T10:09:15.519Z");
+    Assertions.assertFalse(index.refresh());
+    Assertions.assertArrayEquals(indexed, Files.readAllBytes(
+        tmpDir.resolve(DriverIndex.INDEX_FILE)));
+
+    knownVersions = KNOWN_VERSIONS
+        .replace("https://example.com/138.0.7204.49/", "https://mirror.example.com/138.0.7204.49/")
+        .replace("139.0.7258.5", "140.0.7300.1");
+    Assertions.assertTrue(index.refresh());
+
+    Assertions.assertEquals(List.of("138.0.7204.49", "138.0.7204.92", "139.0.7258.5",
+            "140.0.7300.1"), index.between(Version.fromRawVersion("138.0.0.0"),
+            Version.fromRawVersion("140.65535.65535.65535"), "linux64").stream()
+        .map(entry -> entry.version().identifier()).toList());
+    Assertions.assertEquals(
+        URI.create("https://example.com/138.0.7204.49/linux64/chromedriver-linux64.zip"),
+        index.nearest(Version.fromRawVersion("138.0.7204.49"), "linux64").orElseThrow().url());
+  }
+
+  @Test
+  void checkConcurrentRefreshesNeverFail() throws Exception {
+    // the known versions are up to date, every instance only builds and writes the index
+    Files.writeString(tmpDir.resolve(DriverIndex.KNOWN_VERSIONS_FILE), knownVersions);
+    // each instance stands for another process refreshing the same folder
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      final List<Future<Boolean>> refreshes = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        refreshes.add(executor.submit(() -> index().refresh()));
+      }
+      for (Future<Boolean> refresh : refreshes) {
+        refresh.get();
+      }
+    }
+
+    Assertions.assertTrue(index().nearest(Version.fromRawVersion("138.0.7204.49"), "linux64")
+        .isPresent());
+    try (Stream<Path> files = Files.list(tmpDir)) {
+      Assertions.assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+    }
+  }
+
+  @Test
+  void checkUnwritableIndexStillAnswersTheRun() throws IOException {
+    // a directory can't be replaced by the index file
+    Files.writeString(Files.createDirectories(tmpDir.resolve(DriverIndex.INDEX_FILE))
+        .resolve("file"), "");
+
+    final Optional<DriverIndex.Entry> entry = index().nearest(
+        Version.fromRawVersion("138.0.7204.49"), "linux64");
+
+    Assertions.assertTrue(entry.isPresent());
+    Assertions.assertFalse(Files.exists(tmpDir.resolve(DriverIndex.KNOWN_VERSIONS_FILE)),
+        "the next refresh downloads the known versions again");
+  }
+
+  @Test
+  void checkCorruptedIndexIsRebuilt() throws IOException {
+    index().refresh();
+    Files.writeString(tmpDir.resolve(DriverIndex.INDEX_FILE), "corrupted");
+
+    final Optional<DriverIndex.Entry> entry = index().nearest(
+        Version.fromRawVersion("138.0.7204.49"), "linux64");
+
+    Assertions.assertTrue(entry.isPresent());
+  }
+
+  @Test
+  void checkBuildsBetweenVersionsAreListed() {
+    final DriverIndex index = index();
+
+    Assertions.assertEquals(List.of("138.0.7204.49", "138.0.7204.92", "139.0.7258.5"),
+        index.between(Version.fromRawVersion("138.0.0.0"),
+                Version.fromRawVersion("139.65535.65535.65535"), "linux64").stream()
+            .map(entry -> entry.version().identifier()).toList());
+    Assertions.assertEquals(List.of("138.0.7204.49"), index.between(
+        Version.fromRawVersion("138.0.7204.49"), Version.fromRawVersion("138.0.7204.91"),
+        "linux64").stream().map(entry -> entry.version().identifier()).toList());
+    Assertions.assertEquals(List.of(), index.between(Version.fromRawVersion("113.0.0.0"),
+        Version.fromRawVersion("139.65535.65535.65535"), "linux-arm64"));
+  }
+
+  private DriverIndex index() {
+    return new DriverIndex(tmpDir.toFile(), downloader, SOURCE);
+  }
+}
@@ -0,0 +1,113 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileLeaseTest {
+
+  static final Duration TIME_TO_LIVE = Duration.ofSeconds(30);
+  static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+
+  @TempDir
+  Path tmpDir;
+
+  @Test
+  void checkOnlyOneHolderAtATime() throws Exception {
+    final Path file = tmpDir.resolve("work.lease");
+    final List<String> events = new CopyOnWriteArrayList<>();
+
+    final CompletableFuture<Void> waiter;
+    try (FileLease lease = acquire(file)) {
+      waiter = CompletableFuture.runAsync(() -> {
+        try (FileLease next = acquire(file)) {
+          events.add("second");
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      });
+      Thread.sleep(200);
+      events.add("first");
+    }
+    waiter.join();
+
+    Assertions.assertEquals(List.of("first", "second"), events);
+    Assertions.assertFalse(Files.exists(file));
+  }
+
+  @Test
+  void checkInterruptedThreadReleasesTheLease() throws Exception {
+    final Path file = tmpDir.resolve("work.lease");
+    final FileLease lease = acquire(file);
+
+    final CompletableFuture<Boolean> stillInterrupted = new CompletableFuture<>();
+    Thread.ofVirtual().start(() -> {
+      Thread.currentThread().interrupt();
+      lease.close();
+      stillInterrupted.complete(Thread.currentThread().isInterrupted());
+    });
+
+    Assertions.assertTrue(stillInterrupted.get());
+    Assertions.assertFalse(Files.exists(file));
+  }
+
+  @Test
+  void checkExpiredLeaseOfAnotherHostIsRecovered() throws Exception {
+    final Path file = Files.writeString(tmpDir.resolve("work.lease"), "other-host 1 token\n");
+    Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofMinutes(5))));
+
+    try (FileLease lease = acquire(file)) {
+      Assertions.assertNotEquals("other-host 1 token", Files.readString(file).trim());
+    }
+  }
+
+  @Test
+  void checkLiveLeaseOfAnotherHostIsNotRecovered() throws Exception {
+    final Path file = Files.writeString(tmpDir.resolve("work.lease"), "other-host 1 token\n");
+
+    final CompletableFuture<Void> waiter = CompletableFuture.runAsync(() -> {
+      try (FileLease lease = acquire(file)) {
+        // acquired
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    Thread.sleep(200);
+
+    Assertions.assertFalse(waiter.isDone());
+    Files.delete(file); // the other host released it
+    waiter.join();
+  }
+
+  @Test
+  void checkLeaseOfACrashedLocalProcessIsRecoveredRightAway() throws Exception {
+    final Process process = new ProcessBuilder(
+        ProcessHandle.current().info().command().orElseThrow(), "-version").start();
+    process.getInputStream().transferTo(OutputStream.nullOutputStream());
+    process.getErrorStream().transferTo(OutputStream.nullOutputStream());
+    process.waitFor();
+    final Path file = Files.writeString(tmpDir.resolve("work.lease"),
+        InetAddress.getLocalHost().getHostName() + " " + process.pid() + " token\n");
+
+    final long start = System.nanoTime();
+    try (FileLease lease = acquire(file)) {
+      Assertions.assertTrue(
+          Duration.ofNanos(System.nanoTime() - start).compareTo(TIME_TO_LIVE) < 0);
+    }
+  }
+
+  private static FileLease acquire(final Path file) throws IOException, InterruptedException {
+    return FileLease.acquire(file, TIME_TO_LIVE, POLL_INTERVAL);
+  }
+}
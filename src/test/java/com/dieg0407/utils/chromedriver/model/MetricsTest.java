@@ -0,0 +1,99 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MetricsTest {
+
+  @TempDir
+  Path tmpDir;
+
+  @Test
+  void checkPhasesAreWrittenForPrometheus() throws IOException {
+    final Metrics metrics = new Metrics();
+    metrics.record(Metrics.Phase.DOWNLOAD, 2_000_000_000L, 8_000_000);
+    metrics.record(Metrics.Phase.DOWNLOAD, 2_000_000_000L, 0);
+    metrics.cacheLookup("download", true);
+    metrics.cacheLookup("download", false);
+    metrics.cacheLookup("download", false);
+
+    final Path file = tmpDir.resolve("chromedriver.prom");
+    metrics.write(file);
+    final List<String> lines = Files.readAllLines(file);
+
+    Assertions.assertTrue(lines.contains("chromedriver_updater_phase_runs_total{phase=\"download\"} 2"));
+    Assertions.assertTrue(lines.contains(
+        "chromedriver_updater_phase_seconds_total{phase=\"download\"} 4.000000"));
+    Assertions.assertTrue(lines.contains(
+        "chromedriver_updater_phase_seconds_max{phase=\"download\"} 2.000000"));
+    Assertions.assertTrue(lines.contains(
+        "chromedriver_updater_phase_bytes_per_second{phase=\"download\"} 2000000"));
+    Assertions.assertTrue(lines.contains(
+        "chromedriver_updater_cache_lookups_total{cache=\"download\",result=\"miss\"} 2"));
+    Assertions.assertTrue(lines.contains("# TYPE chromedriver_updater_phase_seconds_total counter"));
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      // collectors running as another user can read it
+      Assertions.assertEquals(PosixFilePermissions.fromString("rw-r--r--"),
+          Files.getPosixFilePermissions(file));
+    }
+  }
+
+  @Test
+  void checkPhasesAreWrittenAsJson() throws IOException {
+    final Metrics metrics = new Metrics();
+    metrics.record(Metrics.Phase.EXTRACTION, 500_000_000L, 1000);
+    metrics.cacheLookup("version", true);
+
+    final Path file = tmpDir.resolve("metrics.json");
+    metrics.write(file);
+
+    Assertions.assertEquals("""
+        {
+          "phases": {
+            "extraction": {"runs": 1, "seconds": 0.500000, "maxSeconds": 0.500000, \
+        "bytes": 1000, "bytesPerSecond": 2000}
+          },
+          "caches": {
+            "version": {"hits": 1, "misses": 0}
+          }
+        }
+        """, Files.readString(file));
+    Assertions.assertEquals("{\n  \"phases\": {},\n  \"caches\": {}\n}\n",
+        new Metrics().toJson());
+  }
+
+  @Test
+  void checkSpansEmitJfrEvents() throws IOException {
+    final Metrics metrics = new Metrics();
+    final Path dump = tmpDir.resolve("run.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(Metrics.PhaseEvent.NAME);
+      recording.start();
+      try (Metrics.Span span = metrics.start(Metrics.Phase.DOWNLOAD, "https://example.com/a.zip")) {
+        span.bytes(42);
+      }
+      recording.stop();
+      recording.dump(dump);
+    }
+
+    final List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+        .filter(event -> event.getEventType().getName().equals(Metrics.PhaseEvent.NAME))
+        .toList();
+    Assertions.assertEquals(1, events.size());
+    Assertions.assertEquals("download", events.get(0).getString("phase"));
+    Assertions.assertEquals("https://example.com/a.zip", events.get(0).getString("target"));
+    Assertions.assertEquals(42, events.get(0).getLong("bytes"));
+    Assertions.assertEquals(1, metrics.count(Metrics.Phase.DOWNLOAD));
+    Assertions.assertEquals(42, metrics.bytes(Metrics.Phase.DOWNLOAD));
+  }
+}
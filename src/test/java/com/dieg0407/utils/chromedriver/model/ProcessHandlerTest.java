@@ -0,0 +1,63 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import com.dieg0407.utils.chromedriver.model.ProcessHandler.ProcessException;
+import com.dieg0407.utils.chromedriver.model.ProcessHandler.ProcessHandlerImpl;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ProcessHandlerTest {
+
+  final ProcessHandler processHandler = new ProcessHandlerImpl();
+
+  @Test
+  void checkOutputIsReturned() throws IOException, InterruptedException {
+    final String output = processHandler.getOutput(
+        new ProcessBuilder("sh", "-c", "echo hello").redirectErrorStream(true), 5_000);
+
+    Assertions.assertEquals("hello\n", output);
+  }
+
+  @Test
+  void checkChattyProcessDoesNotBlock() throws IOException, InterruptedException {
+    // far more than a pipe buffer, on both streams
+    final String output = processHandler.getOutput(new ProcessBuilder("sh", "-c",
+        "i=0; while [ $i -lt 20000 ]; do echo line $i; echo error $i >&2; i=$((i+1)); done"),
+        10_000);
+
+    Assertions.assertEquals(20_000, output.lines().count());
+  }
+
+  @Test
+  void checkProcessIsKilledOnTimeout() throws InterruptedException {
+    final long start = System.nanoTime();
+    final CompletableFuture<String> output = processHandler.getOutputAsync(
+        new ProcessBuilder("sh", "-c", "sleep 30 & sleep 30; wait"), 200);
+
+    final ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+        () -> output.get(10, TimeUnit.SECONDS));
+    Assertions.assertInstanceOf(TimeoutException.class, e.getCause());
+    Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+  }
+
+  @Test
+  void checkTimeoutIsReportedAsIOException() {
+    Assertions.assertThrows(IOException.class,
+        () -> processHandler.getOutput(new ProcessBuilder("sleep", "30"), 200));
+  }
+
+  @Test
+  void checkNonZeroExitCodeFails() {
+    final ProcessException e = Assertions.assertThrows(ProcessException.class,
+        () -> processHandler.getOutput(
+            new ProcessBuilder("sh", "-c", "echo broken; exit 3").redirectErrorStream(true),
+            5_000));
+
+    Assertions.assertEquals(3, e.getExitCode());
+    Assertions.assertEquals("broken\n", e.getOutput());
+  }
+}
@@ -0,0 +1,121 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class VersionCacheTest {
+
+  @TempDir
+  Path tmpDir;
+
+  File index;
+  File binary;
+  Version version;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    index = tmpDir.resolve(VersionCache.INDEX_FILE).toFile();
+    binary = Files.writeString(tmpDir.resolve("chromedriver"), "binary").toFile();
+    version = Version.fromRawVersion("138.0.7204.49");
+  }
+
+  @Test
+  void checkRecordedVersionSurvivesANewInstance() {
+    new VersionCache(index).record(binary, version);
+
+    Assertions.assertEquals(Optional.of(version), new VersionCache(index).get(binary));
+  }
+
+  @Test
+  void checkConcurrentRecordsNeverFail() throws Exception {
+    final List<File> binaries = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      binaries.add(Files.writeString(tmpDir.resolve("chromedriver-" + i), "binary").toFile());
+    }
+
+    // each instance stands for another process recording into the same index
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      final List<Future<?>> records = new ArrayList<>();
+      for (File each : binaries) {
+        records.add(executor.submit(() -> new VersionCache(index).record(each, version)));
+      }
+      for (Future<?> record : records) {
+        record.get();
+      }
+    }
+
+    try (Stream<Path> files = Files.list(tmpDir)) {
+      Assertions.assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+    }
+  }
+
+  @Test
+  void checkUnwritableIndexDoesNotFailTheRecord() throws IOException {
+    final File blocked = new File(Files.writeString(tmpDir.resolve("file"), "").toFile(),
+        VersionCache.INDEX_FILE);
+    final VersionCache cache = new VersionCache(blocked);
+
+    Assertions.assertDoesNotThrow(() -> cache.record(binary, version));
+    Assertions.assertEquals(Optional.of(version), cache.get(binary));
+  }
+
+  @Test
+  void checkModifiedBinaryIsAMiss() throws IOException {
+    final VersionCache cache = new VersionCache(index);
+    cache.record(binary, version);
+
+    Files.setLastModifiedTime(binary.toPath(),
+        FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+
+    Assertions.assertEquals(Optional.empty(), cache.get(binary));
+  }
+
+  @Test
+  void checkReplacedBinaryIsAMiss() throws IOException {
+    final VersionCache cache = new VersionCache(index);
+    cache.record(binary, version);
+
+    final Path replacement = Files.writeString(tmpDir.resolve("replacement"), "binary");
+    Files.setLastModifiedTime(replacement, Files.getLastModifiedTime(binary.toPath()));
+    Files.move(replacement, binary.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    Assertions.assertEquals(Optional.empty(), cache.get(binary));
+  }
+
+  @Test
+  void checkCachedProbeSkipsTheDelegate() {
+    final VersionCache cache = new VersionCache(index);
+    final int[] calls = {0};
+    final VersionProbe probe = VersionProbe.cached(cache, file -> {
+      calls[0]++;
+      return Optional.of(version);
+    });
+
+    Assertions.assertEquals(Optional.of(version), probe.probe(binary));
+    Assertions.assertEquals(Optional.of(version), probe.probe(binary));
+    Assertions.assertEquals(1, calls[0]);
+  }
+
+  @Test
+  void checkCorruptedIndexIsIgnored() throws IOException {
+    Files.writeString(index.toPath(), "garbage\t1\t2\t3\tnot-a-version\n");
+
+    Assertions.assertEquals(Optional.empty(), new VersionCache(index).get(binary));
+  }
+}
@@ -0,0 +1,103 @@
+package com.dieg0407.utils.chromedriver.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class VersionProbeTest {
+
+  @TempDir
+  Path tmpDir;
+
+  @Test
+  void checkChromedriverVersionIsFoundNextToTheCommit() throws IOException {
+    final File binary = binary("chromedriver",
+        "\u0000127.0.0.1\u0000",
+        "\u0000ChromeDriver %s\u0000",
+        "\u0000138.0.7204.49 (d0b7ab1dd3b7c9c0e52f2e4fbc9eff6bab59d7a6-refs/branch-heads/7204@{#1}"
+            + "\u0000");
+
+    Assertions.assertEquals(Optional.of(Version.fromRawVersion("138.0.7204.49")),
+        VersionProbe.chromedriver().probe(binary));
+  }
+
+  @Test
+  void checkChromeVersionIsNotGuessedFromTheBinary() throws IOException {
+    final File binary = binary("chrome",
+        "\u0000127.0.0.1\u0000",
+        "\u0000138.0.7204.92\u0000",
+        "\u0000138.0.7204.92\u0000");
+
+    // unanchored strings are left to running Chrome with --version
+    Assertions.assertEquals(Optional.empty(), VersionProbe.chrome().probe(binary));
+  }
+
+  @Test
+  void checkBinaryWithoutVersionIsEmpty() throws IOException {
+    final File binary = binary("chromedriver",
+        "\u0000ChromeDriver 1.2.3 (abc)\u0000",
+        "\u00009.8.7.6.5\u0000");
+
+    Assertions.assertEquals(Optional.empty(), VersionProbe.chromedriver().probe(binary));
+    Assertions.assertEquals(Optional.empty(), VersionProbe.chrome().probe(binary));
+  }
+
+  @Test
+  void checkMacOsVersionIsReadFromInfoPlist() throws IOException {
+    final Path contents = Files.createDirectories(
+        tmpDir.resolve("Google Chrome.app").resolve("Contents").resolve("MacOS"))
+        .getParent();
+    final Path binary = Files.writeString(contents.resolve("MacOS").resolve("Google Chrome"),
+        "binary");
+    Files.writeString(contents.resolve("Info.plist"), """
+        <?xml version="1.0" encoding="UTF-8"?>
+        <plist version="1.0">
+        <dict>
+          <key>CFBundleName</key>
+          <string>Chrome</string>
+          <key>CFBundleShortVersionString</key>
+          <string>138.0.7204.49</string>
+        </dict>
+        </plist>
+        """);
+
+    Assertions.assertEquals(Optional.of(Version.fromRawVersion("138.0.7204.49")),
+        VersionProbe.chrome().probe(binary.toFile()));
+  }
+
+  @Test
+  void checkFirstOfFallsThrough() {
+    final Version version = Version.fromRawVersion("1.2.3.4");
+    final VersionProbe probe = VersionProbe.firstOf(VersionProbe.none(),
+        binary -> Optional.of(version));
+
+    Assertions.assertEquals(Optional.of(version), probe.probe(tmpDir.toFile()));
+  }
+
+  // random noise around the given strings, like the rest of a real binary
+  private File binary(final String name, final String... strings) throws IOException {
+    final Random random = new Random(42);
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    for (String string : strings) {
+      final byte[] noise = new byte[4096];
+      random.nextBytes(noise);
+      for (int i = 0; i < noise.length; i++) {
+        // keep digits and dots out of the noise so it never forms a version by accident
+        if ((noise[i] >= '0' && noise[i] <= '9') || noise[i] == '.') {
+          noise[i] = 'x';
+        }
+      }
+      content.write(noise);
+      content.write(string.getBytes(StandardCharsets.ISO_8859_1));
+    }
+    return Files.write(tmpDir.resolve(name), content.toByteArray()).toFile();
+  }
+}
@@ -1,7 +1,13 @@
 package com.dieg0407.utils.chromedriver.model;
 
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 class VersionTest {
 
@@ -18,4 +24,82 @@ class VersionTest {
     assert !version3.isLessThan(version1);
     assert !version2.isLessThan(version3);
   }
+
+  @Test
+  void shouldCompareTheBuild() {
+    final Version older = Version.fromRawVersion("138.0.7204.49");
+    final Version newer = Version.fromRawVersion("138.0.7204.92");
+
+    Assertions.assertTrue(older.isLessThan(newer));
+    Assertions.assertTrue(older.compareTo(newer) < 0);
+    Assertions.assertEquals(0, older.compareTo(Version.fromRawVersion("138.0.7204.49")));
+  }
+
+  @Test
+  void shouldSortByAllParts() {
+    final List<Version> versions = new ArrayList<>(List.of(
+        Version.fromRawVersion("138.0.7204.92"),
+        Version.fromRawVersion("65535.0.0.0"),
+        Version.fromRawVersion("137.1.0.0"),
+        Version.fromRawVersion("138.0.7204.49"),
+        Version.fromRawVersion("137.0.9999.9")));
+    Collections.sort(versions);
+
+    Assertions.assertEquals(List.of("137.0.9999.9", "137.1.0.0", "138.0.7204.49", "138.0.7204.92",
+        "65535.0.0.0"), versions.stream().map(Version::identifier).toList());
+  }
+
+  @Test
+  void shouldCheckCompatibility() {
+    final Version chrome = Version.fromRawVersion("138.0.7204.92");
+
+    Assertions.assertTrue(Version.fromRawVersion("138.1.0.0")
+        .isCompatibleWith(chrome, Version.Compatibility.MAJOR));
+    Assertions.assertFalse(Version.fromRawVersion("138.1.0.0")
+        .isCompatibleWith(chrome, Version.Compatibility.MAJOR_MINOR));
+    Assertions.assertTrue(Version.fromRawVersion("138.0.7204.49")
+        .isCompatibleWith(chrome, Version.Compatibility.MAJOR_MINOR));
+    Assertions.assertFalse(Version.fromRawVersion("138.0.7204.49")
+        .isCompatibleWith(chrome, Version.Compatibility.EXACT));
+    Assertions.assertTrue(chrome.isCompatibleWith(chrome, Version.Compatibility.EXACT));
+    Assertions.assertFalse(Version.fromRawVersion("137.0.7204.92")
+        .isCompatibleWith(chrome, Version.Compatibility.MAJOR));
+  }
+
+  @Test
+  void shouldKeepDriversNotOlderThanChrome() {
+    final Version chrome = Version.fromRawVersion("138.0.7204.92");
+
+    Assertions.assertTrue(Version.fromRawVersion("139.0.7258.5")
+        .isUpToDateWith(chrome, Version.Compatibility.MAJOR_MINOR));
+    Assertions.assertTrue(Version.fromRawVersion("138.0.7204.100")
+        .isUpToDateWith(chrome, Version.Compatibility.EXACT));
+    Assertions.assertTrue(Version.fromRawVersion("138.0.7204.49")
+        .isUpToDateWith(chrome, Version.Compatibility.MAJOR_MINOR));
+    Assertions.assertFalse(Version.fromRawVersion("138.0.7204.49")
+        .isUpToDateWith(chrome, Version.Compatibility.EXACT));
+    Assertions.assertFalse(Version.fromRawVersion("137.0.7151.119")
+        .isUpToDateWith(chrome, Version.Compatibility.MAJOR_MINOR));
+  }
+
+  @Test
+  void shouldParseAndFormat() {
+    final Version version = Version.fromRawVersion("138.0.7204.49");
+
+    Assertions.assertEquals(138, version.major());
+    Assertions.assertEquals(0, version.minor());
+    Assertions.assertEquals(7204, version.patch());
+    Assertions.assertEquals(49, version.build());
+    Assertions.assertEquals("138.0.7204.49", version.identifier());
+    Assertions.assertEquals(new Version(138, 0, 7204, 49), version);
+    Assertions.assertEquals(new Version(138, 0, 7204, 49).hashCode(), version.hashCode());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", "138", "138.0.7204", "138.0.7204.49.1", "138..7204.49",
+      "138.0.7204.", ".0.7204.49", "138.0.7204.49a", "138.0.65536.0", "138.0.000001.0",
+      "-1.0.0.0"})
+  void shouldRejectMalformedVersions(final String raw) {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Version.fromRawVersion(raw));
+  }
 }